@@ -0,0 +1,103 @@
+package com.example.batchservice.processor;
+
+import com.example.batchservice.client.FlowbitApiClient;
+import com.example.batchservice.client.NewsFeed;
+import com.example.batchservice.dto.DigestSegment;
+import com.example.batchservice.dto.NewsData;
+import com.example.batchservice.dto.UpstreamSnapshot;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.spring5.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 다이제스트 렌더링 경로 벤치마크 - 고정된 가격/뉴스 JSON(src/test/resources/loadtest, 부하 테스트와 공유)만 사용하므로 네트워크 없이 실행된다.
+ * 할당량(gc.alloc.rate.norm)은 build.gradle 의 gc 프로파일러로 함께 측정.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailRenderingBenchmark {
+
+    private EmailProcessor emailProcessor;
+    private UpstreamSnapshot snapshot;
+    private JsonNode newsRoot;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode priceRoot = readFixture(objectMapper, "loadtest/price.json");
+        newsRoot = readFixture(objectMapper, "loadtest/news.json");
+
+        Map<String, List<NewsData>> news = new LinkedHashMap<>();
+        for (String tag : FlowbitApiClient.NEWS_TAGS) {
+            news.put(tag, NewsFeed.cleanPage(newsRoot, tag));
+        }
+        snapshot = new UpstreamSnapshot(priceRoot, news, System.currentTimeMillis());
+
+        // 운영과 같은 Thymeleaf 설정 (templates/*.html, HTML 모드) - 템플릿 파싱 결과는 캐시
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        // 스냅샷 캐시는 쓰지 않음 - render* 메소드에 스냅샷을 직접 넘긴다
+        emailProcessor = new EmailProcessor(templateEngine, null, new BatchMetrics(new SimpleMeterRegistry()), null);
+    }
+
+    @Benchmark
+    public String renderEmail() {
+        return emailProcessor.renderEmail(snapshot, DigestSegment.DEFAULT);
+    }
+
+    @Benchmark
+    public String renderDiscordMessage() {
+        return emailProcessor.renderDiscordMessage(snapshot);
+    }
+
+    @Benchmark
+    public List<NewsData> cleanNewsPage() {
+        return NewsFeed.cleanPage(newsRoot, FlowbitApiClient.NEWS_TAGS.get(0)); // 새 기사가 들어올 때만 드는 비용
+    }
+
+    @Benchmark
+    public String formatCryptoDataForMarkdown() {
+        return emailProcessor.formatCryptoDataForMarkdown(snapshot.getPriceRoot());
+    }
+
+    private static JsonNode readFixture(ObjectMapper objectMapper, String path) throws IOException {
+        try (InputStream in = EmailRenderingBenchmark.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalStateException("fixture 없음: " + path);
+            }
+            return objectMapper.readTree(in);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.batchservice.writer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 수신자별 MimeMessage 생성 + 전송 직전 직렬화(writeTo) 비용
+ * - preparedRecipientMessage: EmailWriter 가 쓰는 PreparedEmail 경로 (본문 바이트 공유)
+ * - helperRecipientMessage: 수신자마다 MimeMessageHelper 로 본문을 다시 인코딩하던 이전 방식 (비교 기준)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecipientMessageBenchmark {
+
+    private static final String SUBJECT = "\uD83D\uDCF0 FLOWBIT 예측가격 뉴스 업데이트";
+    private static final String RECIPIENT = "subscriber@example.com";
+
+    private Session session;
+    private String htmlContent;
+    private PreparedEmail preparedEmail;
+
+    @Setup
+    public void setUp() throws IOException, MessagingException {
+        session = Session.getInstance(new Properties()); // 연결하지 않음 - 메시지 생성에만 사용
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("templates/cryptoEmailTemplate.html")) {
+            htmlContent = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        MimeMessage base = new MimeMessage(session);
+        MimeMessageHelper helper = new MimeMessageHelper(base, true, "UTF-8");
+        helper.setSubject(SUBJECT);
+        helper.setText(htmlContent, true);
+        preparedEmail = new PreparedEmail(base, htmlContent);
+    }
+
+    @Benchmark
+    public MimeMessage preparedRecipientMessage() throws MessagingException, IOException {
+        MimeMessage message = preparedEmail.newMessage(RECIPIENT);
+        message.saveChanges(); // Transport.send 와 같은 순서
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+
+    @Benchmark
+    public MimeMessage helperRecipientMessage() throws MessagingException, IOException {
+        MimeMessage message = new MimeMessage(session);
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(RECIPIENT);
+        helper.setSubject(SUBJECT);
+        helper.setText(htmlContent, true);
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        return message;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.batchservice.batch;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Spring Batch 메타데이터(BATCH_*) 보관 기간 관리
+ * - 실행 신호마다 JobInstance / JobExecution / StepExecution 행이 생기므로 오래된 실행을 배치 단위로 지운다.
+ * - 실제로 발송한 실행(WRITE_COUNT > 0)은 retention-days, 아무것도 보내지 않은 실행은 empty-run-retention-hours 만 보관한다.
+ * - 진행 중인 실행과 가장 최근 JobInstance(실패 시 재시작 대상)는 지우지 않는다.
+ * FK 순서(컨텍스트 → 파라미터 → StepExecution → JobExecution → JobInstance)대로 삭제한다.
+ */
+@Component
+public class BatchMetadataPruner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.batch.jdbc.table-prefix:BATCH_}")
+    private String tablePrefix;
+
+    @Value("${batch.metadata.retention-days:30}") // 발송한 실행의 보관 기간
+    private int retentionDays;
+
+    @Value("${batch.metadata.empty-run-retention-hours:24}") // 발송 0건인 실행의 보관 기간
+    private int emptyRunRetentionHours;
+
+    @Value("${batch.metadata.prune-batch-size:500}") // 한 번에 지울 JobExecution 수
+    private int pruneBatchSize;
+
+    public BatchMetadataPruner(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 보관 기간이 지난 실행을 지우고 지운 JobExecution 수를 돌려준다
+     */
+    public int prune() {
+        LocalDateTime now = LocalDateTime.now();
+        Long latestInstanceId = jdbcTemplate.queryForObject("SELECT MAX(JOB_INSTANCE_ID) FROM " + tablePrefix + "JOB_INSTANCE", Long.class);
+        if (latestInstanceId == null) {
+            return 0;
+        }
+
+        int total = pruneExecutions(
+                "e.CREATE_TIME < ? AND NOT EXISTS (SELECT 1 FROM " + tablePrefix + "STEP_EXECUTION s "
+                        + "WHERE s.JOB_EXECUTION_ID = e.JOB_EXECUTION_ID AND s.WRITE_COUNT > 0)",
+                Timestamp.valueOf(now.minusHours(emptyRunRetentionHours)), latestInstanceId);
+        total += pruneExecutions("e.CREATE_TIME < ?", Timestamp.valueOf(now.minusDays(retentionDays)), latestInstanceId);
+        return total;
+    }
+
+    private int pruneExecutions(String condition, Timestamp cutoff, long latestInstanceId) {
+        String selectSql = "SELECT e.JOB_EXECUTION_ID, e.JOB_INSTANCE_ID FROM " + tablePrefix + "JOB_EXECUTION e WHERE " + condition
+                + " AND e.STATUS NOT IN ('STARTING', 'STARTED', 'STOPPING') AND e.JOB_INSTANCE_ID < ?"
+                + " ORDER BY e.JOB_EXECUTION_ID LIMIT " + pruneBatchSize;
+        int total = 0;
+        List<long[]> rows;
+        do {
+            rows = jdbcTemplate.query(selectSql,
+                    (rs, rowNum) -> new long[]{rs.getLong("JOB_EXECUTION_ID"), rs.getLong("JOB_INSTANCE_ID")},
+                    cutoff, latestInstanceId);
+            if (!rows.isEmpty()) {
+                deleteExecutions(rows);
+                total += rows.size();
+            }
+        } while (rows.size() == pruneBatchSize);
+        return total;
+    }
+
+    /**
+     * JobExecution 한 묶음과 그 하위 행을 지우고, 실행이 하나도 남지 않은 JobInstance 도 지운다
+     */
+    private void deleteExecutions(List<long[]> rows) {
+        List<Object> executionIds = new ArrayList<>(rows.size());
+        Set<Object> instanceIds = new LinkedHashSet<>();
+        for (long[] row : rows) {
+            executionIds.add(row[0]);
+            instanceIds.add(row[1]);
+        }
+        Object[] executionArgs = executionIds.toArray();
+        String executionIn = placeholders(executionIds.size());
+        String stepExecutionIds = "SELECT STEP_EXECUTION_ID FROM " + tablePrefix + "STEP_EXECUTION WHERE JOB_EXECUTION_ID IN " + executionIn;
+
+        jdbcTemplate.update("DELETE FROM " + tablePrefix + "STEP_EXECUTION_CONTEXT WHERE STEP_EXECUTION_ID IN (" + stepExecutionIds + ")",
+                executionArgs);
+        jdbcTemplate.update("DELETE FROM " + tablePrefix + "STEP_EXECUTION WHERE JOB_EXECUTION_ID IN " + executionIn, executionArgs);
+        jdbcTemplate.update("DELETE FROM " + tablePrefix + "JOB_EXECUTION_CONTEXT WHERE JOB_EXECUTION_ID IN " + executionIn, executionArgs);
+        jdbcTemplate.update("DELETE FROM " + tablePrefix + "JOB_EXECUTION_PARAMS WHERE JOB_EXECUTION_ID IN " + executionIn, executionArgs);
+        jdbcTemplate.update("DELETE FROM " + tablePrefix + "JOB_EXECUTION WHERE JOB_EXECUTION_ID IN " + executionIn, executionArgs);
+        jdbcTemplate.update("DELETE FROM " + tablePrefix + "JOB_INSTANCE WHERE JOB_INSTANCE_ID IN " + placeholders(instanceIds.size())
+                        + " AND NOT EXISTS (SELECT 1 FROM " + tablePrefix + "JOB_EXECUTION e WHERE e.JOB_INSTANCE_ID = "
+                        + tablePrefix + "JOB_INSTANCE.JOB_INSTANCE_ID)",
+                instanceIds.toArray());
+    }
+
+    private static String placeholders(int count) {
+        return "(" + String.join(", ", Collections.nCopies(count, "?")) + ")";
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.batchservice.batch;
+
+/**
+ * 이메일 배치를 실행할 이유가 생겼다는 신호 - JobScheduler 가 받아서 짧게 모았다가 한 번만 실행한다
+ */
+public class DeliveryTriggerEvent {
+
+    public enum Reason {
+        STARTUP,        // 기동 직후 밀린 발송 확인
+        NEW_SUBSCRIBER, // 새 구독자
+        RETRY_DUE,      // 재시도 시각이 된 발송
+        DAILY_DIGEST,   // 새 발송일의 뉴스레터 준비
+        FAILED_RUN,     // 실패/중단된 실행을 이어서 처리
+        WINDOW_SLICE,   // 발송 창에서 다음 몫의 구독자가 풀림
+        SHARD_TAKEOVER  // 다른 인스턴스의 샤드를 넘겨받음
+    }
+
+    private final Reason reason;
+
+    public DeliveryTriggerEvent(Reason reason) {
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+}
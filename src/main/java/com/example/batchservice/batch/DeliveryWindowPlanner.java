@@ -0,0 +1,434 @@
+package com.example.batchservice.batch;
+
+import com.example.batchservice.ledger.DeliveryLedger;
+import com.example.batchservice.shard.ShardLeaseManager;
+import com.example.batchservice.writer.SendRateLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 발송일의 다이제스트를 window-minutes 동안 나눠 보내기 위한 계획 (batch.delivery.window.enabled=true 일 때만 동작)
+ * - 발송일 계획 때 구독자를 id 순으로 slots 개 구간으로 나눠 경계 id 를 구해 두고, 창이 열린 비율만큼 앞쪽 구간부터
+ *   풀어 준다 (EmailReader 조건 s.id <= 경계). 범위 조건이라 PK 순서 읽기를 그대로 쓴다.
+ * - 풀린 몫을 다 보냈으면 그 경계를 하한(s.id > 하한)으로 삼아 다음 실행이 이미 보낸 구간을 다시 훑지 않는다.
+ *   보유 샤드가 바뀌면 넘겨받은 샤드의 앞 구간도 읽도록 하한을 버린다. 실패한 주소는 재시도 대기열로 읽는다.
+ * - 풀리는 비율은 적어도 경과 시간 / (창 길이 - drain-margin) 이라 모든 구독자가 창 안에 풀린다.
+ *   계획 이후 가입한 구독자(마지막 경계보다 큰 id)는 모두 풀릴 때 함께 풀린다.
+ * - 직전에 푼 몫을 다 보냈으면 측정한 지속 가능 속도 × slice-interval 만큼 더 당겨 푼다
+ *   (속도는 SendRateLimiter 의 현재 속도와 실제 실행 처리량 중 작은 값에 rate-utilization 을 곱한 값).
+ * - by-time-zone=true 면 시간대별로 현지 local-start-hour 에 창이 열린다 (시간대가 없는 구독자는 default-zone).
+ *   다음 발송일 전에 창이 끝나지 않는 시간대는 그만큼 일찍 연다.
+ * - 조건은 계획한 발송일에만 유효하다 - 발송일이 바뀌고 다시 계획하기 전에는 아무도 읽지 않는다.
+ * 끄면 조건이 붙지 않아 이전처럼 발송일이 시작될 때 모두 보낸다.
+ */
+@Component
+public class DeliveryWindowPlanner {
+
+    private static final Pattern SAFE_ZONE_ID = Pattern.compile("[A-Za-z0-9/_+:-]+"); // SQL 에 그대로 넣으므로 한 번 더 확인
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeliveryLedger deliveryLedger;
+    private final SendRateLimiter sendRateLimiter;
+    private final ShardLeaseManager shardLeaseManager;
+    private final MeterRegistry meterRegistry;
+
+    private LocalDate planDate;
+    private final Map<String, Group> groups = new LinkedHashMap<>(); // 시간대 id → 그룹 (자신으로 동기화)
+    private volatile Release release; // 조건 생성용 스냅샷 (계획 전이면 null)
+    private double observedRate; // 실행에서 측정한 처리량 (건/초, 지수 평균)
+
+    @Value("${batch.delivery.window.enabled:false}")
+    private boolean enabled;
+
+    @Value("${batch.delivery.window.window-minutes:120}")
+    private long windowMinutes;
+
+    @Value("${batch.delivery.window.drain-margin-minutes:15}") // 창이 끝나기 이만큼 전까지 모두 풀어 마지막 몫을 보낼 시간 확보
+    private long drainMarginMinutes;
+
+    @Value("${batch.delivery.window.slots:1440}") // 발송일마다 구독자를 나누는 id 구간 수
+    private int slots;
+
+    @Value("${batch.delivery.window.slice-interval-ms:60000}") // JobScheduler 가 이 간격으로 advance 호출
+    private long sliceIntervalMillis;
+
+    @Value("${batch.delivery.window.rate-utilization:0.8}")
+    private double rateUtilization;
+
+    @Value("${batch.delivery.window.by-time-zone:false}")
+    private boolean byTimeZone;
+
+    @Value("${batch.delivery.window.local-start-hour:7}") // by-time-zone 일 때 현지 시각 기준 창 시작
+    private int localStartHour;
+
+    @Value("${batch.delivery.window.default-zone:Asia/Seoul}")
+    private String defaultZone;
+
+    public DeliveryWindowPlanner(JdbcTemplate jdbcTemplate, DeliveryLedger deliveryLedger, SendRateLimiter sendRateLimiter,
+                                 ShardLeaseManager shardLeaseManager, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryLedger = deliveryLedger;
+        this.sendRateLimiter = sendRateLimiter;
+        this.shardLeaseManager = shardLeaseManager;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("delivery.window.released.ratio", this, DeliveryWindowPlanner::releasedRatio)
+                .description("오늘 발송 창에서 풀린 구독자 비율 (추정)")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 오늘 발송일의 구독자를 모두 풀었는지 - 그렇다면 다음 발송일 전까지 advance 할 일이 없다
+     */
+    public boolean isFullyReleased() {
+        Release current = release;
+        return current != null && current.complete && current.date.equals(deliveryLedger.currentDeliveryDate());
+    }
+
+    /**
+     * 구독자 id 컬럼에 붙이는 "발송 구간이 풀렸음" 조건 - 꺼져 있거나 모두 풀렸으면 빈 문자열
+     * 오늘 발송일의 계획이 아직 없으면 (발송일이 막 바뀐 경우 포함) 항상 거짓.
+     */
+    public String releaseCondition(String idColumn) {
+        if (!enabled) {
+            return "";
+        }
+        Release current = release;
+        if (current == null || !current.date.equals(deliveryLedger.currentDeliveryDate())) {
+            return " AND 1 = 0"; // 아직 오늘 계획 전 - 어제 계획으로 한꺼번에 보내지 않도록
+        }
+        if (current.complete) {
+            return "";
+        }
+        // 계획 이후 보유 샤드가 바뀌었으면 넘겨받은 샤드의 앞 구간은 아직 안 보냈을 수 있음
+        boolean useLower = current.shardsKey.equals(shardLeaseManager.heldShardsKey());
+        if (!byTimeZone) {
+            long lower = useLower ? current.lower.get(defaultZone) : 0;
+            return " AND " + idColumn + " > " + lower + " AND " + idColumn + " <= " + current.upper.get(defaultZone);
+        }
+        // 바깥 범위로 인덱스 구간을 좁히고, 시간대별 경계는 그 안에서 거른다
+        long minLower = useLower ? current.lower.values().stream().mapToLong(Long::longValue).min().orElse(0) : 0;
+        long maxUpper = current.upper.values().stream().mapToLong(Long::longValue).max().orElse(0);
+        StringBuilder condition = new StringBuilder(" AND " + idColumn + " > " + minLower + " AND " + idColumn + " <= " + maxUpper);
+        condition.append(" AND ").append(idColumn).append(" <= ").append(zoneCase(idColumn, current.upper));
+        if (useLower) {
+            condition.append(" AND ").append(idColumn).append(" > ").append(zoneCase(idColumn, current.lower));
+        }
+        return condition.toString();
+    }
+
+    /**
+     * 구독자 시간대별 값 - 시간대가 없거나 오늘 계획 이후 추가된 시간대는 기본 시간대를 따름
+     */
+    private String zoneCase(String idColumn, Map<String, Long> byZone) {
+        if (byZone.size() == 1) {
+            return String.valueOf(byZone.get(defaultZone)); // 기본 시간대뿐 - WHEN 없는 CASE 는 문법 오류
+        }
+        StringBuilder expression = new StringBuilder("CASE (SELECT z.zone_id FROM subscriber_time_zone z "
+                + "WHERE z.subscriber_id = " + idColumn + ")");
+        byZone.forEach((zone, value) -> {
+            if (!zone.equals(defaultZone)) {
+                expression.append(" WHEN '").append(zone).append("' THEN ").append(value);
+            }
+        });
+        return expression.append(" ELSE ").append(byZone.get(defaultZone)).append(" END").toString();
+    }
+
+    /**
+     * 한 번의 실행 결과로 처리량 갱신 (sent 건을 elapsed 동안 보냄)
+     */
+    public synchronized void recordRun(long sent, Duration elapsed) {
+        if (sent <= 0 || elapsed.isZero()) {
+            return;
+        }
+        double rate = sent * 1000.0 / elapsed.toMillis();
+        observedRate = observedRate == 0 ? rate : observedRate * 0.7 + rate * 0.3;
+    }
+
+    /**
+     * 풀린 구간을 시간과 속도에 맞춰 늘린다 - 새로 풀린 구독자가 있으면 true (실행 신호를 보낼 때)
+     * 발송일이 바뀌었으면 먼저 새 발송일을 계획하므로, 실행 전에 호출하면 어제 계획이 남아 있지 않다.
+     *
+     * @param drained 지금까지 풀린 구독자를 모두 보냈는지
+     */
+    public synchronized boolean advance(boolean drained) {
+        if (!enabled) {
+            return false;
+        }
+        LocalDate date = deliveryLedger.currentDeliveryDate();
+        if (!date.equals(planDate)) {
+            plan(date);
+        }
+
+        String shardsKey = shardLeaseManager.heldShardsKey();
+        Release previous = release;
+        if (previous != null && !previous.shardsKey.equals(shardsKey)) {
+            groups.values().forEach(group -> group.drainedId = 0); // 넘겨받은 샤드는 처음부터
+        } else if (drained) {
+            // 직전 경계까지 모두 보냄 (모두 풀렸던 그룹은 마지막 경계까지 - 그 뒤 가입한 구독자는 계속 읽음)
+            groups.values().forEach(group -> group.drainedId = Math.min(group.upper, group.lastBoundary()));
+        }
+
+        Instant now = Instant.now();
+        long releaseSpanMillis = Duration.ofMinutes(Math.max(1, windowMinutes - drainMarginMinutes)).toMillis();
+        for (Group group : groups.values()) {
+            double elapsed = Duration.between(group.start, now).toMillis();
+            group.fraction = Math.max(group.fraction, Math.min(1.0, Math.max(0.0, elapsed / releaseSpanMillis)));
+        }
+
+        if (drained) {
+            // 열린 창에서 아직 안 풀린 구독자에게 이번 몫(속도 × 간격)을 나눠 당겨 풂
+            double budget = sustainableRate() * sliceIntervalMillis / 1000.0;
+            double remaining = 0;
+            for (Group group : groups.values()) {
+                if (!now.isBefore(group.start)) {
+                    remaining += group.count * (1 - group.fraction);
+                }
+            }
+            if (remaining > 0 && budget > 0) {
+                double share = Math.min(1.0, budget / remaining);
+                for (Group group : groups.values()) {
+                    if (!now.isBefore(group.start)) {
+                        group.fraction += (1 - group.fraction) * share;
+                    }
+                }
+            }
+        }
+
+        Map<String, Long> upper = new LinkedHashMap<>();
+        Map<String, Long> lower = new LinkedHashMap<>();
+        boolean grew = false;
+        boolean complete = true;
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            long cutoff = group.cutoff();
+            grew |= cutoff > group.upper;
+            complete &= group.fraction >= 1.0;
+            group.upper = cutoff;
+            upper.put(entry.getKey(), cutoff);
+            lower.put(entry.getKey(), Math.min(group.drainedId, cutoff));
+        }
+        release = new Release(date, shardsKey, upper, lower, complete);
+        if (grew) {
+            System.out.println("[DeliveryWindowPlanner] 발송 구간 풀림: id <= " + upper + (complete ? " (전체)" : "")
+                    + " (속도 " + String.format("%.1f", sustainableRate()) + "건/초)");
+        }
+        return grew;
+    }
+
+    /**
+     * 새 발송일의 시간대별 창 시작 시각, 구독자 수, 구간 경계 id
+     */
+    private void plan(LocalDate date) {
+        ZoneId serverZone = ZoneId.systemDefault();
+        Instant dayStart = deliveryLedger.currentDeliveryDayStart().atZone(serverZone).toInstant();
+        Instant nextDayStart = deliveryLedger.currentDeliveryDayStart().plusDays(1).atZone(serverZone).toInstant();
+        Map<String, Long> counts = countByZone();
+
+        groups.clear();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            Instant start = byTimeZone ? localStart(dayStart, nextDayStart, ZoneId.of(entry.getKey())) : dayStart;
+            groups.put(entry.getKey(), new Group(start, entry.getValue(), (int) Math.min(slots, entry.getValue())));
+        }
+        fillBoundaries();
+        planDate = date;
+        release = null;
+        System.out.println("[DeliveryWindowPlanner] " + date + " 발송 창 " + windowMinutes + "분, 그룹 " + counts);
+    }
+
+    /**
+     * 그룹마다 구간 i 의 마지막 id (⌈(i + 1) × count / 구간 수⌉ 번째 구독자) 를 기록
+     * 전체를 한 번에 읽지 않고 직전 경계 다음부터 LIMIT 1 OFFSET 으로 한 구간씩 건너뛰므로
+     * 드라이버가 결과를 모두 메모리에 올리지 않는다 (PK 순서로 한 번 훑는 것과 같은 양).
+     * 세는 사이 구독자가 줄었으면 채운 만큼만 남긴다.
+     */
+    private void fillBoundaries() {
+        String shard = shardLeaseManager.shardCondition("s.id");
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            Group group = entry.getValue();
+            String sql = (byTimeZone
+                    ? "SELECT s.id FROM subscriber s LEFT JOIN subscriber_time_zone z ON z.subscriber_id = s.id WHERE "
+                            + zoneFilter(entry.getKey())
+                    : "SELECT s.id FROM subscriber s WHERE 1 = 1")
+                    + shard + " AND s.id > ? ORDER BY s.id LIMIT 1 OFFSET ?";
+            int ranges = group.boundaries.length;
+            long afterId = 0;
+            long position = 0; // afterId 가 그룹에서 몇 번째 구독자인지
+            for (int i = 0; i < ranges; i++) {
+                long target = ((i + 1) * group.count + ranges - 1) / ranges;
+                List<Long> ids = jdbcTemplate.queryForList(sql, Long.class, afterId, target - position - 1);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                afterId = ids.get(0);
+                position = target;
+                group.boundaries[group.filled++] = afterId;
+            }
+            group.trim();
+        }
+    }
+
+    /**
+     * fillBoundaries 에서 한 시간대 그룹의 구독자만 고르는 조건 (zoneOf 와 같은 분류)
+     * 기본 시간대는 시간대가 없거나 다른 그룹에 속하지 않는 (잘못된 값 포함) 구독자
+     */
+    private String zoneFilter(String zone) {
+        if (!zone.equals(defaultZone)) {
+            return "z.zone_id = '" + zone + "'";
+        }
+        List<String> others = new ArrayList<>();
+        for (String other : groups.keySet()) {
+            if (!other.equals(defaultZone)) {
+                others.add("'" + other + "'");
+            }
+        }
+        return others.isEmpty() ? "1 = 1" : "(z.zone_id IS NULL OR z.zone_id NOT IN (" + String.join(", ", others) + "))";
+    }
+
+    /**
+     * 발송일 시작 이후 처음으로 현지 local-start-hour 가 되는 시각
+     * 다음 발송일이 시작되면 계획을 새로 만들므로, 창이 그 전에 끝나도록 늦어도 (다음 발송일 시작 - window-minutes) 에 연다.
+     * 이 경우 현지 시작 시각보다 일찍 열리지만 그 발송일의 다이제스트를 놓치지는 않는다.
+     */
+    private Instant localStart(Instant dayStart, Instant nextDayStart, ZoneId zone) {
+        ZonedDateTime local = dayStart.atZone(zone);
+        ZonedDateTime start = local.toLocalDate().atTime(localStartHour, 0).atZone(zone);
+        Instant localStart = start.isBefore(local) ? start.plusDays(1).toInstant() : start.toInstant();
+        Instant latest = nextDayStart.minus(Duration.ofMinutes(windowMinutes));
+        if (localStart.isAfter(latest)) {
+            localStart = latest;
+        }
+        return localStart.isBefore(dayStart) ? dayStart : localStart;
+    }
+
+    private Map<String, Long> countByZone() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        counts.put(defaultZone, 0L);
+        String shard = shardLeaseManager.shardCondition("s.id");
+        if (!byTimeZone) {
+            Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM subscriber s WHERE 1 = 1" + shard, Long.class);
+            counts.put(defaultZone, total == null ? 0 : total);
+            return counts;
+        }
+        jdbcTemplate.query("SELECT z.zone_id, COUNT(*) AS cnt FROM subscriber s "
+                + "LEFT JOIN subscriber_time_zone z ON z.subscriber_id = s.id WHERE 1 = 1" + shard + " GROUP BY z.zone_id", rs -> {
+            counts.merge(zoneOf(rs.getString("zone_id")), rs.getLong("cnt"), Long::sum);
+        });
+        return counts;
+    }
+
+    /**
+     * 저장된 시간대 - 없거나 잘못된 값이면 기본 시간대
+     */
+    private String zoneOf(String zone) {
+        if (zone == null || !SAFE_ZONE_ID.matcher(zone).matches() || !isValidZone(zone)) {
+            return defaultZone;
+        }
+        return zone;
+    }
+
+    private static boolean isValidZone(String zone) {
+        try {
+            ZoneId.of(zone);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private synchronized double sustainableRate() {
+        double limiterRate = sendRateLimiter.getCurrentRate();
+        double rate = observedRate > 0 ? Math.min(limiterRate, observedRate) : limiterRate;
+        return rate * rateUtilization;
+    }
+
+    private synchronized double releasedRatio() {
+        double total = 0;
+        double released = 0;
+        for (Group group : groups.values()) {
+            total += group.count;
+            released += group.count * group.fraction;
+        }
+        return total == 0 ? 0 : released / total;
+    }
+
+    private static class Group {
+        private final Instant start;
+        private final long count;
+        private long[] boundaries; // 구간별 마지막 id (오름차순)
+        private int filled;
+        private double fraction; // 풀린 비율 (0 ~ 1)
+        private long upper; // 마지막으로 내보낸 경계 id
+        private long drainedId; // 이 id 까지는 모두 보냄
+
+        Group(Instant start, long count, int ranges) {
+            this.start = start;
+            this.count = count;
+            this.boundaries = new long[ranges];
+        }
+
+        void trim() {
+            if (filled < boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, filled);
+            }
+        }
+
+        long lastBoundary() {
+            return boundaries.length == 0 ? 0 : boundaries[boundaries.length - 1];
+        }
+
+        /**
+         * 풀린 비율에 해당하는 id 상한 - 모두 풀렸으면 계획 이후 가입한 구독자까지
+         */
+        long cutoff() {
+            if (fraction >= 1.0) {
+                return Long.MAX_VALUE;
+            }
+            int released = (int) Math.min(boundaries.length, Math.ceil(fraction * boundaries.length));
+            return released == 0 ? 0 : boundaries[released - 1];
+        }
+    }
+
+    /**
+     * releaseCondition 이 읽는 불변 스냅샷 - 계획한 발송일과 보유 샤드에서만 유효
+     */
+    private static class Release {
+        private final LocalDate date;
+        private final String shardsKey;
+        private final Map<String, Long> upper; // 시간대 → id 상한 (포함)
+        private final Map<String, Long> lower; // 시간대 → id 하한 (제외)
+        private final boolean complete;
+
+        Release(LocalDate date, String shardsKey, Map<String, Long> upper, Map<String, Long> lower, boolean complete) {
+            this.date = date;
+            this.shardsKey = shardsKey;
+            this.upper = Collections.unmodifiableMap(upper);
+            this.lower = Collections.unmodifiableMap(lower);
+            this.complete = complete;
+        }
+    }
+}
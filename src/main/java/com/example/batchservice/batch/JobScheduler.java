@@ -1,80 +1,296 @@
 package com.example.batchservice.batch;
 
+import com.example.batchservice.client.UpstreamGuard;
 import com.example.batchservice.dto.DiscordPayload;
+import com.example.batchservice.ledger.DeliveryLedger;
+import com.example.batchservice.ledger.DeliveryRetryQueue;
 import com.example.batchservice.processor.EmailProcessor;
+import com.example.batchservice.reader.EmailReader;
+import com.example.batchservice.shard.ShardLeaseManager;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.batch.core.Job;
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PreDestroy;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
-@EnableScheduling
+@Profile("!loadtest") // 부하 테스트는 LoadTestRunner 가 직접 실행 (Discord 전송 없음)
 public class JobScheduler {
 
+    private static final String INSTANCE_PARAMETER = "instance"; // 샤딩 중 실행을 시작한 인스턴스
+    private static final String SHARDS_PARAMETER = "shards"; // 그때 보유한 샤드
+    private static final int RESTART_LOOKBACK = 20; // 이 인스턴스의 마지막 실행을 찾을 때 볼 최근 실행 수
+
     private final JobLauncher jobLauncher;
+    private final JobExplorer jobExplorer;
     private final Job userNotificationJob;
     private final JdbcTemplate jdbcTemplate;
     private final EmailProcessor emailProcessor;
-    private static boolean isRunning = false; // 실행 상태 변수
+    private final DeliveryLedger deliveryLedger;
+    private final DeliveryRetryQueue deliveryRetryQueue;
+    private final BatchMetadataPruner batchMetadataPruner;
+    private final ShardLeaseManager shardLeaseManager;
+    private final DeliveryWindowPlanner deliveryWindowPlanner;
+    private final UpstreamGuard upstreamGuard;
+    private final ObjectProvider<LightweightJobRunner> lightweightJobRunner; // batch.metadata.light-store.enabled 일 때만 있음
+    private final ScheduledExecutorService triggerExecutor = Executors.newSingleThreadScheduledExecutor(); // 배치 실행 전용 스레드
+    private final AtomicBoolean launchScheduled = new AtomicBoolean(false); // 디바운스 중인 실행 예약 여부
+    private final Set<DeliveryTriggerEvent.Reason> pendingReasons = EnumSet.noneOf(DeliveryTriggerEvent.Reason.class); // 자신으로 동기화
+    private volatile Long subscriberWatermark = null; // 마지막으로 확인한 최대 구독자 id
+    private int failedRunRelaunches = 0; // 실패한 실행을 연달아 다시 실행한 횟수 (트리거 스레드에서만 사용)
+    private ScheduledFuture<?> failedRunProbe; // 예약된 실패 실행 확인 (트리거 스레드에서만 사용)
+    private ScheduledFuture<?> retryWakeup; // 다음 재시도 시각에 맞춘 신호 (트리거 스레드에서만 사용)
+    private volatile boolean isRunning = false; // 실행 상태 - 트리거 스레드에서만 바꾸고 @Scheduled 스레드에서 읽음
     private static LocalDate lastWebhookSentDate = null; // 마지막으로 Webhook 전송된 날짜
     private static final AtomicBoolean isWebhookSentToday = new AtomicBoolean(false); // 하루에 한번만 Webhook 보내기 위한 상태
 
     @Value("${discord.webhook.url}")
     private String DISCORD_WEBHOOK_URL;
+
+    @Value("${batch.trigger.debounce-ms:3000}") // 이 시간 동안 들어온 신호는 한 번의 실행으로 합침
+    private long debounceMillis;
+
+    @Value("${batch.trigger.failed-run-probe-ms:60000}") // 실패한 실행을 다시 실행하는 첫 간격 (이후 두 배씩)
+    private long failedRunProbeMillis;
+
+    @Value("${batch.trigger.failed-run-max-backoff-ms:1800000}")
+    private long failedRunMaxBackoffMillis;
+
+    @Value("${batch.email.retry.probe-ms:30000}") // 재시도 시각이 지난 행이 남아 있어도 이 간격보다 자주 깨우지 않음
+    private long retryProbeMillis;
+
+    @Value("${batch.trigger.watermark-probe.enabled:false}") // 구독자 추가를 알려주지 못하는 서비스가 있을 때만 켬
+    private boolean watermarkProbeEnabled;
+
     @Autowired
-    public JobScheduler(JobLauncher jobLauncher, Job userNotificationJob, JdbcTemplate jdbcTemplate, EmailProcessor emailProcessor) {
+    public JobScheduler(JobLauncher jobLauncher, JobExplorer jobExplorer, Job userNotificationJob, JdbcTemplate jdbcTemplate, EmailProcessor emailProcessor,
+                        DeliveryLedger deliveryLedger, DeliveryRetryQueue deliveryRetryQueue, BatchMetadataPruner batchMetadataPruner,
+                        ShardLeaseManager shardLeaseManager, DeliveryWindowPlanner deliveryWindowPlanner, UpstreamGuard upstreamGuard,
+                        ObjectProvider<LightweightJobRunner> lightweightJobRunner) {
         this.jobLauncher = jobLauncher;
+        this.jobExplorer = jobExplorer;
         this.userNotificationJob = userNotificationJob;
         this.jdbcTemplate = jdbcTemplate;
         this.emailProcessor = emailProcessor;
+        this.deliveryLedger = deliveryLedger;
+        this.deliveryRetryQueue = deliveryRetryQueue;
+        this.batchMetadataPruner = batchMetadataPruner;
+        this.shardLeaseManager = shardLeaseManager;
+        this.deliveryWindowPlanner = deliveryWindowPlanner;
+        this.upstreamGuard = upstreamGuard;
+        this.lightweightJobRunner = lightweightJobRunner;
+    }
+
+    /**
+     * 배치 실행 신호 수신 - debounce-ms 동안 들어온 신호를 모아 한 번만 실행
+     */
+    @EventListener
+    public void onDeliveryTrigger(DeliveryTriggerEvent event) {
+        System.out.println("[Scheduler] 실행 신호 수신: " + event.getReason());
+        synchronized (pendingReasons) {
+            pendingReasons.add(event.getReason());
+        }
+        scheduleLaunch();
+    }
+
+    private void scheduleLaunch() {
+        if (launchScheduled.compareAndSet(false, true)) {
+            triggerExecutor.schedule(() -> {
+                launchScheduled.set(false);
+                scheduleJob(drainReasons());
+            }, debounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Set<DeliveryTriggerEvent.Reason> drainReasons() {
+        synchronized (pendingReasons) {
+            Set<DeliveryTriggerEvent.Reason> reasons = EnumSet.copyOf(pendingReasons);
+            pendingReasons.clear();
+            return reasons;
+        }
+    }
+
+    /**
+     * 기동 직후 밀린 발송 확인 - 이후에는 실행 신호(구독자 추가 알림, 발송일 시작, 재시도 시각, 발송 창)로만 DB 를 본다
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        onDeliveryTrigger(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.STARTUP));
+    }
+
+    /**
+     * 발송 창을 쓰면 slice-interval-ms 마다 다음 몫의 구독자를 풀고, 새로 풀렸으면 실행 신호
+     * 직전 몫을 다 보냈을 때만 측정한 속도만큼 앞당겨 풀어 SMTP 가 감당하는 속도로 창 안에 고르게 보낸다.
+     */
+    @Scheduled(fixedDelayString = "${batch.delivery.window.slice-interval-ms:60000}")
+    public void releaseWindowSlice() {
+        if (!deliveryWindowPlanner.isEnabled() || deliveryWindowPlanner.isFullyReleased()) {
+            return; // 오늘 몫을 모두 풀었으면 다음 발송일(DAILY_DIGEST 실행이 새로 계획)까지 DB 를 보지 않음
+        }
+        boolean drained = !isRunning && !hasPendingEmail();
+        if (deliveryWindowPlanner.advance(drained)) {
+            onDeliveryTrigger(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.WINDOW_SLICE));
+        }
+    }
+
+    /**
+     * 실행이 실패/중단되면 failed-run-probe-ms 부터 두 배씩 (failed-run-max-backoff-ms 상한) 늘린 간격 뒤에 한 번 확인 예약
+     * 주기적으로 폴링하지 않으므로 실행이 실패하지 않는 한 배치 메타데이터를 조회하지 않는다.
+     */
+    private void scheduleFailedRunProbe(long delayMillis) {
+        if (failedRunProbe != null) {
+            failedRunProbe.cancel(false);
+        }
+        failedRunProbe = triggerExecutor.schedule(this::probeFailedRun, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 오늘 발송일에 시작한 이 인스턴스의 마지막 실행이 실패/중단된 채 남아 있고 보낼 메일이 있으면 다시 실행 신호
+     * 다른 신호가 없어도 실패한 실행을 마지막 커밋 지점부터 이어서 처리한다 (nextJobParameters).
+     * 상류 조회 실패로 템플릿을 만들지 못해 실패한 경우가 대부분이므로 회로가 열려 있는 동안은 기다린다.
+     * 트리거 스레드에서 실행되므로 배치 실행과 겹치지 않는다.
+     */
+    private void probeFailedRun() {
+        JobExecution lastExecution = restartableExecution();
+        if (lastExecution == null || lastExecution.getStartTime() == null) {
+            failedRunRelaunches = 0; // 이어서 처리할 실행 없음 (메타데이터를 남기지 않는 재시도 실행 포함)
+            scheduleRetryWakeup();
+            return;
+        }
+        LocalDateTime startedAt = LocalDateTime.ofInstant(lastExecution.getStartTime().toInstant(), ZoneId.systemDefault());
+        if (startedAt.isBefore(deliveryLedger.currentDeliveryDayStart())) {
+            failedRunRelaunches = 0;
+            return; // 지난 발송일의 실행 - 새 발송일은 DAILY_DIGEST 로 시작
+        }
+        if (!upstreamGuard.isCallPermitted()) {
+            scheduleFailedRunProbe(failedRunProbeMillis); // 회로가 half-open 이 되면 시험 호출을 겸해 다시 실행
+            return;
+        }
+        if (hasPendingEmail()) {
+            failedRunRelaunches++;
+            System.out.println("[Scheduler] 실패한 실행 다시 실행 (" + failedRunRelaunches + "회째)");
+            onDeliveryTrigger(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.FAILED_RUN));
+        } else {
+            scheduleRetryWakeup();
+        }
     }
 
     /**
-     * 5분마다 실행하며, 남은 이메일이 있으면 전송 및 Discord Webhook 전송
+     * 오늘 가장 이른 재시도 시각에 재시도 신호 예약 - 대기열을 주기적으로 훑지 않고 실행이 끝날 때마다 한 번만 조회한다
+     * 시각이 이미 지났는데 남아 있으면 (직전 실행이 처리하지 못함) probe-ms 뒤로 미룬다.
      */
-    @Scheduled(cron = "0 0/1 * * * ?") // 5분마다 실행
-    public synchronized void scheduleJob() {
-        if (isRunning) {
-            System.out.println("[Scheduler] 이미 실행 중이므로 새로운 Job 실행 안 함.");
+    private void scheduleRetryWakeup() {
+        if (retryWakeup != null) {
+            retryWakeup.cancel(false);
+            retryWakeup = null;
+        }
+        LocalDateTime due = deliveryRetryQueue.nextDueAt();
+        if (due == null) {
             return;
         }
+        long delayMillis = Duration.between(LocalDateTime.now(), due).toMillis();
+        retryWakeup = triggerExecutor.schedule(
+                () -> onDeliveryTrigger(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.RETRY_DUE)),
+                delayMillis > 0 ? delayMillis : retryProbeMillis, TimeUnit.MILLISECONDS);
+    }
 
-        int count = getPendingEmailCount();
-        System.out.println("[Scheduler] 현재 남은 이메일 개수: " + count);
+    /**
+     * 구독자 테이블의 최대 id(워터마크)만 가볍게 확인 - 늘었으면 새 구독자 신호
+     * 새 구독자는 다른 서비스가 /triggers/subscribers 로 알려주므로, 알려주지 못하는 경우를 위한 느린 안전망 (기본 꺼짐)
+     */
+    @Scheduled(fixedDelayString = "${batch.trigger.watermark-probe-ms:300000}")
+    public void probeSubscriberWatermark() {
+        if (!watermarkProbeEnabled) {
+            return;
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM subscriber", Long.class);
+        Long previous = subscriberWatermark;
+        subscriberWatermark = maxId;
+        if (previous != null && maxId != null && maxId > previous) {
+            onDeliveryTrigger(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.NEW_SUBSCRIBER));
+        }
+    }
 
-        if (count > 0) {
+    /**
+     * 오늘 보낼 이메일이 남아있으면 전송 및 Discord Webhook 전송 (실행 신호로만 호출됨)
+     * 모인 신호가 재시도뿐이면 재시도 대기열만 읽는 실행(scope=retries)으로 한다.
+     * 트리거 스레드 하나에서만 실행되므로 겹치지 않는다 - 실행 중에 들어온 신호는 예약된 다음 실행이 이 실행 뒤에 처리한다.
+     */
+    private void scheduleJob(Set<DeliveryTriggerEvent.Reason> reasons) {
+        // 발송일이 바뀌었으면 실행 전에 새 발송일의 발송 창부터 계획 (어제 계획으로 한꺼번에 보내지 않도록)
+        deliveryWindowPlanner.advance(false);
+        boolean retriesOnly = reasons.equals(EnumSet.of(DeliveryTriggerEvent.Reason.RETRY_DUE));
+        boolean failed = false;
+        if (retriesOnly ? deliveryRetryQueue.hasDue() : hasPendingEmail()) {
             try {
                 isRunning = true; // 실행 상태 변경
                 System.out.println("[Scheduler] 배치 실행 시작.");
 
-                // 이메일 템플릿을 Discord로 전송
-                if (isWebhookSentToday.compareAndSet(false, true)) {
-                    sendToDiscord(emailProcessor.generateDiscordMessage());
+                // 이메일 템플릿을 Discord로 전송 (여러 인스턴스면 샤드 0 담당만)
+                if (shardLeaseManager.isLeader() && isWebhookSentToday.compareAndSet(false, true)) {
+                    String discordMessage = emailProcessor.generateDiscordMessage();
+                    if (discordMessage != null) {
+                        sendToDiscord(discordMessage);
+                    } else {
+                        isWebhookSentToday.set(false); // 데이터가 없으면 다음 실행에서 다시 시도
+                    }
                 }
 
-                JobExecution jobExecution = jobLauncher.run(userNotificationJob, new JobParametersBuilder()
-                        .addLong("timestamp", System.currentTimeMillis())
-                        .toJobParameters());
+                long startNanos = System.nanoTime();
+                JobExecution jobExecution;
+                LightweightJobRunner lightRunner = retriesOnly ? lightweightJobRunner.getIfAvailable() : null;
+                if (lightRunner != null) {
+                    // 재시도 실행은 메타데이터를 DB 에 남기지 않음 (실행 이력은 발송 기록/재시도 대기열에 있음)
+                    jobExecution = lightRunner.run(newJobParameters(true));
+                } else {
+                    jobExecution = jobLauncher.run(userNotificationJob, nextJobParameters(retriesOnly));
+                }
 
                 System.out.println("[Scheduler] 배치 실행 완료. 상태: " + jobExecution.getStatus());
+                failed = jobExecution.getStatus() == BatchStatus.FAILED || jobExecution.getStatus() == BatchStatus.STOPPED;
+                if (!failed) {
+                    failedRunRelaunches = 0;
+                }
 
-
+                // 발송 창이 다음 몫을 정할 때 쓰는 실제 처리량
+                long written = jobExecution.getStepExecutions().stream().mapToLong(StepExecution::getWriteCount).sum();
+                deliveryWindowPlanner.recordRun(written, Duration.ofNanos(System.nanoTime() - startNanos));
 
             } catch (Exception e) {
+                failed = true;
                 System.err.println("이메일 배치 실행 중 오류 발생: " + e.getMessage());
             } finally {
                 isRunning = false; // 실행 완료 후 상태 변경
@@ -82,15 +298,83 @@ public class JobScheduler {
         } else {
             System.out.println("[Scheduler] 모든 이메일이 처리되어 실행 안 함.");
         }
+
+        if (failed) {
+            long backoff = Math.min(failedRunMaxBackoffMillis, failedRunProbeMillis << Math.min(failedRunRelaunches, 20));
+            System.out.println("[Scheduler] 실행 실패 - " + backoff / 1000 + "초 뒤에 이어서 실행할지 확인");
+            scheduleFailedRunProbe(backoff);
+        } else {
+            scheduleRetryWakeup(); // 이번 실행에서 실패한 주소의 재시도 시각까지 대기
+        }
     }
 
     /**
-     * 아직 보내지 않은 이메일 개수 조회
+     * 직전 실행이 실패/중단되었으면 같은 파라미터로 재시작하여 마지막 커밋 지점부터 이어서 처리
      */
-    private int getPendingEmailCount() {
-        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM subscriber WHERE sent = FALSE", Integer.class);
+    private JobParameters nextJobParameters(boolean retriesOnly) {
+        JobExecution lastExecution = restartableExecution();
+        if (lastExecution != null) {
+            System.out.println("[Scheduler] 실패한 실행 재시작: instanceId=" + lastExecution.getJobInstance().getInstanceId());
+            return lastExecution.getJobParameters();
+        }
+        return newJobParameters(retriesOnly);
     }
 
+    /**
+     * 이어서 처리할 실패/중단된 실행 - 없으면 null
+     * 샤딩 중이면 이 인스턴스가 시작한 마지막 실행만 보고, 그때와 보유 샤드가 같을 때만 재시작한다.
+     * Reader 의 체크포인트(세그먼트, 마지막 id)는 그 실행이 읽던 샤드 기준이므로 다른 인스턴스의 실행이나
+     * 샤드가 바뀐 뒤의 재시작은 구독자를 건너뛸 수 있고, 두 인스턴스가 같은 실행을 재시작하는 일도 막는다.
+     */
+    private JobExecution restartableExecution() {
+        for (JobInstance instance : jobExplorer.findJobInstancesByJobName(userNotificationJob.getName(), 0, RESTART_LOOKBACK)) {
+            JobExecution lastExecution = jobExplorer.getLastJobExecution(instance);
+            if (lastExecution == null) {
+                continue;
+            }
+            JobParameters parameters = lastExecution.getJobParameters();
+            if (shardLeaseManager.isEnabled()
+                    && !shardLeaseManager.getInstanceId().equals(parameters.getString(INSTANCE_PARAMETER))) {
+                continue; // 다른 인스턴스의 실행
+            }
+            boolean failed = lastExecution.getStatus() == BatchStatus.FAILED || lastExecution.getStatus() == BatchStatus.STOPPED;
+            boolean sameShards = !shardLeaseManager.isEnabled()
+                    || shardLeaseManager.heldShardsKey().equals(parameters.getString(SHARDS_PARAMETER));
+            return failed && sameShards ? lastExecution : null;
+        }
+        return null;
+    }
+
+    private JobParameters newJobParameters(boolean retriesOnly) {
+        JobParametersBuilder builder = new JobParametersBuilder()
+                .addLong("timestamp", System.currentTimeMillis())
+                .addString(EmailReader.SCOPE_PARAMETER, retriesOnly ? EmailReader.SCOPE_RETRIES : EmailReader.SCOPE_ALL);
+        if (shardLeaseManager.isEnabled()) {
+            builder.addString(INSTANCE_PARAMETER, shardLeaseManager.getInstanceId())
+                    .addString(SHARDS_PARAMETER, shardLeaseManager.heldShardsKey());
+        }
+        return builder.toJobParameters();
+    }
+
+    /**
+     * 오늘 아직 보내지 않은 이메일이 하나라도 있는지 확인 (전체 COUNT 대신 첫 행에서 멈춤)
+     * 재시도를 기다리는 주소와 dead-letter 는 세지 않으므로 실패한 주소 때문에 실행이 반복되지 않는다.
+     * 샤딩 중이면 이 인스턴스가 임대한 샤드만, 발송 창을 쓰면 발송 구간이 풀린 구독자만 본다.
+     */
+    private boolean hasPendingEmail() {
+        Date deliveryDate = Date.valueOf(deliveryLedger.currentDeliveryDate());
+        return !jdbcTemplate.queryForList(
+                "SELECT s.id FROM subscriber s WHERE " + DeliveryLedger.notDeliveredCondition("?")
+                        + " AND " + DeliveryRetryQueue.notWaitingCondition("?", "?")
+                        + shardLeaseManager.shardCondition("s.id") + deliveryWindowPlanner.releaseCondition("s.id") + " LIMIT 1",
+                Long.class, deliveryDate, deliveryDate, Timestamp.valueOf(LocalDateTime.now())).isEmpty();
+    }
+
+
+    @PreDestroy
+    public void close() {
+        triggerExecutor.shutdown();
+    }
 
     private void sendToDiscord(String message) {
         if (lastWebhookSentDate == null || LocalDate.now().isAfter(lastWebhookSentDate)) {
@@ -123,21 +407,29 @@ public class JobScheduler {
 
 
     /**
-     * 한국 시간 아침 7시에 모든 이메일의 'sent' 상태를 False로 초기화하고 템플릿 캐시도 초기화
+     * 한국 시간 아침 7시에 템플릿 캐시를 초기화하고 보관 기간이 지난 발송 기록과 배치 메타데이터를 정리
+     * 발송 상태는 발송일별 기록(delivery_ledger)이므로 이 시각부터 새 발송일이 되어 따로 초기화할 필요가 없다.
      */
     @Scheduled(cron = "0 0 10 * * ?") // 한국 시간 아침 7시에 실행 (UTC 10시)
     public void resetEmailStatusAndTemplate() {
         try {
-            // 이메일 상태 초기화
-            System.out.println("[Scheduler] 한국 시간 아침 7시 - 이메일 상태 초기화 시작.");
-            jdbcTemplate.update("UPDATE subscriber SET sent = FALSE WHERE sent = TRUE"); // 상태를 False로 초기화
-            System.out.println("[Scheduler] 이메일 상태 초기화 완료.");
+            // 오래된 발송 기록 정리
+            System.out.println("[Scheduler] 한국 시간 아침 7시 - 새 발송일 시작: " + deliveryLedger.currentDeliveryDate());
+            int pruned = deliveryLedger.prune();
+            System.out.println("[Scheduler] 보관 기간이 지난 발송 기록 " + pruned + "건 삭제.");
+            int prunedRetries = deliveryRetryQueue.prune();
+            System.out.println("[Scheduler] 보관 기간이 지난 재시도/dead-letter 기록 " + prunedRetries + "건 삭제.");
+            int prunedExecutions = batchMetadataPruner.prune();
+            System.out.println("[Scheduler] 보관 기간이 지난 배치 실행 메타데이터 " + prunedExecutions + "건 삭제.");
 
             // 템플릿 캐시 초기화
             emailProcessor.resetTemplateCache(); // 템플릿 캐시 초기화
 
             // Discord Webhook 전송 상태 초기화
             isWebhookSentToday.set(false); // 하루에 한 번만 전송되도록 상태 초기화
+
+            // 새 발송일 시작 - 바로 발송 실행
+            onDeliveryTrigger(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.DAILY_DIGEST));
         } catch (Exception e) {
             System.err.println("이메일 상태 초기화 또는 템플릿 초기화 중 오류 발생: " + e.getMessage());
         }
@@ -0,0 +1,35 @@
+package com.example.batchservice.batch;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+
+/**
+ * 메타데이터를 메모리에만 남기는 실행기 - 자주 도는 재시도 실행(scope=retries)용
+ * - 재시도 실행은 발송 기록/재시도 대기열만으로 다시 해도 안전하므로 JobRepository 의 재시작 정보가 필요 없다.
+ * - 실행이 끝날 때마다 저장소를 비워 메모리도 실행 횟수와 관계없이 일정하다.
+ * batch.metadata.light-store.enabled=true 일 때만 BatchConfig 가 만든다.
+ */
+@SuppressWarnings("deprecation") // MapJobRepositoryFactoryBean - 보관할 이력이 없으므로 DB 없는 저장소로 충분
+public class LightweightJobRunner {
+
+    private final JobLauncher jobLauncher;
+    private final Job job;
+    private final MapJobRepositoryFactoryBean repositoryFactory;
+
+    public LightweightJobRunner(JobLauncher jobLauncher, Job job, MapJobRepositoryFactoryBean repositoryFactory) {
+        this.jobLauncher = jobLauncher;
+        this.job = job;
+        this.repositoryFactory = repositoryFactory;
+    }
+
+    public synchronized JobExecution run(JobParameters jobParameters) throws Exception {
+        try {
+            return jobLauncher.run(job, jobParameters);
+        } finally {
+            repositoryFactory.clear();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.batchservice.batch;
+
+import com.example.batchservice.ledger.DeliveryLedger;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 미발송 구독자의 id 범위를 gridSize 개의 연속 구간으로 나누는 Partitioner
+ * 각 파티션의 ExecutionContext 에 minId / maxId 를 넣어 워커 Reader 가 해당 구간만 읽도록 한다.
+ */
+@Component
+public class SubscriberIdRangePartitioner implements Partitioner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeliveryLedger deliveryLedger;
+
+    public SubscriberIdRangePartitioner(JdbcTemplate jdbcTemplate, DeliveryLedger deliveryLedger) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryLedger = deliveryLedger;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, Long> bounds = jdbcTemplate.queryForObject(
+                "SELECT MIN(s.id) AS min_id, MAX(s.id) AS max_id FROM subscriber s WHERE " + DeliveryLedger.notDeliveredCondition("?"),
+                (rs, rowNum) -> {
+                    Map<String, Long> result = new HashMap<>();
+                    long min = rs.getLong("min_id");
+                    result.put("min", rs.wasNull() ? null : min);
+                    result.put("max", rs.getLong("max_id"));
+                    return result;
+                },
+                Date.valueOf(deliveryLedger.currentDeliveryDate()));
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        if (bounds == null || bounds.get("min") == null) {
+            return partitions; // 보낼 구독자 없음
+        }
+
+        long minId = bounds.get("min");
+        long maxId = bounds.get("max");
+        long rangeSize = Math.max(1, (maxId - minId) / gridSize + 1);
+
+        int index = 0;
+        for (long start = minId; start <= maxId; start += rangeSize) {
+            ExecutionContext context = new ExecutionContext();
+            context.putLong("minId", start);
+            context.putLong("maxId", Math.min(start + rangeSize - 1, maxId));
+            partitions.put("partition" + index++, context);
+        }
+        System.out.println("[SubscriberIdRangePartitioner] id " + minId + "~" + maxId + " 구간을 " + partitions.size() + "개 파티션으로 분할");
+        return partitions;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.batchservice.client;
+
+import com.example.batchservice.dto.DigestSegment;
+import com.example.batchservice.dto.NewsData;
+import com.example.batchservice.dto.UpstreamSnapshot;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * flowbit 가격/뉴스 API 클라이언트
+ * 가격 1건 + 태그별 뉴스를 공유 커넥션 풀에서 동시에 호출하므로 전체 소요 시간은 가장 느린 호출 하나와 같다.
+ * 응답의 ETag / Last-Modified 를 기억해 두고 조건부 요청을 보내며, 304 이면 직전 응답을 그대로 사용한다.
+ */
+@Component
+public class FlowbitApiClient {
+
+    public static final String PRICE_API_URL = "https://api.flowbit.co.kr/bitcoin-service/predicted-value-list";
+    public static final String NEWS_API_URL = "https://api.flowbit.co.kr/board-service/api/v1/news?sort=createdAt,desc&tag=";
+    public static final List<String> NEWS_TAGS = List.copyOf(DigestSegment.NEWS_TAG_BY_COIN.values()); // 비트코인, 이더리움, 리플
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final BatchMetrics batchMetrics;
+    private final NewsFeed newsFeed;
+    private final ExecutorService executorService = Executors.newFixedThreadPool(NEWS_TAGS.size() + 1); // 가격 1 + 뉴스 태그 수
+    private final Map<String, ValidatedResponse> validatedResponses = new ConcurrentHashMap<>(); // URL 별 마지막 응답
+
+    @Value("${batch.upstream.price-url:" + PRICE_API_URL + "}") // 부하 테스트에서는 로컬 대역으로 교체
+    private String priceApiUrl;
+
+    @Value("${batch.upstream.news-url:" + NEWS_API_URL + "}")
+    private String newsApiUrl;
+
+    public FlowbitApiClient(RestTemplate upstreamRestTemplate, ObjectMapper objectMapper, BatchMetrics batchMetrics,
+                            NewsFeed newsFeed) {
+        this.restTemplate = upstreamRestTemplate;
+        this.objectMapper = objectMapper;
+        this.batchMetrics = batchMetrics;
+        this.newsFeed = newsFeed;
+    }
+
+    /**
+     * 가격과 모든 태그의 뉴스를 동시에 조회 - 하나라도 실패하면 예외
+     * 뉴스는 NewsFeed 가 태그별 커서 이후의 새 기사만 받아 창을 갱신한다.
+     */
+    public UpstreamSnapshot fetchSnapshot() {
+        CompletableFuture<JsonNode> priceFuture = CompletableFuture.supplyAsync(() -> fetch(priceApiUrl, "price"), executorService);
+
+        Map<String, CompletableFuture<List<NewsData>>> newsFutures = new LinkedHashMap<>();
+        for (String tag : NEWS_TAGS) {
+            newsFutures.put(tag, CompletableFuture.supplyAsync(() -> newsFeed.refresh(tag,
+                    page -> fetch(newsApiUrl + tag + "&page=" + page + "&size=" + newsFeed.getPageSize(), "news-" + tag)),
+                    executorService));
+        }
+
+        try {
+            JsonNode priceRoot = priceFuture.join();
+            Map<String, List<NewsData>> news = new LinkedHashMap<>();
+            for (Map.Entry<String, CompletableFuture<List<NewsData>>> entry : newsFutures.entrySet()) {
+                news.put(entry.getKey(), entry.getValue().join());
+            }
+            return new UpstreamSnapshot(priceRoot, news, System.currentTimeMillis());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IllegalStateException) {
+                throw (IllegalStateException) e.getCause(); // fetch 에서 던진 원래 예외
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param endpoint 지표 태그용 이름 (price, news-태그)
+     */
+    private JsonNode fetch(String url, String endpoint) {
+        Timer.Sample sample = batchMetrics.start();
+        String outcome = "error";
+        try {
+            ValidatedResponse previous = validatedResponses.get(url);
+            HttpHeaders headers = new HttpHeaders();
+            if (previous != null) {
+                if (previous.etag != null) {
+                    headers.setIfNoneMatch(previous.etag);
+                }
+                if (previous.lastModified > 0) {
+                    headers.setIfModifiedSince(previous.lastModified);
+                }
+            }
+
+            ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && previous != null) {
+                outcome = "not_modified";
+                return previous.body; // 변경 없음 - 본문 다운로드/파싱 생략
+            }
+
+            JsonNode body = objectMapper.readTree(response.getBody());
+            String etag = response.getHeaders().getETag();
+            long lastModified = response.getHeaders().getLastModified();
+            if (etag != null || lastModified > 0) {
+                validatedResponses.put(url, new ValidatedResponse(etag, lastModified, body));
+            }
+            outcome = "ok";
+            return body;
+        } catch (Exception e) {
+            throw new IllegalStateException("[FlowbitApiClient] API 호출 실패: " + url, e);
+        } finally {
+            sample.stop(batchMetrics.timer("upstream.api.latency", "endpoint", endpoint, "outcome", outcome));
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executorService.shutdown();
+    }
+
+    private static class ValidatedResponse {
+        private final String etag;
+        private final long lastModified;
+        private final JsonNode body;
+
+        ValidatedResponse(String etag, long lastModified, JsonNode body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+}
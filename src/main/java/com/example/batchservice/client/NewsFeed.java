@@ -0,0 +1,139 @@
+package com.example.batchservice.client;
+
+import com.example.batchservice.dto.NewsData;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.jsoup.Jsoup;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * 태그별 최신 뉴스 창(window) - 마지막으로 본 가장 새 기사(link)를 커서로 기억하고 그보다 새 기사만 받아 붙인다
+ * - 뉴스 API 는 최신순 페이지만 제공하므로 page-size 만큼씩 앞에서부터 읽다가 커서를 만나면 멈춘다.
+ *   평소에는 첫 페이지 한 번(대개 304)으로 끝나고, 창을 window-per-tag 로 키워도 처음 채울 때만 페이지가 늘어난다.
+ * - 기사 HTML 정리(Jsoup)는 새로 들어온 기사에만 한 번 하고, 정리된 NewsData 를 창에 보관해 렌더링마다 다시 파싱하지 않는다.
+ */
+@Component
+public class NewsFeed {
+
+    private final Map<String, TagWindow> windows = new ConcurrentHashMap<>();
+
+    @Value("${batch.news.window-per-tag:3}") // 태그마다 다이제스트에 넣을 최신 기사 수
+    private int windowPerTag;
+
+    @Value("${batch.news.page-size:3}") // 한 번에 요청할 기사 수 - 갱신 주기 동안 새로 올라오는 기사 수 정도면 충분
+    private int pageSize;
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * 커서보다 새 기사를 받아 창을 갱신하고 현재 창(최신순)을 돌려준다
+     * 페이지 조회(네트워크)는 잠금 밖에서 하고, 창을 합치고 커서를 옮길 때만 잠근다 - 느린 응답이 같은 태그의 다른 조회를 막지 않도록.
+     * 동시에 조회했다면 나중에 시작한 조회가 더 새 데이터이므로, 그 결과가 이미 반영되었으면 먼저 시작한 쪽은 버린다.
+     *
+     * @param pageFetcher 페이지 번호(0부터)로 최신순 뉴스 응답을 가져오는 함수 - 실패하면 예외 (창은 그대로)
+     */
+    public List<NewsData> refresh(String tag, IntFunction<JsonNode> pageFetcher) {
+        TagWindow window = windows.computeIfAbsent(tag, key -> new TagWindow());
+        String cursor;
+        long ticket;
+        synchronized (window) {
+            cursor = window.cursor;
+            ticket = ++window.lastTicket;
+        }
+
+        int maxPages = (windowPerTag + pageSize - 1) / pageSize;
+        List<NewsData> fresh = new ArrayList<>();
+        boolean reachedCursor = false;
+        for (int page = 0; page < maxPages && !reachedCursor && fresh.size() < windowPerTag; page++) {
+            JsonNode content = pageFetcher.apply(page).path("data").path("content");
+            for (JsonNode item : content) {
+                if (item.path("link").asText().equals(cursor)) {
+                    reachedCursor = true; // 여기부터는 이미 창에 있음
+                    break;
+                }
+                fresh.add(clean(item, tag));
+                if (fresh.size() >= windowPerTag) {
+                    break;
+                }
+            }
+            if (content.size() < pageSize) {
+                break; // 마지막 페이지
+            }
+        }
+
+        synchronized (window) {
+            if (fresh.isEmpty() || window.appliedTicket > ticket) {
+                return window.items; // 새 기사 없음, 또는 나중에 시작한 조회가 이미 반영됨
+            }
+
+            // 새 기사 + 기존 창 (link 중복 제거, 최신순 유지)
+            Map<String, NewsData> merged = new LinkedHashMap<>();
+            for (NewsData news : fresh) {
+                merged.putIfAbsent(news.getLink(), news);
+            }
+            for (NewsData news : window.items) {
+                merged.putIfAbsent(news.getLink(), news);
+            }
+            List<NewsData> items = new ArrayList<>(merged.values());
+            window.items = List.copyOf(items.subList(0, Math.min(windowPerTag, items.size())));
+            window.cursor = window.items.get(0).getLink();
+            window.appliedTicket = ticket;
+            System.out.println("[NewsFeed] " + tag + " 새 기사 " + fresh.size() + "건 반영 (창 " + window.items.size() + "건)");
+            return window.items;
+        }
+    }
+
+    /**
+     * 저장된 스냅샷으로 빈 창을 채움 (재시작 직후 첫 갱신이 창 전체를 다시 받지 않도록)
+     */
+    public void seed(String tag, List<NewsData> items) {
+        TagWindow window = windows.computeIfAbsent(tag, key -> new TagWindow());
+        synchronized (window) {
+            if (window.cursor == null && !items.isEmpty()) {
+                window.items = List.copyOf(items.subList(0, Math.min(windowPerTag, items.size())));
+                window.cursor = window.items.get(0).getLink();
+            }
+        }
+    }
+
+    /**
+     * 뉴스 응답 한 페이지를 정리된 NewsData 로 (커서 없이 전부) - 벤치마크용
+     */
+    public static List<NewsData> cleanPage(JsonNode root, String tag) {
+        List<NewsData> newsDataList = new ArrayList<>();
+        root.path("data").path("content").forEach(item -> newsDataList.add(clean(item, tag)));
+        return newsDataList;
+    }
+
+    /**
+     * 기사 하나의 제목/요약에서 HTML 태그 제거
+     */
+    static NewsData clean(JsonNode item, String tag) {
+        return new NewsData(
+                Jsoup.parse(item.get("title").asText()).text(),
+                item.get("link").asText(),
+                Jsoup.parse(item.get("description").asText()).text(),
+                item.get("img").asText(),
+                tag
+        );
+    }
+
+    /**
+     * 태그 하나의 창 - 자신으로 동기화
+     */
+    private static class TagWindow {
+        private String cursor; // 창에서 가장 새 기사의 link
+        private List<NewsData> items = List.of();
+        private long lastTicket; // 시작한 조회 순번
+        private long appliedTicket; // 창에 마지막으로 반영한 조회 순번
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.batchservice.client;
+
+import com.example.batchservice.dto.UpstreamSnapshot;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * flowbit 스냅샷 조회를 bulkhead → circuit breaker → time limiter 순서로 감싼다
+ * - time limiter: timeout-ms 안에 끝나지 않으면 호출한 스레드는 기다리지 않고 실패로 처리 (HTTP 요청은 소켓 타임아웃까지 별도 스레드에서 마무리)
+ *   취소해도 블로킹 I/O 는 멈추지 않으므로 조회 스레드는 max-concurrent-calls 개로 고정하고 대기열 없이 운영한다.
+ *   시간 초과한 조회가 아직 스레드를 붙잡고 있으면 새 조회는 쌓이지 않고 바로 거절(rejected)된다.
+ *   소켓 read 타임아웃(batch.http.read-timeout-ms)은 기본값이 timeout-ms 라 붙잡힌 스레드도 그 안에 풀린다.
+ * - circuit breaker: 최근 호출 중 실패/느린 호출 비율이 임계값을 넘으면 open-ms 동안 호출하지 않고 바로 실패 → 호출 측은 마지막 정상 스냅샷 사용
+ *   open-ms 가 지나면 호출이 없어도 half-open 으로 바뀌어 isCallPermitted 로 다시 시도할 때를 알 수 있다.
+ * - bulkhead: 동시에 진행할 조회 수 상한 - 넘치면 대기하지 않고 바로 실패 (느린 상류가 배치 스레드를 붙잡지 않도록)
+ * 실패는 모두 IllegalStateException 으로 던진다.
+ */
+@Component
+public class UpstreamGuard {
+
+    private static final String NAME = "flowbit-upstream";
+
+    private final FlowbitApiClient flowbitApiClient;
+    private final MeterRegistry meterRegistry;
+    private ThreadPoolExecutor executorService;
+    private CircuitBreaker circuitBreaker;
+    private TimeLimiter timeLimiter;
+    private Bulkhead bulkhead;
+
+    @Value("${batch.upstream.guard.timeout-ms:3000}") // 스냅샷 한 번(가격 + 뉴스 동시 조회)에 기다릴 시간
+    private long timeoutMillis;
+
+    @Value("${batch.upstream.guard.max-concurrent-calls:2}")
+    private int maxConcurrentCalls;
+
+    @Value("${batch.upstream.guard.failure-rate-threshold:50}") // % - 실패 비율이 이 이상이면 open
+    private float failureRateThreshold;
+
+    @Value("${batch.upstream.guard.slow-call-ms:2000}") // 이보다 오래 걸리면 느린 호출
+    private long slowCallMillis;
+
+    @Value("${batch.upstream.guard.slow-call-rate-threshold:80}") // % - 느린 호출 비율이 이 이상이면 open
+    private float slowCallRateThreshold;
+
+    @Value("${batch.upstream.guard.window-size:10}") // 비율을 계산할 최근 호출 수
+    private int windowSize;
+
+    @Value("${batch.upstream.guard.minimum-calls:3}") // 이만큼 호출한 뒤부터 비율 판단
+    private int minimumCalls;
+
+    @Value("${batch.upstream.guard.open-ms:60000}") // open 유지 시간 - 지나면 시험 호출 1건 (half-open)
+    private long openMillis;
+
+    public UpstreamGuard(FlowbitApiClient flowbitApiClient, MeterRegistry meterRegistry) {
+        this.flowbitApiClient = flowbitApiClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        // 대기열 없음 + AbortPolicy - 시간 초과 후에도 끝나지 않은 조회 뒤에 새 조회가 쌓이지 않도록
+        executorService = new ThreadPoolExecutor(maxConcurrentCalls, maxConcurrentCalls, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        circuitBreaker = CircuitBreaker.of(NAME, CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(windowSize)
+                .minimumNumberOfCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallMillis))
+                .slowCallRateThreshold(slowCallRateThreshold)
+                .waitDurationInOpenState(Duration.ofMillis(openMillis))
+                .permittedNumberOfCallsInHalfOpenState(1)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .build());
+        timeLimiter = TimeLimiter.of(TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofMillis(timeoutMillis))
+                .cancelRunningFuture(true)
+                .build());
+        bulkhead = Bulkhead.of(NAME, BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build());
+
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                System.out.println("[UpstreamGuard] 회로 상태 변경: " + event.getStateTransition()));
+        Gauge.builder("upstream.circuit.state", circuitBreaker, cb -> cb.getState().getOrder())
+                .description("0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 보호된 스냅샷 조회 - 회로가 열려 있거나 동시 조회가 꽉 차 있으면 상류를 호출하지 않고 바로 실패
+     */
+    public UpstreamSnapshot fetchSnapshot() {
+        Callable<UpstreamSnapshot> timed = TimeLimiter.decorateFutureSupplier(timeLimiter,
+                () -> executorService.submit(flowbitApiClient::fetchSnapshot));
+        Callable<UpstreamSnapshot> guarded = Bulkhead.decorateCallable(bulkhead,
+                CircuitBreaker.decorateCallable(circuitBreaker, timed));
+        try {
+            UpstreamSnapshot snapshot = guarded.call();
+            record("ok");
+            return snapshot;
+        } catch (CallNotPermittedException e) {
+            record("open");
+            throw new IllegalStateException("[UpstreamGuard] 회로 열림 - 상류 호출 생략", e);
+        } catch (BulkheadFullException e) {
+            record("rejected");
+            throw new IllegalStateException("[UpstreamGuard] 동시 조회 상한 초과 - 상류 호출 생략", e);
+        } catch (RejectedExecutionException e) {
+            record("rejected");
+            throw new IllegalStateException("[UpstreamGuard] 시간 초과한 조회가 아직 끝나지 않음 - 상류 호출 생략", e);
+        } catch (TimeoutException e) {
+            record("timeout");
+            throw new IllegalStateException("[UpstreamGuard] 상류 응답 시간 초과 (" + timeoutMillis + "ms)", e);
+        } catch (ExecutionException e) {
+            record("error");
+            throw new IllegalStateException("[UpstreamGuard] 상류 조회 실패: " + e.getCause().getMessage(), e.getCause());
+        } catch (Exception e) {
+            record("error");
+            throw new IllegalStateException("[UpstreamGuard] 상류 조회 실패: " + e.getMessage(), e);
+        }
+    }
+
+    public CircuitBreaker.State getState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * 지금 상류를 호출해 볼 수 있는지 - 회로가 열려 있는 동안은 false
+     */
+    public boolean isCallPermitted() {
+        return circuitBreaker.getState() != CircuitBreaker.State.OPEN
+                && circuitBreaker.getState() != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    private void record(String outcome) {
+        meterRegistry.counter("upstream.guard.calls", "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    public void close() {
+        executorService.shutdownNow();
+    }
+}
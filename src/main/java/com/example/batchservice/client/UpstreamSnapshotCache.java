@@ -0,0 +1,199 @@
+package com.example.batchservice.client;
+
+import com.example.batchservice.dto.NewsData;
+import com.example.batchservice.dto.UpstreamSnapshot;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 이메일/Discord 경로가 함께 쓰는 가격·뉴스 스냅샷 캐시
+ * - TTL 이내면 캐시를 그대로 반환
+ * - TTL 이 지났으면 만료된 스냅샷을 바로 반환하고 백그라운드에서 한 번만 갱신 (조건부 요청으로 재검증)
+ * - 캐시가 비어 있을 때만 호출한 스레드에서 직접 조회
+ * 상류 조회는 UpstreamGuard 를 거치고, 실패하면 마지막 정상 스냅샷(FALLBACK)을 돌려준다.
+ * 마지막 정상 스냅샷은 snapshot-file 에도 저장해 매일 초기화(invalidate)나 재시작 뒤에도 쓸 수 있다.
+ * (뉴스는 정리된 NewsData 로 저장하므로 복원할 때 HTML 을 다시 파싱하지 않고, NewsFeed 의 태그별 창도 이것으로 채운다)
+ */
+@Component
+public class UpstreamSnapshotCache {
+
+    private final UpstreamGuard upstreamGuard;
+    private final NewsFeed newsFeed;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile UpstreamSnapshot snapshot;
+    private volatile UpstreamSnapshot lastGood; // invalidate 해도 지우지 않음
+
+    @Value("${batch.upstream.cache-ttl-ms:300000}")
+    private long ttlMillis;
+
+    @Value("${batch.upstream.snapshot-file:data/upstream-snapshot.json}") // 비우면 디스크에 저장하지 않음
+    private String snapshotFile;
+
+    @Value("${batch.upstream.fallback-max-age-ms:86400000}") // 이보다 오래된 스냅샷으로는 보내지 않음
+    private long fallbackMaxAgeMillis;
+
+    public UpstreamSnapshotCache(UpstreamGuard upstreamGuard, NewsFeed newsFeed, ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.upstreamGuard = upstreamGuard;
+        this.newsFeed = newsFeed;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (snapshotFile.isBlank() || !Files.exists(Paths.get(snapshotFile))) {
+            return;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(Paths.get(snapshotFile).toFile());
+            Map<String, List<NewsData>> news = new LinkedHashMap<>();
+            root.get("news").fields().forEachRemaining(entry -> {
+                List<NewsData> items = new ArrayList<>();
+                for (JsonNode item : entry.getValue()) {
+                    items.add(new NewsData(item.get("title").asText(), item.get("link").asText(),
+                            item.get("description").asText(), item.get("img").asText(), item.get("pubDate").asText()));
+                }
+                news.put(entry.getKey(), List.copyOf(items));
+                newsFeed.seed(entry.getKey(), items);
+            });
+            lastGood = new UpstreamSnapshot(root.get("price"), news, root.get("fetchedAt").asLong());
+            System.out.println("[UpstreamSnapshotCache] 저장된 마지막 정상 스냅샷 로드: " + snapshotFile);
+        } catch (Exception e) {
+            System.err.println("[UpstreamSnapshotCache] 저장된 스냅샷 로드 실패 (무시): " + e.getMessage());
+        }
+    }
+
+    public UpstreamSnapshot getSnapshot() {
+        UpstreamSnapshot current = snapshot;
+        if (current == null) {
+            current = loadNow();
+        } else if (System.currentTimeMillis() - current.getFetchedAt() < ttlMillis) {
+            current = current.withSource(UpstreamSnapshot.Source.CACHE);
+        } else {
+            refreshInBackground();
+            current = current.withSource(UpstreamSnapshot.Source.STALE);
+        }
+
+        meterRegistry.counter("upstream.snapshot.requests", "source", current.getSource().name()).increment();
+        return current;
+    }
+
+    /**
+     * 다음 조회가 반드시 새 데이터를 받도록 캐시 비우기 (매일 아침 초기화 시) - 상류가 실패하면 마지막 정상 스냅샷 사용
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    private synchronized UpstreamSnapshot loadNow() {
+        if (snapshot != null) {
+            return snapshot.withSource(UpstreamSnapshot.Source.CACHE); // 다른 스레드가 먼저 채움
+        }
+        try {
+            snapshot = fetch();
+            return snapshot;
+        } catch (IllegalStateException e) {
+            return fallback(e); // 캐시는 비워 둔 채로 - 다음 조회에서 다시 시도 (회로가 열려 있으면 바로 실패)
+        }
+    }
+
+    /**
+     * 마지막 정상 스냅샷 - 없거나 fallback-max-age-ms 보다 오래되었으면 원래 실패를 그대로 던짐
+     */
+    private UpstreamSnapshot fallback(IllegalStateException failure) {
+        UpstreamSnapshot good = lastGood;
+        if (good == null || System.currentTimeMillis() - good.getFetchedAt() > fallbackMaxAgeMillis) {
+            System.err.println("[UpstreamSnapshotCache] 상류 조회 실패, 사용할 수 있는 정상 스냅샷 없음: " + failure.getMessage());
+            throw failure;
+        }
+        System.err.println("[UpstreamSnapshotCache] 상류 조회 실패 - 마지막 정상 스냅샷 사용 ("
+                + (System.currentTimeMillis() - good.getFetchedAt()) / 1000 + "초 전): " + failure.getMessage());
+        return good.withSource(UpstreamSnapshot.Source.FALLBACK);
+    }
+
+    private UpstreamSnapshot fetch() {
+        UpstreamSnapshot fetched = upstreamGuard.fetchSnapshot();
+        lastGood = fetched;
+        save(fetched);
+        return fetched;
+    }
+
+    /**
+     * 임시 파일에 쓴 뒤 교체 - 쓰는 도중 종료되어도 이전 파일은 온전함
+     */
+    private void save(UpstreamSnapshot fetched) {
+        if (snapshotFile.isBlank()) {
+            return;
+        }
+        try {
+            ObjectNode root = objectMapper.createObjectNode();
+            root.put("fetchedAt", fetched.getFetchedAt());
+            root.set("price", fetched.getPriceRoot());
+            ObjectNode news = root.putObject("news");
+            fetched.getNews().forEach((tag, items) -> {
+                ArrayNode array = news.putArray(tag);
+                for (NewsData item : items) {
+                    array.addObject()
+                            .put("title", item.getTitle())
+                            .put("link", item.getLink())
+                            .put("description", item.getDescription())
+                            .put("img", item.getImg())
+                            .put("pubDate", item.getPubDate());
+                }
+            });
+
+            Path target = Paths.get(snapshotFile).toAbsolutePath();
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), "upstream-snapshot", ".tmp");
+            objectMapper.writeValue(temp.toFile(), root);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("[UpstreamSnapshotCache] 스냅샷 저장 실패 (메모리 보관분은 유지): " + e.getMessage());
+        }
+    }
+
+    private void refreshInBackground() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return; // 이미 갱신 중
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                snapshot = fetch();
+                System.out.println("[UpstreamSnapshotCache] 스냅샷 갱신 완료");
+            } catch (Exception e) {
+                System.err.println("[UpstreamSnapshotCache] 스냅샷 갱신 실패 (이전 스냅샷 계속 사용): " + e.getMessage());
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        refreshExecutor.shutdown();
+    }
+}
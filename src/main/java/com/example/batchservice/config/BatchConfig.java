@@ -1,13 +1,33 @@
 package com.example.batchservice.config;
 
+import com.example.batchservice.batch.LightweightJobRunner;
+import com.example.batchservice.batch.SubscriberIdRangePartitioner;
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.example.batchservice.preference.SubscriberPreferences;
 import com.example.batchservice.processor.EmailTasklet;
+import com.example.batchservice.processor.SubscriberProcessor;
+import com.example.batchservice.reader.EmailReader;
+import com.example.batchservice.reader.SegmentedSubscriberItemReader;
+import com.example.batchservice.shard.ShardLeaseManager;
+import com.example.batchservice.writer.SubscriberWriter;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.EnableBatchProcessing;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 @EnableBatchProcessing
@@ -16,25 +36,130 @@ public class BatchConfig {
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final EmailTasklet emailTasklet; // ✅ Tasklet 주입
+    private final SubscriberProcessor subscriberProcessor;
+    private final SubscriberWriter subscriberWriter;
+    private final SubscriberIdRangePartitioner subscriberIdRangePartitioner;
+    private final BatchMetrics batchMetrics;
+    private final ShardLeaseManager shardLeaseManager;
+
+    @Value("${batch.email.step-mode:chunk}") // chunk | partitioned | tasklet
+    private String stepMode;
+
+    @Value("${batch.email.chunk-size:100}") // 커밋 간격 (페이지 크기와 동일)
+    private int chunkSize;
+
+    @Value("${batch.email.partition.grid-size:8}") // 파티션(id 구간) 수
+    private int gridSize;
+
+    @Value("${batch.email.partition.concurrency:4}") // 동시에 실행할 파티션 수
+    private int partitionConcurrency;
 
     public BatchConfig(JobBuilderFactory jobBuilderFactory, StepBuilderFactory stepBuilderFactory,
-                       EmailTasklet emailTasklet) {
+                       EmailTasklet emailTasklet, SubscriberProcessor subscriberProcessor,
+                       SubscriberWriter subscriberWriter, SubscriberIdRangePartitioner subscriberIdRangePartitioner,
+                       BatchMetrics batchMetrics, ShardLeaseManager shardLeaseManager) {
         this.jobBuilderFactory = jobBuilderFactory;
         this.stepBuilderFactory = stepBuilderFactory;
         this.emailTasklet = emailTasklet;
+        this.subscriberProcessor = subscriberProcessor;
+        this.subscriberWriter = subscriberWriter;
+        this.subscriberIdRangePartitioner = subscriberIdRangePartitioner;
+        this.batchMetrics = batchMetrics;
+        this.shardLeaseManager = shardLeaseManager;
     }
 
     @Bean
     public Job userNotificationJob() {
         return jobBuilderFactory.get("userNotificationJob")
+                .listener(batchMetrics) // 실행 시간 (batch.job.duration)
+                .listener(shardLeaseManager) // 실행 중에는 샤드를 내놓지 않음
                 .start(emailNotificationStep())
                 .build();
     }
 
     @Bean
     public Step emailNotificationStep() {
-        return stepBuilderFactory.get("emailNotificationStep")
-                .tasklet(emailTasklet) // Tasklet 사용 (청크 X)
+        return buildEmailNotificationStep(stepBuilderFactory);
+    }
+
+    /**
+     * 자주 도는 재시도 실행의 메타데이터를 DB 대신 메모리에 두는 실행기 (JobScheduler 가 scope=retries 실행에만 사용)
+     * 같은 Step 구성을 메모리 JobRepository 로 한 벌 더 만든다. 청크 트랜잭션은 기존 트랜잭션 매니저를 그대로 쓴다.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "batch.metadata.light-store.enabled", havingValue = "true")
+    @SuppressWarnings("deprecation")
+    public LightweightJobRunner lightweightJobRunner(PlatformTransactionManager transactionManager) throws Exception {
+        MapJobRepositoryFactoryBean repositoryFactory = new MapJobRepositoryFactoryBean(new ResourcelessTransactionManager());
+        repositoryFactory.afterPropertiesSet();
+        JobRepository jobRepository = repositoryFactory.getObject();
+
+        Job job = new JobBuilderFactory(jobRepository).get("userNotificationJob")
+                .listener(batchMetrics)
+                .listener(shardLeaseManager)
+                .start(buildEmailNotificationStep(new StepBuilderFactory(jobRepository, transactionManager)))
+                .build();
+
+        SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+        return new LightweightJobRunner(jobLauncher, job, repositoryFactory);
+    }
+
+    private Step buildEmailNotificationStep(StepBuilderFactory stepBuilderFactory) {
+        if ("tasklet".equalsIgnoreCase(stepMode)) {
+            return stepBuilderFactory.get("emailNotificationStep")
+                    .tasklet(emailTasklet) // Tasklet 사용 (청크 X)
+                    .build();
+        }
+
+        if ("partitioned".equalsIgnoreCase(stepMode)) {
+            // 각 id 구간을 별도 StepExecution 으로 실행 - 실패한 파티션만 재시작됨
+            return stepBuilderFactory.get("emailNotificationStep")
+                    .partitioner("emailWorkerStep", subscriberIdRangePartitioner)
+                    .step(chunkStep(stepBuilderFactory, "emailWorkerStep"))
+                    .gridSize(gridSize)
+                    .taskExecutor(partitionTaskExecutor())
+                    .build();
+        }
+
+        return chunkStep(stepBuilderFactory, "emailNotificationStep");
+    }
+
+    private Step chunkStep(StepBuilderFactory stepBuilderFactory, String stepName) {
+        return stepBuilderFactory.get(stepName)
+                .<Subscriber, Subscriber>chunk(chunkSize)
+                .reader(subscriberItemReader(null, null, null, null, null))
+                .processor(subscriberProcessor)
+                .writer(subscriberWriter)
                 .build();
     }
+
+    @Bean
+    public TaskExecutor partitionTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(partitionConcurrency);
+        executor.setMaxPoolSize(partitionConcurrency);
+        executor.setThreadNamePrefix("email-partition-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 오늘 미발송 구독자를 세그먼트별로 묶어 읽는 keyset 페이징 Reader - 페이지 단위로만 메모리에 올리고,
+     * 마지막으로 커밋된 (세그먼트, id) 를 ExecutionContext 에 저장하여 재시작 시 그 다음부터 읽는다.
+     * 파티션 모드에서는 파티션의 minId ~ maxId 구간만 읽는다.
+     * Job 파라미터 scope=retries 로 실행되면 재시도 대기열에서 재시도 시각이 된 구독자만 읽는다.
+     */
+    @Bean
+    @StepScope
+    public SegmentedSubscriberItemReader subscriberItemReader(EmailReader emailReader, SubscriberPreferences subscriberPreferences,
+                                                              @Value("#{stepExecutionContext['minId']}") Long minId,
+                                                              @Value("#{stepExecutionContext['maxId']}") Long maxId,
+                                                              @Value("#{jobParameters['scope']}") String scope) {
+        boolean partitioned = minId != null && maxId != null;
+        return new SegmentedSubscriberItemReader(emailReader, subscriberPreferences.segmentKeys(),
+                partitioned ? minId : 0L, partitioned ? maxId : Long.MAX_VALUE, chunkSize,
+                EmailReader.SCOPE_RETRIES.equals(scope));
+    }
 }
@@ -0,0 +1,50 @@
+package com.example.batchservice.config;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${batch.http.connect-timeout-ms:2000}")
+    private int connectTimeoutMillis;
+
+    @Value("${batch.http.read-timeout-ms:${batch.upstream.guard.timeout-ms:3000}}") // UpstreamGuard 가 포기한 뒤 스레드가 오래 붙잡히지 않도록 같은 값
+    private int readTimeoutMillis;
+
+    @Value("${batch.http.max-connections:20}")
+    private int maxConnections;
+
+    /**
+     * 외부 API 호출용 공유 RestTemplate - 커넥션 풀 + 요청별 connect/read 타임아웃
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient upstreamHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(connectTimeoutMillis)
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .build();
+    }
+
+    @Bean
+    public RestTemplate upstreamRestTemplate(CloseableHttpClient upstreamHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(upstreamHttpClient));
+    }
+}
@@ -1,16 +1,43 @@
 package com.example.batchservice.config;
 
+import com.example.batchservice.writer.AsyncSmtpDeliveryEngine;
+import com.example.batchservice.writer.DeliveryEngine;
+import com.example.batchservice.writer.JavaMailDeliveryEngine;
+import com.example.batchservice.writer.RoutingDeliveryEngine;
+import com.example.batchservice.writer.SmtpTransportPool;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
+import javax.mail.internet.InternetAddress;
+import javax.net.ssl.SSLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 @Configuration
 public class MailConfig {
 
+    private static final String DEFAULT_RELAY = "default"; // batch.email.relays 가 없을 때 지표의 relay 태그
+
+    @Value("${batch.email.smtp.host:smtp.gmail.com}")
+    private String smtpHost;
+
+    @Value("${batch.email.smtp.port:587}")
+    private int smtpPort;
+
+    @Value("${batch.email.smtp.starttls:true}")
+    private boolean smtpStartTls;
+
+    @Value("${batch.email.smtp.debug:true}") // JavaMail 프로토콜 로그
+    private boolean smtpDebug;
+
     @Value("${spring.mail.username}")
     private String mailUsername;
 
@@ -18,20 +45,132 @@ public class MailConfig {
     @Value("${spring.mail.password}")
     private String mailPassword;
 
+    @Value("${batch.email.smtp-pool.size:5}") // 유지할 SMTP 세션 수
+    private int smtpPoolSize;
+
+    @Value("${batch.email.smtp-pool.max-messages-per-connection:100}") // 이 개수만큼 보내면 세션 교체
+    private int maxMessagesPerConnection;
+
+    @Value("${batch.email.smtp-pool.max-idle-ms:60000}") // 이 시간 이상 놀던 세션은 교체
+    private long maxIdleMillis;
+
+    @Value("${batch.email.smtp-pool.enabled:true}") // false 면 메시지마다 새 연결 (이전 방식)
+    private boolean smtpPoolEnabled;
+
+    @Value("${batch.email.engine:javamail}") // javamail | async-smtp
+    private String deliveryEngine;
+
+    @Value("${batch.email.javamail.concurrency:5}") // javamail 엔진의 전송 스레드 수
+    private int javaMailConcurrency;
+
+    @Value("${batch.email.async-smtp.event-loop-threads:2}")
+    private int asyncSmtpEventLoopThreads;
+
+    @Value("${batch.email.async-smtp.max-sessions:50}") // 동시에 진행할 SMTP 세션 수
+    private int asyncSmtpMaxSessions;
+
+    @Value("${batch.email.async-smtp.reply-timeout-ms:60000}") // 서버 응답을 기다리는 최대 시간 - 넘으면 세션을 닫고 실패
+    private long asyncSmtpReplyTimeoutMillis;
+
+    @Value("${batch.email.routing.eject-after-failures:5}") // 릴레이 쪽 실패가 이만큼 연속되면 제외
+    private int ejectAfterFailures;
+
+    @Value("${batch.email.routing.eject-base-ms:30000}") // 첫 제외 시간 (제외될 때마다 두 배)
+    private long ejectBaseMillis;
+
+    @Value("${batch.email.routing.eject-max-ms:600000}")
+    private long ejectMaxMillis;
+
+    @Value("${batch.email.routing.failover-attempts:1}") // 실패한 전송을 다른 릴레이로 다시 보낼 횟수
+    private int failoverAttempts;
+
     @Bean
     public JavaMailSender javaMailSender() {
+        return createMailSender(smtpHost, smtpPort, smtpStartTls, mailUsername, mailPassword, mailUsername);
+    }
+
+    @Bean
+    public SmtpTransportPool smtpTransportPool(JavaMailSender javaMailSender, MeterRegistry meterRegistry) {
+        // JavaMailSenderImpl 과 같은 Session(STARTTLS/AUTH 설정)을 공유
+        return new SmtpTransportPool(DEFAULT_RELAY, ((JavaMailSenderImpl) javaMailSender).getSession(),
+                smtpHost, smtpPort, mailUsername, mailPassword,
+                smtpPoolSize, maxMessagesPerConnection, maxIdleMillis, meterRegistry);
+    }
+
+    /**
+     * EmailWriter 가 사용할 전송 엔진 - 기본은 기존 JavaMail 경로
+     * batch.email.relays 가 있으면 릴레이마다 같은 종류의 엔진을 만들어 RoutingDeliveryEngine 으로 나눠 보낸다
+     * (이때 batch.email.smtp.* / spring.mail.* 계정은 쓰지 않음)
+     */
+    @Bean
+    public DeliveryEngine deliveryEngine(JavaMailSender javaMailSender, SmtpTransportPool smtpTransportPool,
+                                         MeterRegistry meterRegistry, Environment environment) throws SSLException {
+        List<SmtpRelaySettings> relaySettings = Binder.get(environment)
+                .bind("batch.email.relays", Bindable.listOf(SmtpRelaySettings.class))
+                .orElse(List.of());
+        if (relaySettings.isEmpty()) {
+            if ("async-smtp".equalsIgnoreCase(deliveryEngine)) {
+                return new AsyncSmtpDeliveryEngine(DEFAULT_RELAY, smtpHost, smtpPort, smtpStartTls, mailUsername, mailPassword, mailUsername,
+                        asyncSmtpEventLoopThreads, asyncSmtpMaxSessions, maxMessagesPerConnection, maxIdleMillis,
+                        asyncSmtpReplyTimeoutMillis, meterRegistry);
+            }
+            return new JavaMailDeliveryEngine(DEFAULT_RELAY, javaMailSender, smtpTransportPool, mailUsername, smtpPoolEnabled,
+                    javaMailConcurrency, meterRegistry);
+        }
+
+        List<RoutingDeliveryEngine.Relay> relays = new ArrayList<>();
+        for (SmtpRelaySettings settings : relaySettings) {
+            relays.add(createRelay(settings, meterRegistry));
+        }
+        return new RoutingDeliveryEngine(relays, ejectAfterFailures, ejectBaseMillis, ejectMaxMillis, failoverAttempts,
+                meterRegistry);
+    }
+
+    /**
+     * 릴레이 하나의 엔진 - 세션 수/스레드 수를 max-concurrency 에 맞춤
+     */
+    private RoutingDeliveryEngine.Relay createRelay(SmtpRelaySettings settings, MeterRegistry meterRegistry) throws SSLException {
+        int concurrency = settings.getMaxConcurrency();
+        if ("async-smtp".equalsIgnoreCase(deliveryEngine)) {
+            DeliveryEngine engine = new AsyncSmtpDeliveryEngine(settings.getName(), settings.getHost(), settings.getPort(), settings.isStarttls(),
+                    settings.getUsername(), settings.getPassword(), settings.getFrom(),
+                    asyncSmtpEventLoopThreads, concurrency, maxMessagesPerConnection, maxIdleMillis, asyncSmtpReplyTimeoutMillis,
+                    meterRegistry);
+            return new RoutingDeliveryEngine.Relay(settings.getName(), settings.getWeight(), concurrency, engine, () -> { });
+        }
+
+        JavaMailSenderImpl mailSender = createMailSender(settings.getHost(), settings.getPort(), settings.isStarttls(),
+                settings.getUsername(), settings.getPassword(), settings.getFrom());
+        SmtpTransportPool pool = new SmtpTransportPool(settings.getName(), mailSender.getSession(),
+                settings.getHost(), settings.getPort(), settings.getUsername(), settings.getPassword(),
+                concurrency, maxMessagesPerConnection, maxIdleMillis, meterRegistry);
+        DeliveryEngine engine = new JavaMailDeliveryEngine(settings.getName(), mailSender, pool, settings.getFrom(), smtpPoolEnabled,
+                concurrency, meterRegistry);
+        return new RoutingDeliveryEngine.Relay(settings.getName(), settings.getWeight(), concurrency, engine, pool::close);
+    }
+
+    /**
+     * @param from 봉투 발신자(MAIL FROM) - 비우면 JavaMail 기본값
+     */
+    private JavaMailSenderImpl createMailSender(String host, int port, boolean startTls, String username, String password,
+                                                String from) {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost("smtp.gmail.com");
-        mailSender.setPort(587);
+        mailSender.setHost(host);
+        mailSender.setPort(port);
 
-        mailSender.setUsername(mailUsername);
-        mailSender.setPassword(mailPassword);
+        mailSender.setUsername(username);
+        mailSender.setPassword(password);
 
         Properties props = mailSender.getJavaMailProperties();
         props.put("mail.transport.protocol", "smtp");
-        props.put("mail.smtp.auth", "true");
-        props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.debug", "true");
+        props.put("mail.smtp.auth", String.valueOf(!username.isEmpty()));
+        props.put("mail.smtp.starttls.enable", String.valueOf(startTls));
+        props.put("mail.smtp.sendpartial", "true"); // 여러 수신자 중 일부가 거부되어도 나머지에게 전송
+        props.put("mail.debug", String.valueOf(smtpDebug));
+        InternetAddress envelopeFrom = JavaMailDeliveryEngine.parseFrom(from);
+        if (envelopeFrom != null) {
+            props.put("mail.smtp.from", envelopeFrom.getAddress());
+        }
 
         return mailSender;
     }
@@ -0,0 +1,99 @@
+package com.example.batchservice.config;
+
+/**
+ * batch.email.relays[n] 한 항목 - 릴레이마다 계정, 가중치, 동시 전송 상한을 따로 둔다
+ * <pre>
+ * batch.email.relays:
+ *   - name: gmail-a
+ *     host: smtp.gmail.com
+ *     port: 587
+ *     username: a@example.com
+ *     password: ...
+ *     weight: 2
+ *     max-concurrency: 10
+ * </pre>
+ */
+public class SmtpRelaySettings {
+
+    private String name;
+    private String host;
+    private int port = 587;
+    private boolean starttls = true;
+    private String username = "";
+    private String password = "";
+    private String from; // 비우면 username
+    private int weight = 1; // 다른 릴레이 대비 보낼 비율
+    private int maxConcurrency = 5; // 이 릴레이로 동시에 진행할 전송 수
+
+    public String getName() {
+        return name != null ? name : host + ":" + port;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public boolean isStarttls() {
+        return starttls;
+    }
+
+    public void setStarttls(boolean starttls) {
+        this.starttls = starttls;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public String getFrom() {
+        return from != null && !from.isEmpty() ? from : username;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+}
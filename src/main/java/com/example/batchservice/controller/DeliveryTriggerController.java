@@ -0,0 +1,28 @@
+package com.example.batchservice.controller;
+
+import com.example.batchservice.batch.DeliveryTriggerEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 다른 서비스가 구독자 추가를 알려주는 엔드포인트 - 바로 배치 실행을 예약한다 (실행은 모아서 한 번)
+ */
+@RestController
+@RequestMapping("/triggers")
+public class DeliveryTriggerController {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public DeliveryTriggerController(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostMapping("/subscribers")
+    public ResponseEntity<Void> subscriberAdded() {
+        eventPublisher.publishEvent(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.NEW_SUBSCRIBER));
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.batchservice.controller;
+
+import com.example.batchservice.dto.DigestSegment;
+import com.example.batchservice.dto.SubscriberPreferenceRequest;
+import com.example.batchservice.preference.SubscriberPreferences;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 다른 서비스가 구독자의 다이제스트 선호도(코인, 언어, 시간대)를 알려주는 엔드포인트 - 다음 발송부터 해당 세그먼트로 묶인다
+ * subscriber 테이블에 없는 id 는 404 (선호도만 남는 행을 만들지 않음)
+ */
+@RestController
+@RequestMapping("/subscribers")
+public class SubscriberPreferenceController {
+
+    private final SubscriberPreferences subscriberPreferences;
+
+    public SubscriberPreferenceController(SubscriberPreferences subscriberPreferences) {
+        this.subscriberPreferences = subscriberPreferences;
+    }
+
+    @PutMapping("/{subscriberId}/preferences")
+    public ResponseEntity<Map<String, String>> updatePreferences(@PathVariable long subscriberId,
+                                                                 @RequestBody SubscriberPreferenceRequest request) {
+        if (!subscriberPreferences.subscriberExists(subscriberId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "구독자가 없습니다: " + subscriberId));
+        }
+        Map<String, String> body = new LinkedHashMap<>();
+        if (request.getTimeZone() != null && !request.getTimeZone().isBlank()) {
+            try {
+                body.put("timeZone", subscriberPreferences.saveTimeZone(subscriberId, request.getTimeZone()));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        }
+        DigestSegment segment = subscriberPreferences.save(subscriberId, request.getCoins(), request.getLanguage());
+        body.put("segment", segment.getKey());
+        return ResponseEntity.ok(body);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.batchservice.dto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 같은 다이제스트를 받는 구독자 묶음 - 코인 구성과 언어로 결정된다
+ * 키 형식은 "BTC,ETH|ko" (코인은 정해진 순서로 정렬, 전체 구독이면 "ALL") 이며 같은 키는 같은 HTML 을 받는다.
+ */
+public class DigestSegment {
+
+    /**
+     * 지원 코인과 뉴스 API 태그 (메일에 나오는 순서)
+     */
+    public static final Map<String, String> NEWS_TAG_BY_COIN = new LinkedHashMap<>();
+
+    static {
+        NEWS_TAG_BY_COIN.put("BTC", "비트코인");
+        NEWS_TAG_BY_COIN.put("ETH", "이더리움");
+        NEWS_TAG_BY_COIN.put("XRP", "리플");
+    }
+
+    public static final String ALL_COINS = "ALL";
+    public static final String DEFAULT_LANGUAGE = "ko";
+    public static final DigestSegment DEFAULT = new DigestSegment(List.copyOf(NEWS_TAG_BY_COIN.keySet()), DEFAULT_LANGUAGE);
+
+    private static final Pattern LANGUAGE_PATTERN = Pattern.compile("[a-z]{2}");
+
+    private final List<String> coins;
+    private final String language;
+    private final String key;
+
+    private DigestSegment(List<String> coins, String language) {
+        this.coins = coins;
+        this.language = language;
+        String coinPart = coins.size() == NEWS_TAG_BY_COIN.size() ? ALL_COINS : String.join(",", coins);
+        this.key = coinPart + "|" + language;
+    }
+
+    /**
+     * 구독자 선호도를 정규화 - 모르는 코인은 무시하고, 남는 코인이 없으면 전체 구독
+     */
+    public static DigestSegment of(Collection<String> requestedCoins, String language) {
+        List<String> coins = new ArrayList<>();
+        if (requestedCoins != null) {
+            for (String coin : NEWS_TAG_BY_COIN.keySet()) {
+                if (requestedCoins.stream().anyMatch(requested -> coin.equalsIgnoreCase(requested.trim()))) {
+                    coins.add(coin);
+                }
+            }
+        }
+        if (coins.isEmpty()) {
+            coins.addAll(NEWS_TAG_BY_COIN.keySet());
+        }
+
+        String normalizedLanguage = language == null ? DEFAULT_LANGUAGE : language.trim().toLowerCase(Locale.ROOT);
+        if (!LANGUAGE_PATTERN.matcher(normalizedLanguage).matches()) {
+            normalizedLanguage = DEFAULT_LANGUAGE;
+        }
+        return new DigestSegment(List.copyOf(coins), normalizedLanguage);
+    }
+
+    /**
+     * DB 에 저장된 키에서 복원 (키는 of 로 만든 값만 저장되므로 그대로 다시 정규화해도 같은 키)
+     */
+    public static DigestSegment fromKey(String key) {
+        if (key == null) {
+            return DEFAULT;
+        }
+        int separator = key.indexOf('|');
+        String coinPart = separator < 0 ? key : key.substring(0, separator);
+        String language = separator < 0 ? DEFAULT_LANGUAGE : key.substring(separator + 1);
+        return of(ALL_COINS.equals(coinPart) ? null : List.of(coinPart.split(",")), language);
+    }
+
+    public boolean includesCoin(String coin) {
+        return coins.stream().anyMatch(coin::equalsIgnoreCase);
+    }
+
+    public boolean includesNewsTag(String tag) {
+        return coins.stream().anyMatch(coin -> tag.equals(NEWS_TAG_BY_COIN.get(coin)));
+    }
+
+    public boolean isDefault() {
+        return DEFAULT.key.equals(key);
+    }
+
+    public List<String> getCoins() {
+        return coins;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DigestSegment && key.equals(((DigestSegment) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.batchservice.dto;
+
+public class Subscriber {
+    private final Long id;
+    private final String email;
+    private final String segmentKey; // 받을 다이제스트 (DigestSegment 키)
+    private final int attempts; // 이 발송일에 이미 실패한 횟수 (재시도 대기열)
+
+    public Subscriber(Long id, String email) {
+        this(id, email, DigestSegment.DEFAULT.getKey());
+    }
+
+    public Subscriber(Long id, String email, String segmentKey) {
+        this(id, email, segmentKey, 0);
+    }
+
+    public Subscriber(Long id, String email, String segmentKey, int attempts) {
+        this.id = id;
+        this.email = email;
+        this.segmentKey = segmentKey;
+        this.attempts = attempts;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getSegmentKey() {
+        return segmentKey;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
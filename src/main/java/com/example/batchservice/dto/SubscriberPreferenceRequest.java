@@ -0,0 +1,37 @@
+package com.example.batchservice.dto;
+
+import java.util.List;
+
+/**
+ * 구독자 선호도 변경 요청 - coins 가 비어 있으면 전체 코인, language 가 없으면 한국어
+ * timeZone(예: Asia/Seoul)은 선택 - 없으면 기존 값 유지
+ */
+public class SubscriberPreferenceRequest {
+    private List<String> coins;
+    private String language;
+    private String timeZone;
+
+    public List<String> getCoins() {
+        return coins;
+    }
+
+    public void setCoins(List<String> coins) {
+        this.coins = coins;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public String getTimeZone() {
+        return timeZone;
+    }
+
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+}
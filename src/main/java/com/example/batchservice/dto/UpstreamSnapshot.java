@@ -0,0 +1,81 @@
+package com.example.batchservice.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 한 번에 가져온 가격 API 응답과 태그별 최신 뉴스 (HTML 정리가 끝난 NewsData, NewsFeed 참고)
+ */
+public class UpstreamSnapshot {
+
+    /**
+     * 스냅샷을 어디서 받았는지 - FRESH: 방금 호출, CACHE: TTL 이내 캐시, STALE: 만료된 캐시 (백그라운드 갱신 중),
+     * FALLBACK: 상류 조회 실패 / 회로 열림으로 마지막 정상 스냅샷(디스크 보관분 포함) 사용
+     */
+    public enum Source { FRESH, CACHE, STALE, FALLBACK }
+
+    private final JsonNode priceRoot;
+    private final Map<String, List<NewsData>> news; // 태그 순서 유지, 태그별 최신순
+    private final long fetchedAt;
+    private final Source source;
+
+    public UpstreamSnapshot(JsonNode priceRoot, Map<String, List<NewsData>> news, long fetchedAt) {
+        this(priceRoot, news, fetchedAt, Source.FRESH);
+    }
+
+    private UpstreamSnapshot(JsonNode priceRoot, Map<String, List<NewsData>> news, long fetchedAt, Source source) {
+        this.priceRoot = priceRoot;
+        this.news = news;
+        this.fetchedAt = fetchedAt;
+        this.source = source;
+    }
+
+    public UpstreamSnapshot withSource(Source source) {
+        return new UpstreamSnapshot(priceRoot, news, fetchedAt, source);
+    }
+
+    public JsonNode getPriceRoot() {
+        return priceRoot;
+    }
+
+    public Map<String, List<NewsData>> getNews() {
+        return news;
+    }
+
+    public long getFetchedAt() {
+        return fetchedAt;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    /**
+     * 가격/뉴스 내용의 해시 (SHA-256 앞 16자리) - 조회 시각과 무관하게 내용이 같으면 같은 값
+     */
+    public String contentVersion() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(priceRoot.toString().getBytes(StandardCharsets.UTF_8));
+            news.forEach((tag, items) -> {
+                digest.update(tag.getBytes(StandardCharsets.UTF_8));
+                for (NewsData item : items) {
+                    digest.update((item.getLink() + '\n' + item.getTitle() + '\n' + item.getDescription() + '\n' + item.getImg())
+                            .getBytes(StandardCharsets.UTF_8));
+                }
+            });
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 을 사용할 수 없음", e); // 모든 JVM 에 있음
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.batchservice.ledger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 일자별 발송 기록 (delivery_ledger)
+ * - 발송에 성공하면 (발송일, 구독자 id) 행을 추가만 하고, subscriber 테이블은 건드리지 않는다.
+ * - "오늘 미발송" 은 오늘 날짜의 행이 없는 구독자이므로 매일 아침 전체 초기화가 필요 없다.
+ * - 발송일은 매일 초기화 스케줄(기본 10시)을 기준으로 바뀐다.
+ */
+@Component
+public class DeliveryLedger {
+
+    /**
+     * 발송 기록 추가 - 이미 있으면 건너뛰므로 재시도해도 안전하다 (파라미터는 insertParams 참고)
+     */
+    public static final String INSERT_SQL = "INSERT INTO delivery_ledger (delivery_date, subscriber_id, sent_at) SELECT ?, ?, ? FROM DUAL "
+            + "WHERE NOT EXISTS (SELECT 1 FROM delivery_ledger WHERE delivery_date = ? AND subscriber_id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${batch.email.ledger.day-start-hour:10}") // 이 시각부터 새 발송일
+    private int dayStartHour;
+
+    @Value("${batch.email.ledger.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${batch.email.ledger.prune-batch-size:5000}")
+    private int pruneBatchSize;
+
+    public DeliveryLedger(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void initSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/delivery_ledger.sql"))
+                .execute(jdbcTemplate.getDataSource());
+    }
+
+    /**
+     * subscriber 를 별칭 s 로 조회할 때 붙이는 "해당 발송일에 아직 안 보냄" 조건
+     *
+     * @param dateParameter 발송일 파라미터 자리 ("?" 또는 ":deliveryDate")
+     */
+    public static String notDeliveredCondition(String dateParameter) {
+        return "NOT EXISTS (SELECT 1 FROM delivery_ledger l WHERE l.delivery_date = " + dateParameter
+                + " AND l.subscriber_id = s.id)";
+    }
+
+    public LocalDate currentDeliveryDate() {
+        return LocalDateTime.now().minusHours(dayStartHour).toLocalDate();
+    }
+
+    /**
+     * 현재 발송일이 시작된 시각 (서버 시간대)
+     */
+    public LocalDateTime currentDeliveryDayStart() {
+        return currentDeliveryDate().atTime(dayStartHour, 0);
+    }
+
+    public static Object[] insertParams(LocalDate deliveryDate, Long subscriberId, LocalDateTime sentAt) {
+        Date date = Date.valueOf(deliveryDate);
+        return new Object[]{date, subscriberId, Timestamp.valueOf(sentAt), date, subscriberId};
+    }
+
+    /**
+     * 보관 기간이 지난 발송일을 배치 단위로 삭제 (한 번에 큰 트랜잭션이 생기지 않도록)
+     */
+    public int prune() {
+        Date cutoff = Date.valueOf(currentDeliveryDate().minusDays(retentionDays));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM delivery_ledger WHERE delivery_date < ? LIMIT " + pruneBatchSize, cutoff);
+            total += deleted;
+        } while (deleted == pruneBatchSize);
+        return total;
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.batchservice.ledger;
+
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.example.batchservice.shard.ShardLeaseManager;
+import com.example.batchservice.writer.SmtpFailureClassifier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 발송일별 실패 재시도 대기열 (delivery_retry)
+ * - 전송에 실패한 구독자는 시도 횟수, 다음 시도 시각, 마지막 오류를 기록하고 그 시각 전까지는 Reader 가 읽지 않는다.
+ * - 다음 시도까지의 대기는 base-delay × 2^(시도 횟수 - 1) (max-delay 상한) 의 절반 + 나머지 절반 안의 임의 값 (지터)
+ * - max-attempts 번 실패하거나 영구 오류(5xx)면 DEAD(dead-letter)로 바꿔 그 발송일에는 더 보내지 않는다.
+ * - 행은 발송일 단위이므로 다음 발송일에는 다시 일반 발송 대상이 된다.
+ */
+@Component
+public class DeliveryRetryQueue {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_DEAD = "DEAD";
+
+    private static final String INSERT_SQL = "INSERT INTO delivery_retry "
+            + "(delivery_date, subscriber_id, attempts, next_attempt_at, status, last_error_type, last_error_class, updated_at) "
+            + "SELECT ?, ?, ?, ?, ?, ?, ?, ? FROM DUAL "
+            + "WHERE NOT EXISTS (SELECT 1 FROM delivery_retry WHERE delivery_date = ? AND subscriber_id = ?)";
+
+    private static final String UPDATE_SQL = "UPDATE delivery_retry SET attempts = ?, next_attempt_at = ?, status = ?, "
+            + "last_error_type = ?, last_error_class = ?, updated_at = ? WHERE delivery_date = ? AND subscriber_id = ?";
+
+    private static final String DELETE_SQL = "DELETE FROM delivery_retry WHERE delivery_date = ? AND subscriber_id = ?";
+
+    private static final int MAX_ERROR_CLASS_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeliveryLedger deliveryLedger;
+    private final ShardLeaseManager shardLeaseManager;
+    private final Counter retriesScheduled;
+    private final Counter deadLettered;
+
+    @Value("${batch.email.retry.max-attempts:5}") // 이 횟수만큼 실패하면 dead-letter
+    private int maxAttempts;
+
+    @Value("${batch.email.retry.base-delay-ms:60000}") // 첫 실패 후 대기 (이후 두 배씩)
+    private long baseDelayMillis;
+
+    @Value("${batch.email.retry.max-delay-ms:3600000}")
+    private long maxDelayMillis;
+
+    @Value("${batch.email.retry.dead-letter-permanent:true}") // 영구 오류(5xx)는 바로 dead-letter
+    private boolean deadLetterPermanent;
+
+    @Value("${batch.email.ledger.retention-days:30}") // 발송 기록과 같은 기간 보관
+    private int retentionDays;
+
+    @Value("${batch.email.ledger.prune-batch-size:5000}")
+    private int pruneBatchSize;
+
+    public DeliveryRetryQueue(JdbcTemplate jdbcTemplate, DeliveryLedger deliveryLedger, ShardLeaseManager shardLeaseManager,
+                              BatchMetrics batchMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryLedger = deliveryLedger;
+        this.shardLeaseManager = shardLeaseManager;
+        MeterRegistry meterRegistry = batchMetrics.getMeterRegistry();
+        this.retriesScheduled = Counter.builder("email.delivery.retry")
+                .tag("outcome", "scheduled")
+                .description("재시도 대기열에 기록된 실패 수")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("email.delivery.retry")
+                .tag("outcome", "dead")
+                .description("dead-letter 로 옮겨진 주소 수")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void initSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/delivery_retry.sql"))
+                .execute(jdbcTemplate.getDataSource());
+    }
+
+    /**
+     * subscriber 를 별칭 s 로 조회할 때 붙이는 그 발송일의 재시도 상태 LEFT JOIN (별칭 r)
+     *
+     * @param dateParameter 발송일 파라미터 자리
+     */
+    public static String retryJoin(String dateParameter) {
+        return "LEFT JOIN delivery_retry r ON r.delivery_date = " + dateParameter + " AND r.subscriber_id = s.id ";
+    }
+
+    /**
+     * retryJoin 과 함께 쓰는 "실패한 적이 없거나 재시도 시각이 된" 조건 - dead-letter 와 대기 중인 주소는 제외
+     *
+     * @param nowParameter 현재 시각 파라미터 자리
+     */
+    public static String dueCondition(String nowParameter) {
+        return "(r.subscriber_id IS NULL OR (r.status = '" + STATUS_PENDING + "' AND r.next_attempt_at <= " + nowParameter + "))";
+    }
+
+    /**
+     * JOIN 없이 subscriber s 에 붙이는 dueCondition 과 같은 조건
+     */
+    public static String notWaitingCondition(String dateParameter, String nowParameter) {
+        return "NOT EXISTS (SELECT 1 FROM delivery_retry r WHERE r.delivery_date = " + dateParameter
+                + " AND r.subscriber_id = s.id AND (r.status = '" + STATUS_DEAD + "' OR r.next_attempt_at > " + nowParameter + "))";
+    }
+
+    /**
+     * 오늘 재시도 시각이 된 미발송 주소가 하나라도 있는지 (인덱스로 첫 행에서 멈춤) - 샤딩 중이면 임대한 샤드만
+     */
+    public boolean hasDue() {
+        Date deliveryDate = Date.valueOf(deliveryLedger.currentDeliveryDate());
+        return !jdbcTemplate.queryForList(
+                "SELECT r.subscriber_id FROM delivery_retry r WHERE r.delivery_date = ? AND r.status = '" + STATUS_PENDING
+                        + "' AND r.next_attempt_at <= ? AND NOT EXISTS (SELECT 1 FROM delivery_ledger l "
+                        + "WHERE l.delivery_date = r.delivery_date AND l.subscriber_id = r.subscriber_id)"
+                        + shardLeaseManager.shardCondition("r.subscriber_id") + " LIMIT 1",
+                Long.class, deliveryDate, Timestamp.valueOf(LocalDateTime.now())).isEmpty();
+    }
+
+    /**
+     * 오늘 가장 먼저 재시도 시각이 되는 미발송 주소의 시각 - 없으면 null (hasDue 와 같은 인덱스 순서로 첫 행만 읽음)
+     */
+    public LocalDateTime nextDueAt() {
+        Date deliveryDate = Date.valueOf(deliveryLedger.currentDeliveryDate());
+        List<Timestamp> next = jdbcTemplate.queryForList(
+                "SELECT r.next_attempt_at FROM delivery_retry r WHERE r.delivery_date = ? AND r.status = '" + STATUS_PENDING
+                        + "' AND NOT EXISTS (SELECT 1 FROM delivery_ledger l "
+                        + "WHERE l.delivery_date = r.delivery_date AND l.subscriber_id = r.subscriber_id)"
+                        + shardLeaseManager.shardCondition("r.subscriber_id") + " ORDER BY r.next_attempt_at LIMIT 1",
+                Timestamp.class, deliveryDate);
+        return next.isEmpty() ? null : next.get(0).toLocalDateTime();
+    }
+
+    /**
+     * 전송 실패 한 건을 다음 시도 시각과 함께 기록할 행으로 만든다 (DB 반영은 write 에서 모아서)
+     *
+     * @param subscriber 실패한 구독자 - getAttempts 는 이번 시도 전까지의 실패 횟수
+     */
+    public Failure failure(Subscriber subscriber, Throwable cause) {
+        SmtpFailureClassifier.Type type = SmtpFailureClassifier.classify(cause);
+        int attempts = subscriber.getAttempts() + 1;
+        boolean dead = attempts >= maxAttempts || (deadLetterPermanent && type == SmtpFailureClassifier.Type.PERMANENT);
+        LocalDateTime now = LocalDateTime.now();
+        return new Failure(deliveryLedger.currentDeliveryDate(), subscriber.getId(), attempts,
+                now.plus(Duration.ofMillis(backoffMillis(attempts))), dead ? STATUS_DEAD : STATUS_PENDING,
+                type.name(), errorClass(cause), now);
+    }
+
+    /**
+     * 실패 기록(upsert)과 재시도 끝에 성공한 구독자의 행 삭제를 batch 로 반영
+     * 앞선 반영이 실패해 행이 없을 수도 있고 드라이버가 batch 건수를 알려주지 않을 수도 있으므로(SUCCESS_NO_INFO),
+     * 시도 횟수나 갱신 건수로 고르지 않고 발송 기록처럼 없으면 INSERT 한 뒤 모두 UPDATE 한다.
+     *
+     * @param recovered 재시도 끝에 발송된 (발송일, 구독자 id)
+     */
+    public void write(List<Failure> failures, List<Object[]> recovered) {
+        int dead = 0;
+        for (Failure failure : failures) {
+            if (STATUS_DEAD.equals(failure.status)) {
+                dead++;
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            List<Object[]> inserts = new ArrayList<>(failures.size());
+            List<Object[]> updates = new ArrayList<>(failures.size());
+            for (Failure failure : failures) {
+                inserts.add(failure.insertParams());
+                updates.add(failure.updateParams());
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts); // 이미 있으면 건너뜀
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates); // 방금 넣은 행은 같은 값으로 덮어씀
+        }
+        if (!recovered.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_SQL, recovered);
+        }
+        retriesScheduled.increment(failures.size() - dead);
+        deadLettered.increment(dead);
+        if (dead > 0) {
+            System.err.println("[DeliveryRetryQueue] ❌ 재시도를 멈추고 dead-letter 로 옮긴 주소 " + dead + "건");
+        }
+    }
+
+    public static Object[] recoveredParams(LocalDate deliveryDate, Long subscriberId) {
+        return new Object[]{Date.valueOf(deliveryDate), subscriberId};
+    }
+
+    /**
+     * 보관 기간이 지난 발송일의 재시도/dead-letter 기록을 배치 단위로 삭제
+     */
+    public int prune() {
+        Date cutoff = Date.valueOf(deliveryLedger.currentDeliveryDate().minusDays(retentionDays));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update("DELETE FROM delivery_retry WHERE delivery_date < ? LIMIT " + pruneBatchSize, cutoff);
+            total += deleted;
+        } while (deleted == pruneBatchSize);
+        return total;
+    }
+
+    /**
+     * attempts 번째 실패 후 대기 시간 - 지수 증가분의 절반은 고정, 나머지 절반은 임의 (동시에 실패한 주소가 같은 시각에 몰리지 않도록)
+     */
+    long backoffMillis(int attempts) {
+        long exponential = baseDelayMillis << Math.min(attempts - 1, 20);
+        long capped = Math.min(maxDelayMillis, exponential);
+        long half = capped / 2;
+        return half + ThreadLocalRandom.current().nextLong(capped - half + 1);
+    }
+
+    private static String errorClass(Throwable cause) {
+        Throwable unwrapped = cause;
+        while ((unwrapped instanceof CompletionException || unwrapped instanceof ExecutionException) && unwrapped.getCause() != null) {
+            unwrapped = unwrapped.getCause();
+        }
+        String name = unwrapped.getClass().getName();
+        return name.length() > MAX_ERROR_CLASS_LENGTH ? name.substring(0, MAX_ERROR_CLASS_LENGTH) : name;
+    }
+
+    /**
+     * 재시도 대기열에 기록할 실패 한 건
+     */
+    public static final class Failure {
+
+        private final LocalDate deliveryDate;
+        private final Long subscriberId;
+        private final int attempts;
+        private final LocalDateTime nextAttemptAt;
+        private final String status;
+        private final String errorType;
+        private final String errorClass;
+        private final LocalDateTime updatedAt;
+
+        private Failure(LocalDate deliveryDate, Long subscriberId, int attempts, LocalDateTime nextAttemptAt,
+                        String status, String errorType, String errorClass, LocalDateTime updatedAt) {
+            this.deliveryDate = deliveryDate;
+            this.subscriberId = subscriberId;
+            this.attempts = attempts;
+            this.nextAttemptAt = nextAttemptAt;
+            this.status = status;
+            this.errorType = errorType;
+            this.errorClass = errorClass;
+            this.updatedAt = updatedAt;
+        }
+
+        public Long getSubscriberId() {
+            return subscriberId;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public LocalDateTime getNextAttemptAt() {
+            return nextAttemptAt;
+        }
+
+        public boolean isDead() {
+            return STATUS_DEAD.equals(status);
+        }
+
+        /**
+         * 로그용 요약 - "dead-letter (5회)" 또는 "2회째, 다음 시도 12:03:10"
+         */
+        public String describe() {
+            return isDead()
+                    ? "dead-letter (" + attempts + "회)"
+                    : attempts + "회째, 다음 시도 " + nextAttemptAt.toLocalTime().withNano(0);
+        }
+
+        private Object[] insertParams() {
+            Date date = Date.valueOf(deliveryDate);
+            return new Object[]{date, subscriberId, attempts, Timestamp.valueOf(nextAttemptAt), status, errorType, errorClass,
+                    Timestamp.valueOf(updatedAt), date, subscriberId};
+        }
+
+        private Object[] updateParams() {
+            return new Object[]{attempts, Timestamp.valueOf(nextAttemptAt), status, errorType, errorClass,
+                    Timestamp.valueOf(updatedAt), Date.valueOf(deliveryDate), subscriberId};
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.batchservice.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 단계별(조회 → 렌더링 → MIME 생성 → 전송 → DB 반영) 지표 기록
+ * 실행마다 태그를 달면 시계열이 실행 수만큼 늘어나므로 실행 id 로는 태깅하지 않는다.
+ * 실행 단위 비교는 batch.job.duration(job, status) 과 Spring Batch 의 step 별 read/write 수로 한다.
+ */
+@Component
+public class BatchMetrics implements JobExecutionListener {
+
+    private final MeterRegistry meterRegistry;
+
+    public BatchMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        // 시작 시각은 JobExecution 에 있으므로 따로 기록할 것 없음
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        if (jobExecution.getStartTime() != null && jobExecution.getEndTime() != null) {
+            timer("batch.job.duration", "job", jobExecution.getJobInstance().getJobName(), "status", jobExecution.getStatus().name())
+                    .record(Duration.ofMillis(jobExecution.getEndTime().getTime() - jobExecution.getStartTime().getTime()));
+        }
+    }
+
+    public Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 분포(p50/p99 등)를 봐야 하는 지표용 - 히스토그램 버킷을 함께 내보낸다
+     */
+    public Timer histogramTimer(String name, String... tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+}
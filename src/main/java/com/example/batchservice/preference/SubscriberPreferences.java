@@ -0,0 +1,97 @@
+package com.example.batchservice.preference;
+
+import com.example.batchservice.dto.DigestSegment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * 구독자별 다이제스트 선호도 (subscriber_preference)
+ * - 저장할 때 DigestSegment 로 정규화한 segment_key 를 함께 저장하여 발송 시 세그먼트별로 바로 묶는다.
+ * - 행이 없는 구독자는 기본 세그먼트(DigestSegment.DEFAULT)로 발송된다.
+ * - 시간대(subscriber_time_zone)는 선택 항목이며 시간대별 발송 창(DeliveryWindowPlanner)에만 쓰인다.
+ */
+@Component
+public class SubscriberPreferences {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SubscriberPreferences(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void initSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/subscriber_preference.sql"))
+                .execute(jdbcTemplate.getDataSource());
+    }
+
+    /**
+     * 구독자 테이블에 있는 id 인지 - 없는 구독자의 선호도는 저장하지 않는다
+     */
+    public boolean subscriberExists(long subscriberId) {
+        return !jdbcTemplate.queryForList("SELECT id FROM subscriber WHERE id = ?", Long.class, subscriberId).isEmpty();
+    }
+
+    /**
+     * 선호도 저장 (있으면 갱신) - 정규화된 세그먼트를 돌려준다
+     */
+    public DigestSegment save(long subscriberId, Collection<String> coins, String language) {
+        DigestSegment segment = DigestSegment.of(coins, language);
+        String coinList = String.join(",", segment.getCoins());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int updated = jdbcTemplate.update(
+                "UPDATE subscriber_preference SET coins = ?, language = ?, segment_key = ?, updated_at = ? WHERE subscriber_id = ?",
+                coinList, segment.getLanguage(), segment.getKey(), now, subscriberId);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO subscriber_preference (subscriber_id, coins, language, segment_key, updated_at) "
+                            + "SELECT ?, ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM subscriber_preference WHERE subscriber_id = ?)",
+                    subscriberId, coinList, segment.getLanguage(), segment.getKey(), now, subscriberId);
+        }
+        return segment;
+    }
+
+    /**
+     * 구독자 시간대 저장 (있으면 갱신) - ZoneId 로 검증해 정규화한 id 를 돌려주고, 잘못된 값이면 IllegalArgumentException
+     */
+    public String saveTimeZone(long subscriberId, String timeZone) {
+        String zoneId;
+        try {
+            zoneId = ZoneId.of(timeZone.trim()).getId();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("알 수 없는 시간대: " + timeZone, e);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        int updated = jdbcTemplate.update("UPDATE subscriber_time_zone SET zone_id = ?, updated_at = ? WHERE subscriber_id = ?",
+                zoneId, now, subscriberId);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO subscriber_time_zone (subscriber_id, zone_id, updated_at) "
+                            + "SELECT ?, ?, ? FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM subscriber_time_zone WHERE subscriber_id = ?)",
+                    subscriberId, zoneId, now, subscriberId);
+        }
+        return zoneId;
+    }
+
+    /**
+     * 발송할 세그먼트 키 목록 (키 순서, 기본 세그먼트 포함) - 세그먼트 수는 코인 조합 × 언어 수로 작다
+     * 저장된 키를 그대로 돌려주므로 조회 조건으로 쓸 수 있고, 렌더링은 DigestSegment.fromKey 로 한다.
+     */
+    public List<String> segmentKeys() {
+        TreeSet<String> keys = new TreeSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT segment_key FROM subscriber_preference", String.class));
+        keys.add(DigestSegment.DEFAULT.getKey());
+        return new ArrayList<>(keys);
+    }
+}
@@ -1,82 +1,111 @@
 package com.example.batchservice.processor;
 
+import com.example.batchservice.client.UpstreamSnapshotCache;
 import com.example.batchservice.dto.CryptoData;
+import com.example.batchservice.dto.DigestSegment;
 import com.example.batchservice.dto.NewsData;
+import com.example.batchservice.dto.UpstreamSnapshot;
+import com.example.batchservice.metrics.BatchMetrics;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.jsoup.Jsoup;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.util.StreamUtils;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class EmailProcessor {
 
-    private static final String PRICE_API_URL = "https://api.flowbit.co.kr/bitcoin-service/predicted-value-list";
-    private static final String NEWS_API_URL = "https://api.flowbit.co.kr/board-service/api/v1/news?sort=createdAt,desc&tag=";
     private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("#,##0");
+    private static final String EMAIL_TEMPLATE = "cryptoEmailTemplate";
+    private static final String FORMAT_HTML = "html";
+    private static final String FORMAT_MARKDOWN = "markdown";
+    private static final String DISCORD_FORMAT_VERSION = "v1"; // renderDiscordMessage 의 형식을 바꾸면 올림 (저장된 메시지 대신 새로 렌더링)
 
     private final TemplateEngine templateEngine;
-    private String cachedTemplate = null; //  캐시된 템플릿
-
-    public EmailProcessor(TemplateEngine templateEngine) {
+    private final UpstreamSnapshotCache upstreamSnapshotCache;
+    private final BatchMetrics batchMetrics;
+    private final RenderedDigestCache renderedDigestCache; // 발송일/세그먼트/형식별 렌더링 결과 (DB 에도 저장)
+    private final Map<String, Boolean> localizedTemplateExists = new ConcurrentHashMap<>();
+    private final Map<String, String> templateVersions = new ConcurrentHashMap<>(); // 템플릿 이름 → 내용 해시
+    private volatile UpstreamSnapshot.Source lastRenderSource; // 마지막 렌더링에 쓴 데이터 출처
+
+    public EmailProcessor(TemplateEngine templateEngine, UpstreamSnapshotCache upstreamSnapshotCache, BatchMetrics batchMetrics,
+                          RenderedDigestCache renderedDigestCache) {
         this.templateEngine = templateEngine;
+        this.upstreamSnapshotCache = upstreamSnapshotCache;
+        this.batchMetrics = batchMetrics;
+        this.renderedDigestCache = renderedDigestCache;
     }
 
     /**
      *  매일 오전 6시에 템플릿 캐시 초기화
      */
     public void resetTemplateCache() {
-        cachedTemplate = null;
-        System.out.println("[EmailProcessor] 🔄 캐시된 이메일 템플릿이 초기화되었습니다. (7시)");
+        int pruned = renderedDigestCache.reset();
+        upstreamSnapshotCache.invalidate(); // 새 템플릿은 새 데이터로 생성
+        System.out.println("[EmailProcessor] 🔄 캐시된 이메일 템플릿이 초기화되었습니다. (7시, 지난 본문 " + pruned + "건 삭제)");
     }
 
+    /**
+     * Discord 메시지 - 발송일마다 한 번만 렌더링 (인스턴스 간 공유)
+     * 데이터를 가져오지 못하면 오류 안내 대신 null (보내지 않고 다음 실행에서 다시 시도)
+     */
     public String generateDiscordMessage() {
         try {
-            RestTemplate restTemplate = new RestTemplate();
-            ObjectMapper objectMapper = new ObjectMapper();
-
-            // 암호화폐 가격 API 호출
-            String priceResponse = restTemplate.getForObject(PRICE_API_URL, String.class);
-            JsonNode priceRoot = objectMapper.readTree(priceResponse);
-
-            // 뉴스 데이터 API 호출
-            List<NewsData> newsDataList = new ArrayList<>();
-            for (String tag : List.of("비트코인", "이더리움", "리플")) {
-                String newsResponse = restTemplate.getForObject(NEWS_API_URL + tag + "&page=0&size=3", String.class);
-                JsonNode newsRoot = objectMapper.readTree(newsResponse);
-                newsDataList.addAll(extractNewsData(newsRoot, tag));
-            }
+            return renderedDigestCache.get(DigestSegment.DEFAULT.getKey(), FORMAT_MARKDOWN, DISCORD_FORMAT_VERSION, () -> {
+                // 가격/뉴스 스냅샷 (이메일/Discord 공유 캐시)
+                UpstreamSnapshot snapshot = getSnapshot();
+                return new RenderedDigestCache.RenderedDigest(renderDiscordMessage(snapshot), snapshot.contentVersion(),
+                        snapshot.getSource(), System.currentTimeMillis());
+            }).getBody();
+        } catch (Exception e) {
+            System.err.println("[EmailProcessor] Discord 메시지 생성 실패 - 전송 생략: " + e.getMessage());
+            return null;
+        }
+    }
 
-            // 예측 가격과 실제 가격 마크다운 테이블 추가
-            StringBuilder discordMessage = new StringBuilder();
-            discordMessage.append("**플로우빗 예측가격과 최신뉴스 업데이트** \n\n");
+    /**
+     * 스냅샷으로 Discord 마크다운 메시지 생성 (벤치마크에서도 직접 호출)
+     */
+    String renderDiscordMessage(UpstreamSnapshot snapshot) {
+        JsonNode priceRoot = snapshot.getPriceRoot();
+        List<NewsData> newsDataList = extractAllNewsData(snapshot, DigestSegment.DEFAULT);
 
-            // 마크다운 테이블 헤더
-            discordMessage.append("| 암호화폐 | 실제 가격 (원) | 예측 가격 (원) | 가격 변동 |\n");
-            discordMessage.append("|----------|----------------|----------------|-----------|\n");
-            discordMessage.append(formatCryptoDataForMarkdown(priceRoot));
+        Timer.Sample renderSample = batchMetrics.start();
 
-            // 최신 뉴스 추가
-            discordMessage.append("\n**최신 뉴스 업데이트**:\n");
-            for (NewsData news : newsDataList) {
-                discordMessage.append("[").append(news.getTitle()).append("](").append(news.getLink()).append(")\n");
-            }
+        // 예측 가격과 실제 가격 마크다운 테이블 추가
+        StringBuilder discordMessage = new StringBuilder();
+        discordMessage.append("**플로우빗 예측가격과 최신뉴스 업데이트** \n\n");
 
-            return discordMessage.toString();
+        // 마크다운 테이블 헤더
+        discordMessage.append("| 암호화폐 | 실제 가격 (원) | 예측 가격 (원) | 가격 변동 |\n");
+        discordMessage.append("|----------|----------------|----------------|-----------|\n");
+        discordMessage.append(formatCryptoDataForMarkdown(priceRoot));
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "데이터를 가져오는 데 오류가 발생했습니다.";
+        // 최신 뉴스 추가
+        discordMessage.append("\n**최신 뉴스 업데이트**:\n");
+        for (NewsData news : newsDataList) {
+            discordMessage.append("[").append(news.getTitle()).append("](").append(news.getLink()).append(")\n");
         }
+
+        renderSample.stop(batchMetrics.timer("digest.render", "format", "markdown"));
+        return discordMessage.toString();
     }
 
-    private String formatCryptoDataForMarkdown(JsonNode rootNode) {
+    String formatCryptoDataForMarkdown(JsonNode rootNode) {
         StringBuilder formattedData = new StringBuilder();
         rootNode.fields().forEachRemaining(entry -> {
             String crypto = entry.getKey();
@@ -117,48 +146,102 @@ public class EmailProcessor {
     }
 
     /**
-     * 이메일 템플릿을 한 번만 생성하여 모든 구독자에게 사용
+     * 이메일 템플릿을 한 번만 생성하여 모든 구독자에게 사용 (기본 세그먼트)
      */
     public String generateEmailTemplate() {
-        if (cachedTemplate != null) {
-            return cachedTemplate; //  이미 생성된 템플릿이 있으면 재사용
-        }
+        return generateEmailTemplate(DigestSegment.DEFAULT);
+    }
 
+    /**
+     * 세그먼트별 이메일 템플릿 - 세그먼트마다 하루에 한 번만 렌더링하고 같은 세그먼트의 구독자가 모두 재사용
+     * 렌더링 비용은 구독자 수가 아니라 세그먼트 수에 비례하고, 재시작하거나 다른 인스턴스는 저장된 본문을 바로 쓴다.
+     * 데이터를 가져오지 못하면 오류 안내 HTML 을 만들지 않고 예외를 던진다 - 실행이 실패(FAILED)로 끝나고
+     * JobScheduler.probeFailedRun 이 상류 회로가 닫힌 뒤 간격을 늘려가며 이어서 실행한다.
+     */
+    public String generateEmailTemplate(DigestSegment segment) {
+        String key = segment.getKey();
         try {
-            RestTemplate restTemplate = new RestTemplate();
-            ObjectMapper objectMapper = new ObjectMapper();
-
-            // 암호화폐 가격 API 호출
-            String priceResponse = restTemplate.getForObject(PRICE_API_URL, String.class);
-            JsonNode priceRoot = objectMapper.readTree(priceResponse);
-
-            // 뉴스 데이터 API 호출
-            List<NewsData> newsDataList = new ArrayList<>();
-            for (String tag : List.of("비트코인", "이더리움", "리플")) {
-                String newsResponse = restTemplate.getForObject(NEWS_API_URL + tag + "&page=0&size=3", String.class);
-                JsonNode newsRoot = objectMapper.readTree(newsResponse);
-                newsDataList.addAll(extractNewsData(newsRoot, tag));
-            }
+            // 같은 세그먼트를 동시에 요청해도 한 번만 렌더링 (실패하면 캐시하지 않음), 템플릿 파일이 바뀌면 같은 날이라도 새로 렌더링
+            return renderedDigestCache.get(key, FORMAT_HTML, templateVersion(templateName(segment)), () -> {
+                // 가격/뉴스 스냅샷 (이메일/Discord 공유 캐시)
+                UpstreamSnapshot snapshot = getSnapshot();
+                String html = renderEmail(snapshot, segment);
+                System.out.println("[EmailProcessor] ✅ 새 이메일 템플릿이 생성되었습니다. (세그먼트 " + key + ")");
+                return new RenderedDigestCache.RenderedDigest(html, snapshot.contentVersion() + ":" + templateName(segment),
+                        snapshot.getSource(), System.currentTimeMillis());
+            }).getBody();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("[EmailProcessor] 이메일 템플릿 생성 실패 - 발송 중단 (세그먼트 " + key + ")", e);
+        }
+    }
 
-            // 데이터를 템플릿에 전달
-            Context context = new Context();
-            context.setVariable("cryptoData", extractCryptoData(priceRoot));
-            context.setVariable("newsData", newsDataList);
+    /**
+     * 스냅샷으로 세그먼트의 이메일 HTML 생성 (벤치마크에서도 직접 호출)
+     */
+    String renderEmail(UpstreamSnapshot snapshot, DigestSegment segment) {
+        // 데이터를 템플릿에 전달 - 세그먼트가 구독한 코인과 그 뉴스만
+        Context context = new Context();
+        context.setVariable("cryptoData", extractCryptoData(snapshot.getPriceRoot(), segment));
+        context.setVariable("newsData", extractAllNewsData(snapshot, segment));
+
+        Timer.Sample renderSample = batchMetrics.start();
+        String html = templateEngine.process(templateName(segment), context);
+        renderSample.stop(batchMetrics.timer("digest.render", "format", "html"));
+        return html;
+    }
 
-            // 템플릿 생성 후 캐싱
-            cachedTemplate = templateEngine.process("cryptoEmailTemplate", context);
-            System.out.println("[EmailProcessor] ✅ 새 이메일 템플릿이 생성되었습니다.");
-            return cachedTemplate;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return "<html><body><p>이메일 템플릿 생성 오류</p></body></html>";
+    /**
+     * 언어별 템플릿(cryptoEmailTemplate_en 등)이 있으면 사용하고 없으면 기본(한국어) 템플릿
+     */
+    private String templateName(DigestSegment segment) {
+        if (DigestSegment.DEFAULT_LANGUAGE.equals(segment.getLanguage())) {
+            return EMAIL_TEMPLATE;
         }
+        String localized = EMAIL_TEMPLATE + "_" + segment.getLanguage();
+        return localizedTemplateExists.computeIfAbsent(localized,
+                name -> new ClassPathResource("templates/" + name + ".html").exists()) ? localized : EMAIL_TEMPLATE;
     }
 
-    private CryptoData extractCryptoData(JsonNode rootNode) {
+    /**
+     * 템플릿 파일 내용의 해시 앞 10자리 - 배포로 템플릿이 바뀌면 값이 달라진다 (프로세스마다 한 번만 계산)
+     */
+    private String templateVersion(String templateName) {
+        return templateVersions.computeIfAbsent(templateName, name -> {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = new ClassPathResource("templates/" + name + ".html").getInputStream()) {
+                    digest.update(StreamUtils.copyToByteArray(in));
+                }
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    hex.append(String.format("%02x", b));
+                }
+                return hex.substring(0, 10);
+            } catch (IOException | NoSuchAlgorithmException e) {
+                throw new IllegalStateException("[EmailProcessor] 템플릿 버전 계산 실패: " + name, e);
+            }
+        });
+    }
+
+    public UpstreamSnapshot.Source getLastRenderSource() {
+        return lastRenderSource;
+    }
+
+    private UpstreamSnapshot getSnapshot() {
+        UpstreamSnapshot snapshot = upstreamSnapshotCache.getSnapshot();
+        lastRenderSource = snapshot.getSource();
+        System.out.println("[EmailProcessor] 가격/뉴스 데이터 출처: " + snapshot.getSource());
+        return snapshot;
+    }
+
+    private CryptoData extractCryptoData(JsonNode rootNode, DigestSegment segment) {
         CryptoData cryptoData = new CryptoData();
         rootNode.fields().forEachRemaining(entry -> {
             String crypto = entry.getKey();
+            if (!segment.includesCoin(crypto)) {
+                return;
+            }
             JsonNode data = entry.getValue();
             JsonNode actualData = data.get("actual_data");
             JsonNode predictedData = data.get("predicted_data");
@@ -175,19 +258,15 @@ public class EmailProcessor {
         return cryptoData;
     }
 
-    private List<NewsData> extractNewsData(JsonNode rootNode, String tag) {
+    /**
+     * 세그먼트가 구독한 태그의 뉴스 - 스냅샷에 정리된 NewsData 가 들어 있으므로 파싱 없이 모으기만 한다
+     */
+    private List<NewsData> extractAllNewsData(UpstreamSnapshot snapshot, DigestSegment segment) {
         List<NewsData> newsDataList = new ArrayList<>();
-        rootNode.get("data").get("content").forEach(item -> {
-            String title = Jsoup.parse(item.get("title").asText()).text();
-            String description = Jsoup.parse(item.get("description").asText()).text();
-
-            newsDataList.add(new NewsData(
-                    title,
-                    item.get("link").asText(),
-                    description,
-                    item.get("img").asText(),
-                    tag
-            ));
+        snapshot.getNews().forEach((tag, items) -> {
+            if (segment.includesNewsTag(tag)) {
+                newsDataList.addAll(items);
+            }
         });
         return newsDataList;
     }
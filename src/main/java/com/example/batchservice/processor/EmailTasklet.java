@@ -1,66 +1,111 @@
 package com.example.batchservice.processor;
 
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.ledger.DeliveryRetryQueue;
+import com.example.batchservice.preference.SubscriberPreferences;
 import com.example.batchservice.reader.EmailReader;
+import com.example.batchservice.writer.DeliveryStatusRecorder;
 import com.example.batchservice.writer.EmailWriter;
+import com.example.batchservice.writer.PreparedEmail;
+import com.example.batchservice.writer.SmtpFailureClassifier;
 import org.springframework.batch.core.StepContribution;
 import org.springframework.batch.core.scope.context.ChunkContext;
 import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * 읽기 → 전송 → 기록 파이프라인
+ * - 구독자는 페이지 단위로 읽고, 동시에 진행 중인 전송(SMTP 트랜잭션)은 max-in-flight 개로 제한한다.
+ *   실제 전송 동시성은 전송 엔진(DeliveryEngine)이 정한다.
+ *   창이 가득 차면 Reader 가 기다리므로 큐가 무한히 커지지 않는다.
+ * - 모든 전송이 성공/실패로 끝난 뒤에 Step 을 완료하고, 결과를 StepContribution 에 반영한다.
+ */
 @Component
 public class EmailTasklet implements Tasklet {
 
     private final EmailReader emailReader;
     private final EmailWriter emailWriter;
-    private final EmailProcessor emailProcessor;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(5); //  최대 5개의 병렬 실행 제한
+    private final SubscriberPreferences subscriberPreferences;
+    private final DeliveryStatusRecorder deliveryStatusRecorder;
+    private final int pageSize;
+    private final int maxInFlight;
 
-    public EmailTasklet(EmailReader emailReader, EmailWriter emailWriter, EmailProcessor emailProcessor) {
+    public EmailTasklet(EmailReader emailReader, EmailWriter emailWriter, SubscriberPreferences subscriberPreferences,
+                        DeliveryStatusRecorder deliveryStatusRecorder,
+                        @Value("${batch.email.pipeline.page-size:500}") int pageSize,
+                        @Value("${batch.email.pipeline.max-in-flight:50}") int maxInFlight) {
         this.emailReader = emailReader;
         this.emailWriter = emailWriter;
-        this.emailProcessor = emailProcessor;
+        this.subscriberPreferences = subscriberPreferences;
+        this.deliveryStatusRecorder = deliveryStatusRecorder;
+        this.pageSize = pageSize;
+        this.maxInFlight = maxInFlight;
     }
 
     @Override
-    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) {
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
         long startTime = System.currentTimeMillis();
         System.out.println("[EmailTasklet] 이메일 처리 시작...");
 
-        List<String> emails = emailReader.readAll();
-        System.out.println("[EmailTasklet] 총 이메일 수: " + emails.size());
+        // scope=retries 로 실행되면 재시도 대기열에서 재시도 시각이 된 구독자만 읽음
+        boolean retriesOnly = EmailReader.SCOPE_RETRIES.equals(
+                chunkContext.getStepContext().getJobParameters().get(EmailReader.SCOPE_PARAMETER));
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicInteger sentCount = new AtomicInteger();
+        AtomicInteger failedCount = new AtomicInteger();
+        int readCount = 0;
 
-        String emailTemplate = emailProcessor.generateEmailTemplate();
-        System.out.println("[EmailTasklet] 이메일 템플릿 생성 완료!");
+        // 세그먼트 순서대로, 세그먼트마다 본문은 한 번만 렌더링/인코딩
+        for (String segmentKey : subscriberPreferences.segmentKeys()) {
+            PreparedEmail preparedEmail = emailWriter.prepareFor(segmentKey);
+            System.out.println("[EmailTasklet] 이메일 템플릿 생성 완료! (세그먼트 " + segmentKey + ")");
 
-        List<Future<?>> futures = emails.stream()
-                .map(email -> executorService.submit(() -> {
-                    try {
-                        emailWriter.write(List.of(email + "::" + emailTemplate));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }))
-                .collect(Collectors.toList());
-
-        // ✅ 모든 작업 완료 대기
-        for (Future<?> future : futures) {
-            try {
-                future.get(); //  작업이 끝날 때까지 대기
-            } catch (Exception e) {
-                e.printStackTrace();
+            long lastId = 0;
+            List<Subscriber> page;
+            while (!(page = retriesOnly
+                    ? emailReader.readRetryPage(segmentKey, lastId, Long.MAX_VALUE, pageSize)
+                    : emailReader.readPage(segmentKey, lastId, Long.MAX_VALUE, pageSize)).isEmpty()) {
+                readCount += page.size();
+                // 페이지는 한 세그먼트이므로 recipients-per-transaction 명씩 묶어 한 트랜잭션으로 (1 이면 구독자마다)
+                for (List<Subscriber> group : emailWriter.transactionGroups(page)) {
+                    inFlight.acquire(); // 전송 창이 가득 차면 읽기를 멈춤 (back-pressure) - 트랜잭션 단위
+                    emailWriter.sendGroupAsync(preparedEmail, group, (subscriber, failure) -> {
+                        if (failure == null) {
+                            deliveryStatusRecorder.markSent(subscriber);
+                            sentCount.incrementAndGet();
+                        } else {
+                            failedCount.incrementAndGet();
+                            DeliveryRetryQueue.Failure retry = deliveryStatusRecorder.markFailed(subscriber, failure);
+                            System.err.println("[EmailTasklet] 이메일 전송 실패 (" + SmtpFailureClassifier.classify(failure) + ", "
+                                    + retry.describe() + "): " + subscriber.getEmail() + " - " + failure.getMessage());
+                        }
+                    }).whenComplete((ignored, failure) -> inFlight.release());
+                }
+                lastId = page.get(page.size() - 1).getId();
             }
         }
-        if(executorService.isShutdown()){
-            executorService.shutdown();
+
+        // ✅ 모든 전송이 끝날 때까지 대기 (창의 허가를 전부 돌려받으면 진행 중인 전송 없음)
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        deliveryStatusRecorder.flushBeforeCommit(); // 기록하지 못했으면 실행을 실패로 남김
+
+        for (int i = 0; i < readCount; i++) {
+            contribution.incrementReadCount();
         }
-        System.out.println("[EmailTasklet] 이메일 처리 완료. 총 소요 시간: " + (System.currentTimeMillis() - startTime) + "ms");
+        contribution.incrementWriteCount(sentCount.get());
+        for (int i = 0; i < failedCount.get(); i++) {
+            contribution.incrementWriteSkipCount();
+        }
+
+        System.out.println("[EmailTasklet] 이메일 처리 완료. 발송 " + sentCount.get() + "건, 실패 " + failedCount.get()
+                + "건, 총 소요 시간: " + (System.currentTimeMillis() - startTime) + "ms");
 
         return RepeatStatus.FINISHED;
     }
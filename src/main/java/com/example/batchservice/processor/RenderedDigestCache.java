@@ -0,0 +1,197 @@
+package com.example.batchservice.processor;
+
+import com.example.batchservice.dto.UpstreamSnapshot;
+import com.example.batchservice.ledger.DeliveryLedger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 렌더링한 다이제스트(이메일 HTML, Discord 마크다운) 캐시 - (발송일, 세그먼트, 형식@템플릿 버전) 단위
+ * - 메모리 → rendered_digest 테이블 → 렌더링 순으로 찾고, 같은 키를 동시에 요청하면 한 번만 불러온다 (single-flight)
+ * - 렌더링한 본문은 없을 때만 저장하고 저장된 행을 다시 읽어 쓰므로, 여러 인스턴스가 동시에 만들어도 모두 같은 본문을 보낸다.
+ * - 재시작하거나 새로 뜬 인스턴스는 상류 조회/렌더링 없이 저장된 본문으로 바로 보낸다.
+ * - 마지막 정상 스냅샷(FALLBACK)으로 만든 본문은 fallback-render-ttl-ms 가 지나면 다시 렌더링해 새 데이터면 교체한다.
+ * 발송일은 DeliveryLedger 와 같으므로 새 발송일이 되면 자연히 새로 렌더링한다.
+ * 템플릿 버전도 키(digest_format 컬럼)에 들어가므로 템플릿이 바뀐 배포는 같은 날이라도 저장된 본문을 쓰지 않고 새로 렌더링하며,
+ * 버전이 다른 인스턴스가 함께 떠 있어도 서로의 본문을 덮어쓰지 않는다.
+ */
+@Component
+public class RenderedDigestCache {
+
+    private static final int MAX_FORMAT_LENGTH = 20; // digest_format 컬럼 길이
+
+    private static final String SELECT_SQL = "SELECT content_version, render_source, body, rendered_at FROM rendered_digest "
+            + "WHERE digest_date = ? AND segment_key = ? AND digest_format = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeliveryLedger deliveryLedger;
+    private final Map<String, RenderedDigest> digests = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<RenderedDigest>> loading = new ConcurrentHashMap<>();
+
+    @Value("${batch.upstream.fallback-render-ttl-ms:60000}") // FALLBACK 데이터로 만든 본문은 이 시간 뒤 새 데이터로 다시 생성
+    private long fallbackRenderTtlMillis;
+
+    @Value("${batch.digest.cache.retention-days:7}")
+    private int retentionDays;
+
+    public RenderedDigestCache(JdbcTemplate jdbcTemplate, DeliveryLedger deliveryLedger) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryLedger = deliveryLedger;
+    }
+
+    @PostConstruct
+    public void initSchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("db/rendered_digest.sql"))
+                .execute(jdbcTemplate.getDataSource());
+    }
+
+    /**
+     * 오늘 발송일의 다이제스트 - 없으면 renderer 로 한 번만 만든다 (실패는 캐시하지 않고 그대로 던짐)
+     *
+     * @param templateVersion 본문을 만드는 템플릿의 버전 - 형식과 합쳐 20자 이내
+     */
+    public RenderedDigest get(String segmentKey, String format, String templateVersion, Supplier<RenderedDigest> renderer) {
+        LocalDate date = deliveryLedger.currentDeliveryDate();
+        String versionedFormat = format + "@" + templateVersion;
+        if (versionedFormat.length() > MAX_FORMAT_LENGTH) {
+            throw new IllegalArgumentException("[RenderedDigestCache] 형식@템플릿 버전이 너무 김: " + versionedFormat);
+        }
+        String key = date + "|" + segmentKey + "|" + versionedFormat;
+        RenderedDigest cached = digests.get(key);
+        if (cached != null && !needsRefresh(cached)) {
+            return cached;
+        }
+
+        CompletableFuture<RenderedDigest> mine = new CompletableFuture<>();
+        CompletableFuture<RenderedDigest> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.join(); // 다른 스레드가 불러오는 중 - 같은 결과 사용
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+
+        try {
+            RenderedDigest loaded = load(date, segmentKey, versionedFormat, renderer);
+            digests.put(key, loaded);
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            if (cached != null) {
+                // FALLBACK 본문 교체 실패 - 가지고 있던 본문 계속 사용
+                System.err.println("[RenderedDigestCache] 다시 렌더링 실패 - 기존 본문 사용 (" + key + "): " + e.getMessage());
+                mine.complete(cached);
+                return cached;
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, mine);
+        }
+    }
+
+    /**
+     * 메모리 캐시를 비우고 보관 기간이 지난 행 삭제 (매일 초기화 시)
+     */
+    public int reset() {
+        digests.clear();
+        return jdbcTemplate.update("DELETE FROM rendered_digest WHERE digest_date < ?",
+                Date.valueOf(deliveryLedger.currentDeliveryDate().minusDays(retentionDays)));
+    }
+
+    private RenderedDigest load(LocalDate date, String segmentKey, String format, Supplier<RenderedDigest> renderer) {
+        Date sqlDate = Date.valueOf(date);
+        RenderedDigest stored = select(sqlDate, segmentKey, format);
+        if (stored != null && !needsRefresh(stored)) {
+            return stored;
+        }
+
+        RenderedDigest rendered = renderer.get();
+        if (stored == null) {
+            jdbcTemplate.update("INSERT INTO rendered_digest "
+                            + "(digest_date, segment_key, digest_format, content_version, render_source, body, rendered_at) "
+                            + "SELECT ?, ?, ?, ?, ?, ?, ? FROM DUAL WHERE NOT EXISTS "
+                            + "(SELECT 1 FROM rendered_digest WHERE digest_date = ? AND segment_key = ? AND digest_format = ?)",
+                    sqlDate, segmentKey, format, rendered.getContentVersion(), rendered.getSource().name(), rendered.getBody(),
+                    new Timestamp(rendered.getRenderedAt()), sqlDate, segmentKey, format);
+        } else {
+            // FALLBACK 본문만 교체 - 그 사이 다른 인스턴스가 새 데이터로 바꿨으면 건드리지 않음
+            jdbcTemplate.update("UPDATE rendered_digest SET content_version = ?, render_source = ?, body = ?, rendered_at = ? "
+                            + "WHERE digest_date = ? AND segment_key = ? AND digest_format = ? AND render_source = ?",
+                    rendered.getContentVersion(), rendered.getSource().name(), rendered.getBody(),
+                    new Timestamp(rendered.getRenderedAt()), sqlDate, segmentKey, format, UpstreamSnapshot.Source.FALLBACK.name());
+        }
+
+        RenderedDigest winner = select(sqlDate, segmentKey, format); // 동시에 만든 인스턴스가 있으면 먼저 저장한 쪽
+        if (winner == null) {
+            return rendered; // 직후 삭제된 경우 - 이번 본문 사용
+        }
+        if (!winner.getContentVersion().equals(rendered.getContentVersion())) {
+            System.out.println("[RenderedDigestCache] 다른 인스턴스가 먼저 만든 본문 사용 (" + segmentKey + "/" + format + ")");
+        }
+        return winner;
+    }
+
+    private RenderedDigest select(Date date, String segmentKey, String format) {
+        List<RenderedDigest> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new RenderedDigest(
+                rs.getString("body"),
+                rs.getString("content_version"),
+                UpstreamSnapshot.Source.valueOf(rs.getString("render_source")),
+                rs.getTimestamp("rendered_at").getTime()), date, segmentKey, format);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private boolean needsRefresh(RenderedDigest digest) {
+        return digest.getSource() == UpstreamSnapshot.Source.FALLBACK
+                && System.currentTimeMillis() - digest.getRenderedAt() > fallbackRenderTtlMillis;
+    }
+
+    /**
+     * 렌더링 결과 한 건
+     */
+    public static class RenderedDigest {
+
+        private final String body;
+        private final String contentVersion; // 데이터 해시 + 템플릿 이름
+        private final UpstreamSnapshot.Source source;
+        private final long renderedAt;
+
+        public RenderedDigest(String body, String contentVersion, UpstreamSnapshot.Source source, long renderedAt) {
+            this.body = body;
+            this.contentVersion = contentVersion;
+            this.source = source;
+            this.renderedAt = renderedAt;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public String getContentVersion() {
+            return contentVersion;
+        }
+
+        public UpstreamSnapshot.Source getSource() {
+            return source;
+        }
+
+        public long getRenderedAt() {
+            return renderedAt;
+        }
+    }
+}
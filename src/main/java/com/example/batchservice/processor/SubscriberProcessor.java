@@ -0,0 +1,22 @@
+package com.example.batchservice.processor;
+
+import com.example.batchservice.dto.Subscriber;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 청크 단계의 Processor - 발송할 수 없는 주소는 걸러낸다 (null 반환 시 Writer로 전달되지 않음)
+ */
+@Component
+public class SubscriberProcessor implements ItemProcessor<Subscriber, Subscriber> {
+
+    @Override
+    public Subscriber process(Subscriber subscriber) {
+        String email = subscriber.getEmail();
+        if (email == null || email.isBlank() || !email.contains("@")) {
+            System.err.println("[SubscriberProcessor] 잘못된 이메일 주소 건너뜀: id=" + subscriber.getId());
+            return null;
+        }
+        return new Subscriber(subscriber.getId(), email.trim(), subscriber.getSegmentKey(), subscriber.getAttempts());
+    }
+}
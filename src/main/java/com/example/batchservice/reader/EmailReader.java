@@ -1,23 +1,110 @@
 package com.example.batchservice.reader;
 
+import com.example.batchservice.batch.DeliveryWindowPlanner;
+import com.example.batchservice.dto.DigestSegment;
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.ledger.DeliveryLedger;
+import com.example.batchservice.ledger.DeliveryRetryQueue;
+import com.example.batchservice.shard.ShardLeaseManager;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Component
 public class EmailReader {
 
+    /**
+     * Job 파라미터 - "retries" 면 재시도 대기열에서 재시도 시각이 된 구독자만 읽는다 (없거나 "all" 이면 전체)
+     */
+    public static final String SCOPE_PARAMETER = "scope";
+    public static final String SCOPE_ALL = "all";
+    public static final String SCOPE_RETRIES = "retries";
+
+    /**
+     * 기본 세그먼트 - 선호도가 없거나 기본값으로 저장한 구독자 (subscriber PK 순으로 읽음)
+     * 재시도 대기 중이거나 dead-letter 인 구독자는 제외한다.
+     */
+    private static final String DEFAULT_SEGMENT_SQL = "SELECT s.id, s.email, COALESCE(r.attempts, 0) AS attempts FROM subscriber s "
+            + "LEFT JOIN subscriber_preference p ON p.subscriber_id = s.id "
+            + DeliveryRetryQueue.retryJoin("?")
+            + "WHERE (p.subscriber_id IS NULL OR p.segment_key = ?) AND " + DeliveryLedger.notDeliveredCondition("?")
+            + " AND " + DeliveryRetryQueue.dueCondition("?")
+            + " AND s.id > ? AND s.id <= ?%s ORDER BY s.id LIMIT ?";
+
+    /**
+     * 그 외 세그먼트 - (segment_key, subscriber_id) 인덱스 순으로 읽음
+     */
+    private static final String SEGMENT_SQL = "SELECT s.id, s.email, COALESCE(r.attempts, 0) AS attempts FROM subscriber_preference p "
+            + "JOIN subscriber s ON s.id = p.subscriber_id "
+            + DeliveryRetryQueue.retryJoin("?")
+            + "WHERE p.segment_key = ? AND " + DeliveryLedger.notDeliveredCondition("?")
+            + " AND " + DeliveryRetryQueue.dueCondition("?")
+            + " AND p.subscriber_id > ? AND p.subscriber_id <= ?%s ORDER BY p.subscriber_id LIMIT ?";
+
+    /**
+     * 재시도만 - subscriber 전체가 아니라 그 발송일의 재시도 대기열(PK 순)에서 시작한다. 파라미터 순서는 위와 같다.
+     */
+    private static final String RETRY_DEFAULT_SEGMENT_SQL = "SELECT s.id, s.email, r.attempts FROM delivery_retry r "
+            + "JOIN subscriber s ON s.id = r.subscriber_id "
+            + "LEFT JOIN subscriber_preference p ON p.subscriber_id = s.id "
+            + "WHERE r.delivery_date = ? AND (p.subscriber_id IS NULL OR p.segment_key = ?) AND " + DeliveryLedger.notDeliveredCondition("?")
+            + " AND r.status = '" + DeliveryRetryQueue.STATUS_PENDING + "' AND r.next_attempt_at <= ?"
+            + " AND r.subscriber_id > ? AND r.subscriber_id <= ?%s ORDER BY r.subscriber_id LIMIT ?";
+
+    private static final String RETRY_SEGMENT_SQL = "SELECT s.id, s.email, r.attempts FROM delivery_retry r "
+            + "JOIN subscriber_preference p ON p.subscriber_id = r.subscriber_id "
+            + "JOIN subscriber s ON s.id = r.subscriber_id "
+            + "WHERE r.delivery_date = ? AND p.segment_key = ? AND " + DeliveryLedger.notDeliveredCondition("?")
+            + " AND r.status = '" + DeliveryRetryQueue.STATUS_PENDING + "' AND r.next_attempt_at <= ?"
+            + " AND r.subscriber_id > ? AND r.subscriber_id <= ?%s ORDER BY r.subscriber_id LIMIT ?";
+
     private final JdbcTemplate jdbcTemplate;
+    private final DeliveryLedger deliveryLedger;
+    private final ShardLeaseManager shardLeaseManager;
+    private final DeliveryWindowPlanner deliveryWindowPlanner;
 
-    public EmailReader(JdbcTemplate jdbcTemplate) {
+    public EmailReader(JdbcTemplate jdbcTemplate, DeliveryLedger deliveryLedger, ShardLeaseManager shardLeaseManager,
+                       DeliveryWindowPlanner deliveryWindowPlanner) {
         this.jdbcTemplate = jdbcTemplate;
+        this.deliveryLedger = deliveryLedger;
+        this.shardLeaseManager = shardLeaseManager;
+        this.deliveryWindowPlanner = deliveryWindowPlanner;
+    }
+
+    /**
+     * 한 세그먼트에서 afterId 다음부터 limit 건의 오늘 미발송 구독자를 id 순으로 조회 (keyset 페이징)
+     * 발송 창을 쓰면 발송 구간이 풀린 구독자만 읽는다.
+     *
+     * @param maxId 파티션 상한 (전체면 Long.MAX_VALUE)
+     */
+    public List<Subscriber> readPage(String segmentKey, long afterId, long maxId, int limit) {
+        boolean defaultSegment = DigestSegment.DEFAULT.getKey().equals(segmentKey);
+        return query(defaultSegment ? DEFAULT_SEGMENT_SQL : SEGMENT_SQL, deliveryWindowPlanner.releaseCondition("s.id"),
+                segmentKey, afterId, maxId, limit);
+    }
+
+    /**
+     * readPage 와 같지만 재시도 시각이 된 구독자만 재시도 대기열에서 조회 - 실패한 주소 때문에 구독자 전체를 다시 훑지 않는다
+     * 재시도 대상은 이미 발송 구간이 풀렸던 구독자이므로 발송 창 조건을 붙이지 않는다.
+     */
+    public List<Subscriber> readRetryPage(String segmentKey, long afterId, long maxId, int limit) {
+        boolean defaultSegment = DigestSegment.DEFAULT.getKey().equals(segmentKey);
+        return query(defaultSegment ? RETRY_DEFAULT_SEGMENT_SQL : RETRY_SEGMENT_SQL, "", segmentKey, afterId, maxId, limit);
     }
 
-    public List<String> readAll() {
-        return jdbcTemplate.queryForList(
-                "SELECT email FROM subscriber WHERE sent = FALSE",
-                String.class
+    /**
+     * 샤딩 중이면 페이지마다 임대가 유효한지 확인하고 그 시점에 임대 중인 샤드만 읽는다 (%s 자리에 샤드 조건과 windowCondition 을 넣음)
+     */
+    private List<Subscriber> query(String sql, String windowCondition, String segmentKey, long afterId, long maxId, int limit) {
+        shardLeaseManager.checkLease(); // 임대 갱신이 밀렸으면 다른 인스턴스가 넘겨받기 전에 멈춤
+        Date deliveryDate = Date.valueOf(deliveryLedger.currentDeliveryDate());
+        return jdbcTemplate.query(String.format(sql, shardLeaseManager.shardCondition("s.id") + windowCondition),
+                (rs, rowNum) -> new Subscriber(rs.getLong("id"), rs.getString("email"), segmentKey, rs.getInt("attempts")),
+                deliveryDate, segmentKey, deliveryDate, Timestamp.valueOf(LocalDateTime.now()), afterId, maxId, limit
         );
     }
 }
@@ -0,0 +1,112 @@
+package com.example.batchservice.reader;
+
+import com.example.batchservice.dto.Subscriber;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 오늘 미발송 구독자를 세그먼트 순서대로, 세그먼트 안에서는 id 순으로 읽는 Reader
+ * - 같은 세그먼트의 구독자가 연달아 나오므로 Writer 는 청크마다 보통 한 가지 본문만 사용한다.
+ * - 마지막으로 넘긴 (세그먼트, id) 를 ExecutionContext 에 저장하여 재시작 시 그 다음부터 읽는다.
+ * - retriesOnly 면 재시도 대기열에서 재시도 시각이 된 구독자만 같은 순서로 읽는다.
+ */
+public class SegmentedSubscriberItemReader implements ItemStreamReader<Subscriber> {
+
+    private static final String SEGMENT_KEY = "segmentedSubscriberItemReader.segment";
+    private static final String LAST_ID_KEY = "segmentedSubscriberItemReader.lastId";
+
+    private final EmailReader emailReader;
+    private final List<String> segmentKeys;
+    private final long minId;
+    private final long maxId;
+    private final int pageSize;
+    private final boolean retriesOnly;
+    private final Deque<Subscriber> page = new ArrayDeque<>();
+
+    private int segmentIndex;
+    private long lastFetchedId;
+    private String lastReadSegment;
+    private long lastReadId;
+
+    /**
+     * @param segmentKeys 읽을 세그먼트 (키 순서)
+     * @param minId       파티션 하한 (포함)
+     * @param maxId       파티션 상한 (포함)
+     * @param retriesOnly 재시도 대기열만 읽을지
+     */
+    public SegmentedSubscriberItemReader(EmailReader emailReader, List<String> segmentKeys,
+                                         long minId, long maxId, int pageSize, boolean retriesOnly) {
+        this.emailReader = emailReader;
+        this.segmentKeys = segmentKeys;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.pageSize = pageSize;
+        this.retriesOnly = retriesOnly;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        segmentIndex = 0;
+        lastFetchedId = minId - 1;
+        lastReadSegment = null;
+        lastReadId = lastFetchedId;
+
+        if (executionContext.containsKey(SEGMENT_KEY)) {
+            String savedSegment = executionContext.getString(SEGMENT_KEY);
+            long savedId = executionContext.getLong(LAST_ID_KEY);
+            // 저장된 세그먼트보다 앞선 세그먼트는 끝난 것 - 재시작 사이에 새로 생긴 앞 세그먼트는 다음 실행에서 처리
+            while (segmentIndex < segmentKeys.size() && segmentKeys.get(segmentIndex).compareTo(savedSegment) < 0) {
+                segmentIndex++;
+            }
+            if (segmentIndex < segmentKeys.size() && segmentKeys.get(segmentIndex).equals(savedSegment)) {
+                lastFetchedId = savedId;
+            }
+            lastReadSegment = savedSegment;
+            lastReadId = savedId;
+        }
+    }
+
+    @Override
+    public Subscriber read() {
+        while (page.isEmpty()) {
+            if (segmentIndex >= segmentKeys.size()) {
+                return null;
+            }
+
+            String segmentKey = segmentKeys.get(segmentIndex);
+            List<Subscriber> next = retriesOnly
+                    ? emailReader.readRetryPage(segmentKey, lastFetchedId, maxId, pageSize)
+                    : emailReader.readPage(segmentKey, lastFetchedId, maxId, pageSize);
+            if (next.isEmpty()) {
+                segmentIndex++; // 이 세그먼트는 끝 - 다음 세그먼트의 처음부터
+                lastFetchedId = minId - 1;
+            } else {
+                page.addAll(next);
+                lastFetchedId = next.get(next.size() - 1).getId();
+            }
+        }
+
+        Subscriber subscriber = page.poll();
+        lastReadSegment = subscriber.getSegmentKey();
+        lastReadId = subscriber.getId();
+        return subscriber;
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (lastReadSegment != null) {
+            executionContext.putString(SEGMENT_KEY, lastReadSegment);
+            executionContext.putLong(LAST_ID_KEY, lastReadId);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        page.clear();
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.batchservice.shard;
+
+import com.example.batchservice.batch.DeliveryTriggerEvent;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 여러 인스턴스가 구독자를 나눠 보내기 위한 DB 임대(lease) 기반 샤딩 (batch.shard.enabled=true 일 때만 동작)
+ * - 구독자는 MOD(id, shard-count) 로 샤드에 속하고, 인스턴스는 임대한 샤드의 구독자만 읽는다.
+ * - renew-interval-ms 마다 하트비트와 함께 임대를 연장하고, 살아있는 인스턴스 수로 나눈 몫만큼 샤드를 맡는다.
+ *   몫보다 많이 가진 인스턴스는 실행 중이 아닐 때 남는 샤드를 내놓고, 모자란 인스턴스는 비었거나 만료된 샤드를 가져간다.
+ * - 인스턴스가 죽어 lease-ttl-seconds 동안 갱신이 없으면 그 샤드는 다른 인스턴스가 넘겨받는다.
+ *   넘겨받는 쪽은 발송 기록에 없는 구독자만 보내므로, 죽은 인스턴스가 보냈지만 기록 전이던 구독자만 중복될 수 있다.
+ * - 새로 맡은 샤드가 생기면 실행 신호(SHARD_TAKEOVER)를 보내 다른 신호를 기다리지 않고 바로 처리한다.
+ * - 갱신은 전용 스레드에서 한다 - 공용 @Scheduled 스레드의 다른 작업(발송 기록 flush, 정리 cron)이 밀려도 임대가 만료되지 않도록.
+ *   그래도 갱신이 lease-ttl-seconds 의 절반 넘게 밀렸으면 Reader 가 다음 페이지를 읽지 않는다 (checkLease).
+ * 시각은 인스턴스 간 시계 차이의 영향을 받지 않도록 DB 의 CURRENT_TIMESTAMP 를 쓴다.
+ */
+@Component
+public class ShardLeaseManager implements JobExecutionListener {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicInteger runningJobs = new AtomicInteger(); // 실행 중에는 샤드를 내놓지 않음
+    private volatile Set<Integer> heldShards = Set.of();
+    private volatile long leaseDeadlineNanos = System.nanoTime(); // 이 시각(System.nanoTime) 까지는 임대가 확실히 유효
+    private ScheduledExecutorService renewExecutor;
+    private String instanceId;
+
+    @Value("${batch.shard.enabled:false}")
+    private boolean enabled;
+
+    @Value("${batch.shard.count:16}") // 바꾸면 모든 인스턴스를 같이 바꿔야 함
+    private int shardCount;
+
+    @Value("${batch.shard.lease-ttl-seconds:30}")
+    private int leaseTtlSeconds;
+
+    @Value("${batch.shard.renew-interval-ms:10000}") // lease-ttl-seconds 의 절반보다 충분히 짧게
+    private long renewIntervalMillis;
+
+    @Value("${batch.shard.instance-id:}") // 비우면 호스트명 + 임의 값
+    private String configuredInstanceId;
+
+    public ShardLeaseManager(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        new ResourceDatabasePopulator(new ClassPathResource("db/shard_lease.sql"))
+                .execute(jdbcTemplate.getDataSource());
+        for (int shard = 0; shard < shardCount; shard++) {
+            jdbcTemplate.update("INSERT INTO subscriber_shard_lease (shard_id, owner, expires_at, updated_at) "
+                    + "SELECT ?, NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP FROM DUAL "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM subscriber_shard_lease WHERE shard_id = ?)", shard, shard);
+        }
+        instanceId = configuredInstanceId.isBlank() ? defaultInstanceId() : configuredInstanceId;
+        renew();
+        renewExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-lease-renew");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewExecutor.scheduleWithFixedDelay(this::renew, renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+        runningJobs.incrementAndGet();
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        runningJobs.decrementAndGet();
+    }
+
+    /**
+     * 하트비트, 임대 연장, 몫에 맞춰 샤드 반납/획득 (renew-interval-ms 마다 전용 스레드에서)
+     */
+    public synchronized void renew() {
+        if (!enabled) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            heartbeat();
+            int live = Math.max(1, liveInstanceCount()); // 방금 하트비트를 남겼으므로 최소 자신
+            int fairShare = (shardCount + live - 1) / live;
+
+            jdbcTemplate.update("UPDATE subscriber_shard_lease SET expires_at = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP), "
+                    + "updated_at = CURRENT_TIMESTAMP WHERE owner = ? AND shard_id < ?", leaseTtlSeconds, instanceId, shardCount);
+            // DB 의 만료 시각은 이 시점 + TTL 이후 - 절반만 믿고 나머지는 읽은 페이지를 보낼 여유로 남김
+            leaseDeadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(leaseTtlSeconds) / 2;
+            List<Integer> held = new ArrayList<>(jdbcTemplate.queryForList(
+                    "SELECT shard_id FROM subscriber_shard_lease WHERE owner = ? AND shard_id < ? ORDER BY shard_id",
+                    Integer.class, instanceId, shardCount));
+
+            if (held.size() > fairShare && runningJobs.get() == 0) {
+                release(held, held.size() - fairShare);
+            } else if (held.size() < fairShare) {
+                claim(held, fairShare - held.size());
+            }
+
+            Set<Integer> previous = heldShards;
+            heldShards = Set.copyOf(held);
+            if (!previous.equals(heldShards)) {
+                System.out.println("[ShardLeaseManager] " + instanceId + " 샤드 " + new TreeSet<>(heldShards)
+                        + " 담당 (인스턴스 " + live + "개, 몫 " + fairShare + "/" + shardCount + ")");
+            }
+            if (!previous.containsAll(heldShards)) {
+                // 넘겨받은 샤드의 미발송 구독자는 다음 신호까지 기다리지 않고 바로 보냄
+                eventPublisher.publishEvent(new DeliveryTriggerEvent(DeliveryTriggerEvent.Reason.SHARD_TAKEOVER));
+            }
+        } catch (Exception e) {
+            // 갱신하지 못하면 임대가 만료되어 다른 인스턴스가 가져가므로 보유 샤드도 비움 (중복 발송 방지)
+            heldShards = Set.of();
+            leaseDeadlineNanos = System.nanoTime();
+            System.err.println("[ShardLeaseManager] 임대 갱신 실패 - 샤드 처리 중단: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reader 가 페이지를 읽기 전에 확인 - 마지막 임대 연장 후 lease-ttl-seconds 의 절반이 지났으면 (갱신이 밀림) 예외
+     * 다른 인스턴스가 만료된 샤드를 넘겨받아 같은 구독자를 보내기 전에 이 인스턴스의 실행을 멈춘다 (실패한 실행으로 이어서 처리).
+     */
+    public void checkLease() {
+        if (enabled && System.nanoTime() - leaseDeadlineNanos > 0) {
+            throw new IllegalStateException("[ShardLeaseManager] 샤드 임대 갱신이 밀려 만료가 가까움 - 다음 페이지를 읽지 않음");
+        }
+    }
+
+    /**
+     * 구독자 id 컬럼에 붙이는 "내가 임대한 샤드" 조건 - 꺼져 있으면 빈 문자열, 보유 샤드가 없으면 항상 거짓
+     */
+    public String shardCondition(String idColumn) {
+        if (!enabled) {
+            return "";
+        }
+        Set<Integer> held = heldShards;
+        if (held.isEmpty()) {
+            return " AND 1 = 0";
+        }
+        return " AND MOD(" + idColumn + ", " + shardCount + ") IN ("
+                + held.stream().sorted().map(String::valueOf).collect(Collectors.joining(", ")) + ")";
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 인스턴스 중 하나만 할 일(Discord 알림 등)을 맡을지 - 샤드 0 을 임대한 인스턴스 (샤딩을 끄면 항상)
+     */
+    public boolean isLeader() {
+        return !enabled || heldShards.contains(0);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public Set<Integer> getHeldShards() {
+        return heldShards;
+    }
+
+    /**
+     * 보유 샤드를 "0,3,7" 처럼 정렬해 이은 값 - 실행이 어떤 샤드를 읽었는지 JobParameters 에 남길 때 사용
+     */
+    public String heldShardsKey() {
+        return heldShards.stream().sorted().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    public int liveInstanceCount() {
+        if (!enabled) {
+            return 1;
+        }
+        Integer live = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM delivery_instance WHERE expires_at > CURRENT_TIMESTAMP", Integer.class);
+        return live == null ? 0 : live;
+    }
+
+    /**
+     * 종료 시 샤드를 바로 내놓아 다른 인스턴스가 만료를 기다리지 않게 함
+     */
+    @PreDestroy
+    public void close() {
+        if (renewExecutor != null) {
+            renewExecutor.shutdownNow();
+        }
+        releaseAll();
+    }
+
+    private synchronized void releaseAll() {
+        if (!enabled || instanceId == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("UPDATE subscriber_shard_lease SET owner = NULL, expires_at = CURRENT_TIMESTAMP, "
+                    + "updated_at = CURRENT_TIMESTAMP WHERE owner = ?", instanceId);
+            jdbcTemplate.update("DELETE FROM delivery_instance WHERE instance_id = ?", instanceId);
+            heldShards = Set.of();
+        } catch (Exception e) {
+            System.err.println("[ShardLeaseManager] 종료 시 임대 반납 실패 (만료 후 넘어감): " + e.getMessage());
+        }
+    }
+
+    private void heartbeat() {
+        int updated = jdbcTemplate.update("UPDATE delivery_instance SET expires_at = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP) "
+                + "WHERE instance_id = ?", leaseTtlSeconds, instanceId);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO delivery_instance (instance_id, expires_at) "
+                    + "SELECT ?, TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP) FROM DUAL "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM delivery_instance WHERE instance_id = ?)", instanceId, leaseTtlSeconds, instanceId);
+        }
+        jdbcTemplate.update("DELETE FROM delivery_instance WHERE expires_at < CURRENT_TIMESTAMP");
+    }
+
+    /**
+     * 번호가 큰 샤드부터 count 개 반납 - 다른 인스턴스가 바로 가져갈 수 있도록 만료 처리
+     */
+    private void release(List<Integer> held, int count) {
+        for (int i = 0; i < count; i++) {
+            Integer shard = held.remove(held.size() - 1);
+            jdbcTemplate.update("UPDATE subscriber_shard_lease SET owner = NULL, expires_at = CURRENT_TIMESTAMP, "
+                    + "updated_at = CURRENT_TIMESTAMP WHERE shard_id = ? AND owner = ?", shard, instanceId);
+        }
+    }
+
+    /**
+     * 비었거나 만료된 샤드를 count 개까지 가져옴 - 조건부 UPDATE 라 두 인스턴스가 같은 샤드를 동시에 가져갈 수 없다
+     */
+    private void claim(List<Integer> held, int count) {
+        List<Object[]> candidates = jdbcTemplate.query(
+                "SELECT shard_id, owner FROM subscriber_shard_lease WHERE shard_id < ? "
+                        + "AND (owner IS NULL OR expires_at < CURRENT_TIMESTAMP) ORDER BY shard_id",
+                (rs, rowNum) -> new Object[]{rs.getInt("shard_id"), rs.getString("owner")}, shardCount);
+        List<Integer> claimed = new ArrayList<>();
+        for (Object[] candidate : candidates) {
+            if (claimed.size() >= count) {
+                break;
+            }
+            int shard = (Integer) candidate[0];
+            int updated = jdbcTemplate.update("UPDATE subscriber_shard_lease SET owner = ?, "
+                    + "expires_at = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP), updated_at = CURRENT_TIMESTAMP "
+                    + "WHERE shard_id = ? AND (owner IS NULL OR expires_at < CURRENT_TIMESTAMP)", instanceId, leaseTtlSeconds, shard);
+            if (updated == 1) {
+                claimed.add(shard);
+                if (candidate[1] != null) {
+                    System.out.println("[ShardLeaseManager] 만료된 샤드 " + shard + " 넘겨받음 (이전 담당 " + candidate[1] + ")");
+                }
+            }
+        }
+        held.addAll(claimed);
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.batchservice.writer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.net.ssl.SSLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 비동기 SMTP 전송 엔진 - event-loop-threads 개의 Netty 이벤트 루프에서 최대 max-sessions 개의 SMTP 세션을 동시에 진행
+ * 네트워크 응답을 기다리는 동안 스레드를 점유하지 않으므로 같은 스레드 수로 더 많은 메일을 동시에 보낼 수 있다.
+ * 세션은 재사용하되 max-messages-per-session 건을 보냈거나 max-idle-ms 동안 쓰이지 않았으면 닫는다.
+ * 서버가 reply-timeout-ms 동안 응답하지 않으면 그 세션의 전송은 실패하고 세션은 닫힌다.
+ * from 은 봉투 발신자(MAIL FROM)이자 From 헤더로 쓴다.
+ */
+public class AsyncSmtpDeliveryEngine implements DeliveryEngine {
+
+    private final String host;
+    private final int port;
+    private final SslContext startTlsContext;
+    private final String username;
+    private final String password;
+    private final String from; // MAIL FROM 주소
+    private final InternetAddress fromHeader; // null 이면 메시지의 From 을 그대로 둠
+    private final int maxSessions;
+    private final int maxMessagesPerSession;
+    private final long maxIdleMillis;
+    private final long replyTimeoutMillis;
+
+    private final EventLoopGroup eventLoopGroup;
+    private final Bootstrap bootstrap;
+    private final Counter connectionsOpened;
+    private final Counter messagesSent;
+
+    // this 로 동기화
+    private final Deque<AsyncSmtpSession> idleSessions = new ArrayDeque<>();
+    private final Deque<PendingSend> waitingSends = new ArrayDeque<>();
+    private int openSessions;
+
+    /**
+     * @param relay 지표의 relay 태그 (릴레이 설정이 없으면 "default")
+     */
+    public AsyncSmtpDeliveryEngine(String relay, String host, int port, boolean startTls, String username, String password,
+                                   String from, int eventLoopThreads, int maxSessions, int maxMessagesPerSession,
+                                   long maxIdleMillis, long replyTimeoutMillis, MeterRegistry meterRegistry) throws SSLException {
+        this(relay, host, port, startTls ? SslContextBuilder.forClient().build() : null, username, password, from,
+                eventLoopThreads, maxSessions, maxMessagesPerSession, maxIdleMillis, replyTimeoutMillis, meterRegistry);
+    }
+
+    /**
+     * @param startTlsContext STARTTLS 에 쓸 클라이언트 TLS 설정 (null 이면 STARTTLS 생략) - 테스트에서 신뢰할 인증서를 정할 때
+     */
+    AsyncSmtpDeliveryEngine(String relay, String host, int port, SslContext startTlsContext, String username, String password,
+                            String from, int eventLoopThreads, int maxSessions, int maxMessagesPerSession,
+                            long maxIdleMillis, long replyTimeoutMillis, MeterRegistry meterRegistry) {
+        this.host = host;
+        this.port = port;
+        this.startTlsContext = startTlsContext;
+        this.username = username;
+        this.password = password;
+        this.fromHeader = JavaMailDeliveryEngine.parseFrom(from);
+        this.from = fromHeader != null ? fromHeader.getAddress() : from;
+        this.maxSessions = maxSessions;
+        this.maxMessagesPerSession = maxMessagesPerSession;
+        this.maxIdleMillis = maxIdleMillis;
+        this.replyTimeoutMillis = replyTimeoutMillis;
+
+        this.eventLoopGroup = new NioEventLoopGroup(eventLoopThreads);
+        this.bootstrap = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10_000)
+                .option(ChannelOption.SO_KEEPALIVE, true);
+
+        // SmtpTransportPool 과 같은 지표 (engine 태그로 구분) - 연결당 메시지 수 비교용
+        this.connectionsOpened = Counter.builder("email.smtp.connections.opened")
+                .description("열린 SMTP 연결 수")
+                .tag("engine", "async-smtp")
+                .tag("relay", relay)
+                .register(meterRegistry);
+        this.messagesSent = Counter.builder("email.smtp.messages.sent")
+                .description("SMTP 로 전송한 메시지 수")
+                .tag("engine", "async-smtp")
+                .tag("relay", relay)
+                .register(meterRegistry);
+        Gauge.builder("email.executor.queue.depth", this, AsyncSmtpDeliveryEngine::waitingCount)
+                .description("세션을 기다리는 전송 수")
+                .tag("engine", "async-smtp")
+                .tag("relay", relay)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<Void> send(MimeMessage message) {
+        List<String> recipients;
+        try {
+            recipients = recipientsOf(message);
+        } catch (MessagingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // 수신자 하나라도 거부되면 실패 (단일 수신자 메일은 거부 = 트랜잭션 실패)
+        return enqueue(message, recipients).thenCompose(rejected -> rejected.isEmpty()
+                ? CompletableFuture.<Void>completedFuture(null)
+                : CompletableFuture.<Void>failedFuture(rejected.values().iterator().next()));
+    }
+
+    @Override
+    public CompletableFuture<RecipientDeliveryResult> sendToAll(MimeMessage message, List<String> recipients) {
+        return enqueue(message, recipients)
+                .thenApply(rejected -> new RecipientDeliveryResult(recipients, new HashMap<>(rejected)));
+    }
+
+    private CompletableFuture<Map<String, AsyncSmtpSession.SmtpReplyException>> enqueue(MimeMessage message, List<String> recipients) {
+        PendingSend pending;
+        try {
+            if (fromHeader != null) {
+                message.setFrom(fromHeader); // 다른 릴레이로 다시 보내는 경우에도 이번 릴레이 주소로
+            }
+            pending = new PendingSend(recipients, encode(message));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        synchronized (this) {
+            waitingSends.add(pending);
+        }
+        dispatch();
+        return pending.result;
+    }
+
+    private synchronized int waitingCount() {
+        return waitingSends.size();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            for (AsyncSmtpSession session : idleSessions) {
+                session.close();
+            }
+            idleSessions.clear();
+        }
+        eventLoopGroup.shutdownGracefully();
+    }
+
+    /**
+     * 대기 중인 전송을 쉬고 있는 세션에 배정 - 세션이 모자라면 max-sessions 까지 새로 연다
+     */
+    private void dispatch() {
+        while (true) {
+            AsyncSmtpSession session;
+            PendingSend pending;
+            synchronized (this) {
+                if (waitingSends.isEmpty()) {
+                    return;
+                }
+                session = pollUsableSession();
+                if (session == null) {
+                    if (openSessions < maxSessions) {
+                        openSessions++;
+                        openSession();
+                    }
+                    return; // 세션이 반납되거나 새로 열리면 다시 dispatch
+                }
+                pending = waitingSends.poll();
+            }
+
+            AsyncSmtpSession assigned = session;
+            PendingSend assignedSend = pending;
+            assigned.deliverToAll(from, assignedSend.recipients, assignedSend.content).whenComplete((rejected, failure) -> {
+                if (failure == null) {
+                    messagesSent.increment(assignedSend.recipients.size() - rejected.size());
+                    assignedSend.result.complete(rejected);
+                } else {
+                    assignedSend.result.completeExceptionally(failure);
+                }
+                release(assigned);
+            });
+        }
+    }
+
+    private AsyncSmtpSession pollUsableSession() {
+        long now = System.currentTimeMillis();
+        AsyncSmtpSession session;
+        while ((session = idleSessions.poll()) != null) {
+            if (session.isUsable() && now - session.getLastUsedAt() <= maxIdleMillis) {
+                return session;
+            }
+            session.close(); // 끊겼거나 오래 놀던 세션
+            openSessions--;
+        }
+        return null;
+    }
+
+    private void openSession() {
+        AsyncSmtpSession session = new AsyncSmtpSession(host, port, startTlsContext, username, password, replyTimeoutMillis);
+        session.open(bootstrap).whenComplete((opened, failure) -> {
+            if (failure == null) {
+                connectionsOpened.increment();
+                release(opened);
+                return;
+            }
+
+            System.err.println("[AsyncSmtpDeliveryEngine] SMTP 세션 연결 실패: " + failure.getMessage());
+            session.close();
+            List<PendingSend> failed;
+            synchronized (this) {
+                openSessions--;
+                failed = new ArrayList<>(waitingSends); // 연결 실패를 기다리던 전송 모두에 알려 무한 대기를 막음
+                waitingSends.clear();
+            }
+            for (PendingSend pending : failed) {
+                pending.content.release();
+                pending.result.completeExceptionally(failure);
+            }
+        });
+    }
+
+    private void release(AsyncSmtpSession session) {
+        synchronized (this) {
+            if (session.isUsable() && session.getMessageCount() < maxMessagesPerSession) {
+                idleSessions.push(session); // 최근에 쓴 세션부터 재사용
+            } else {
+                session.close();
+                openSessions--;
+            }
+        }
+        dispatch();
+    }
+
+    private static List<String> recipientsOf(MimeMessage message) throws MessagingException {
+        List<String> recipients = new ArrayList<>();
+        for (Address address : message.getAllRecipients()) {
+            recipients.add(((InternetAddress) address).getAddress());
+        }
+        return recipients;
+    }
+
+    /**
+     * 헤더 + 본문을 dot-stuffing 하여 DATA 로 보낼 버퍼로 만든다
+     */
+    private static ByteBuf encode(MimeMessage message) throws Exception {
+        message.saveChanges();
+        ByteBuf content = PooledByteBufAllocator.DEFAULT.buffer();
+        try (DotStuffingOutputStream out = new DotStuffingOutputStream(new ByteBufOutputStream(content))) {
+            message.writeTo(out);
+            out.finishLine();
+        } catch (Exception e) {
+            content.release();
+            throw e;
+        }
+        return content;
+    }
+
+    private static class PendingSend {
+        private final List<String> recipients;
+        private final ByteBuf content;
+        private final CompletableFuture<Map<String, AsyncSmtpSession.SmtpReplyException>> result = new CompletableFuture<>();
+
+        PendingSend(List<String> recipients, ByteBuf content) {
+            this.recipients = recipients;
+            this.content = content;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.example.batchservice.writer;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.smtp.DefaultLastSmtpContent;
+import io.netty.handler.codec.smtp.DefaultSmtpRequest;
+import io.netty.handler.codec.smtp.SmtpCommand;
+import io.netty.handler.codec.smtp.SmtpRequestEncoder;
+import io.netty.handler.codec.smtp.SmtpRequests;
+import io.netty.handler.codec.smtp.SmtpResponse;
+import io.netty.handler.codec.smtp.SmtpResponseDecoder;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import javax.mail.MessagingException;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Netty 채널 하나 위의 SMTP 세션 - 명령을 보내고 응답을 future 로 받아 단계별로 이어 붙인다.
+ * 한 번에 하나의 트랜잭션만 진행하며, 같은 세션으로 여러 메시지를 차례로 보낸다.
+ * 서버가 PIPELINING 을 알리면 트랜잭션 안의 MAIL FROM / RCPT TO 는 한 번에 보낸다.
+ * 응답마다 reply-timeout-ms 제한을 두어, 서버가 응답 없이 멈추면 기다리던 응답을 모두 실패시키고 연결을 닫는다.
+ */
+class AsyncSmtpSession extends SimpleChannelInboundHandler<SmtpResponse> {
+
+    private static final int MAX_LINE_LENGTH = 1000;
+
+    private final String host;
+    private final int port;
+    private final SslContext startTlsContext; // null 이면 STARTTLS 생략
+    private final String username;
+    private final String password;
+    private final long replyTimeoutMillis;
+
+    private final Deque<CompletableFuture<SmtpResponse>> pendingReplies = new ArrayDeque<>(); // 자신으로 동기화
+    private volatile Channel channel;
+    private volatile boolean broken;
+    private volatile boolean pipelining; // 서버가 EHLO 에 PIPELINING 을 알렸는지
+    private int messageCount;
+    private long lastUsedAt;
+
+    AsyncSmtpSession(String host, int port, SslContext startTlsContext, String username, String password,
+                     long replyTimeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.startTlsContext = startTlsContext;
+        this.username = username;
+        this.password = password;
+        this.replyTimeoutMillis = replyTimeoutMillis;
+    }
+
+    /**
+     * 연결 → 인사 응답 → EHLO → (STARTTLS → EHLO) → AUTH 까지 마친 세션을 돌려준다
+     */
+    CompletableFuture<AsyncSmtpSession> open(Bootstrap bootstrap) {
+        CompletableFuture<SmtpResponse> greeting = expectReply();
+        ChannelFuture connectFuture = bootstrap.clone()
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        channel = ch;
+                        ch.pipeline().addLast(new SmtpResponseDecoder(MAX_LINE_LENGTH), new SmtpRequestEncoder(), AsyncSmtpSession.this);
+                    }
+                })
+                .connect(host, port);
+        connectFuture.addListener(f -> {
+            if (!f.isSuccess()) {
+                failAll(f.cause());
+            }
+        });
+
+        return greeting
+                .thenCompose(reply -> check(reply, 220))
+                .thenCompose(reply -> ehlo())
+                .thenCompose(reply -> startTlsContext != null ? startTls() : CompletableFuture.completedFuture(reply))
+                .thenCompose(reply -> authenticate())
+                .thenApply(reply -> {
+                    lastUsedAt = System.currentTimeMillis();
+                    return this;
+                });
+    }
+
+    /**
+     * 여러 수신자에게 같은 본문을 한 트랜잭션으로 전송하고, RCPT TO 단계에서 거부된 수신자와 응답을 돌려준다.
+     * 서버가 PIPELINING 을 지원하면 MAIL FROM 과 RCPT TO 를 한 번에 보내고 응답을 순서대로 받는다 (RFC 2920).
+     * 모두 거부되면 본문을 보내지 않고 실패한다.
+     * 서버가 거부 응답을 주면 RSET 으로 세션을 되살리고, 그 밖의 오류면 세션을 폐기 대상으로 표시한다.
+     */
+    CompletableFuture<Map<String, SmtpReplyException>> deliverToAll(String from, List<String> recipients, ByteBuf content) {
+        CompletableFuture<Map<String, SmtpReplyException>> envelope = pipelining
+                ? pipelinedEnvelope(from, recipients)
+                : sequentialEnvelope(from, recipients);
+
+        CompletableFuture<Map<String, SmtpReplyException>> transaction = envelope.thenCompose(rejected -> {
+            if (rejected.size() == recipients.size()) {
+                return CompletableFuture.<Map<String, SmtpReplyException>>failedFuture(rejected.values().iterator().next());
+            }
+            return request(SmtpRequests.data())
+                    .thenCompose(reply -> check(reply, 354))
+                    .thenCompose(reply -> request(new DefaultLastSmtpContent(content)))
+                    .thenCompose(reply -> check(reply, 250))
+                    .thenApply(reply -> rejected);
+        });
+
+        return transaction.handle((rejected, failure) -> {
+            lastUsedAt = System.currentTimeMillis();
+            return failure;
+        }).thenCompose(failure -> {
+            if (failure == null) {
+                messageCount++;
+                return transaction;
+            }
+            if (content.refCnt() > 0) {
+                ReferenceCountUtil.safeRelease(content); // DATA 전에 실패해 본문을 보내지 못함
+            }
+
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (cause instanceof SmtpReplyException && isUsable()) {
+                return request(SmtpRequests.rset()).<Map<String, SmtpReplyException>>handle((reply, rsetFailure) -> {
+                    if (rsetFailure != null || reply.code() != 250) {
+                        broken = true;
+                    }
+                    throw new CompletionException(cause);
+                });
+            }
+            broken = true;
+            return CompletableFuture.<Map<String, SmtpReplyException>>failedFuture(cause);
+        });
+    }
+
+    /**
+     * MAIL FROM 과 모든 RCPT TO 를 한 번의 flush 로 보낸다 - 응답 future 는 보낸 순서대로 등록되므로 응답과 짝이 맞는다
+     */
+    private CompletableFuture<Map<String, SmtpReplyException>> pipelinedEnvelope(String from, List<String> recipients) {
+        CompletableFuture<SmtpResponse> mailReply = request(SmtpRequests.mail(from), false);
+        Map<String, CompletableFuture<SmtpResponse>> rcptReplies = new LinkedHashMap<>();
+        for (int i = 0; i < recipients.size(); i++) {
+            rcptReplies.put(recipients.get(i), request(SmtpRequests.rcpt(recipients.get(i)), i == recipients.size() - 1));
+        }
+
+        // MAIL FROM 이 거부되어도 RCPT 응답까지 모두 받은 뒤에 실패시켜야 다음 명령의 응답과 섞이지 않는다
+        return CompletableFuture.allOf(rcptReplies.values().toArray(new CompletableFuture[0]))
+                .handle((ignored, failure) -> null)
+                .thenCompose(ignored -> mailReply)
+                .thenCompose(reply -> check(reply, 250))
+                .thenApply(reply -> {
+                    Map<String, SmtpReplyException> rejected = new LinkedHashMap<>();
+                    rcptReplies.forEach((recipient, rcptReply) -> {
+                        SmtpResponse response = rcptReply.join(); // 연결 오류면 CompletionException 으로 트랜잭션 실패
+                        if (!isRecipientAccepted(response)) {
+                            rejected.put(recipient, new SmtpReplyException(response));
+                        }
+                    });
+                    return rejected;
+                });
+    }
+
+    /**
+     * PIPELINING 을 지원하지 않는 서버 - 명령마다 응답을 기다린다
+     */
+    private CompletableFuture<Map<String, SmtpReplyException>> sequentialEnvelope(String from, List<String> recipients) {
+        CompletableFuture<Map<String, SmtpReplyException>> envelope = request(SmtpRequests.mail(from))
+                .thenCompose(reply -> check(reply, 250))
+                .<Map<String, SmtpReplyException>>thenApply(reply -> new LinkedHashMap<>());
+        for (String recipient : recipients) {
+            envelope = envelope.thenCompose(rejected -> request(SmtpRequests.rcpt(recipient)).thenApply(reply -> {
+                if (!isRecipientAccepted(reply)) {
+                    rejected.put(recipient, new SmtpReplyException(reply));
+                }
+                return rejected;
+            }));
+        }
+        return envelope;
+    }
+
+    private static boolean isRecipientAccepted(SmtpResponse reply) {
+        return reply.code() == 250 || reply.code() == 251;
+    }
+
+    boolean isUsable() {
+        Channel current = channel;
+        return !broken && current != null && current.isActive();
+    }
+
+    int getMessageCount() {
+        return messageCount;
+    }
+
+    long getLastUsedAt() {
+        return lastUsedAt;
+    }
+
+    void close() {
+        Channel current = channel;
+        if (current == null) {
+            return;
+        }
+        if (current.isActive() && !broken) {
+            request(SmtpRequests.quit()).whenComplete((reply, failure) -> current.close());
+        } else {
+            current.close();
+        }
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, SmtpResponse reply) {
+        CompletableFuture<SmtpResponse> pending;
+        synchronized (pendingReplies) {
+            pending = pendingReplies.poll();
+        }
+        if (pending != null) {
+            pending.complete(reply);
+        }
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        // 인사 응답은 채널이 생기기 전에 등록되므로 연결된 뒤에 시간 제한을 건다
+        CompletableFuture<SmtpResponse> greeting;
+        synchronized (pendingReplies) {
+            greeting = pendingReplies.peek();
+        }
+        if (greeting != null) {
+            scheduleReplyTimeout(ctx.channel(), greeting);
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        broken = true;
+        failAll(new IOException("SMTP 연결이 끊어졌습니다: " + host + ":" + port));
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        broken = true;
+        failAll(cause);
+        ctx.close();
+    }
+
+    private CompletableFuture<SmtpResponse> ehlo() {
+        return request(SmtpRequests.ehlo("localhost"))
+                .thenCompose(reply -> check(reply, 250))
+                .thenApply(reply -> {
+                    // 첫 줄은 서버 이름, 이후 줄이 확장 목록 (STARTTLS 후 다시 받은 목록으로 갱신)
+                    pipelining = reply.details().stream()
+                            .anyMatch(line -> line.toString().trim().equalsIgnoreCase("PIPELINING"));
+                    return reply;
+                });
+    }
+
+    private CompletableFuture<SmtpResponse> startTls() {
+        return request(new DefaultSmtpRequest(SmtpCommand.valueOf("STARTTLS")))
+                .thenCompose(reply -> check(reply, 220))
+                .thenCompose(reply -> {
+                    SslHandler sslHandler = startTlsContext.newHandler(channel.alloc(), host, port);
+                    // 인증서가 릴레이 호스트의 것인지 확인 - 없으면 신뢰하는 CA 가 발급한 아무 인증서나 통과해 AUTH 가 새어 나감
+                    SSLEngine engine = sslHandler.engine();
+                    SSLParameters parameters = engine.getSSLParameters();
+                    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    engine.setSSLParameters(parameters);
+                    channel.pipeline().addFirst(sslHandler);
+                    return toCompletable(sslHandler.handshakeFuture());
+                })
+                .thenCompose(ignored -> ehlo()); // TLS 이후 다시 EHLO
+    }
+
+    private CompletableFuture<SmtpResponse> authenticate() {
+        if (username == null || username.isEmpty()) {
+            return CompletableFuture.completedFuture(null); // 인증 없는 로컬 서버
+        }
+        String token = Base64.getEncoder()
+                .encodeToString(("\0" + username + "\0" + password).getBytes(StandardCharsets.UTF_8));
+        return request(new DefaultSmtpRequest(SmtpCommand.valueOf("AUTH"), "PLAIN", token))
+                .thenCompose(reply -> check(reply, 235));
+    }
+
+    /**
+     * 응답 future 를 먼저 등록하고 명령을 보낸다 (응답은 보낸 순서대로 도착)
+     */
+    private CompletableFuture<SmtpResponse> request(Object smtpMessage) {
+        return request(smtpMessage, true);
+    }
+
+    /**
+     * @param flush false 면 버퍼에만 쓰고 다음 flush 때 함께 전송 (파이프라이닝)
+     */
+    private CompletableFuture<SmtpResponse> request(Object smtpMessage, boolean flush) {
+        Channel current = channel;
+        if (current == null || !current.isActive()) {
+            ReferenceCountUtil.safeRelease(smtpMessage);
+            return CompletableFuture.failedFuture(new IOException("SMTP 연결이 없습니다: " + host + ":" + port));
+        }
+        CompletableFuture<SmtpResponse> reply = expectReply();
+        ChannelFuture written = flush ? current.writeAndFlush(smtpMessage) : current.write(smtpMessage);
+        written.addListener(f -> {
+            if (!f.isSuccess()) {
+                broken = true;
+                failAll(f.cause());
+            }
+        });
+        return reply;
+    }
+
+    private CompletableFuture<SmtpResponse> expectReply() {
+        CompletableFuture<SmtpResponse> reply = new CompletableFuture<>();
+        synchronized (pendingReplies) {
+            pendingReplies.add(reply);
+        }
+        Channel current = channel;
+        if (current != null) {
+            scheduleReplyTimeout(current, reply);
+        }
+        return reply;
+    }
+
+    /**
+     * 응답이 제한 시간 안에 오지 않으면 세션을 버린다 - 응답 순서로 짝을 맞추므로 하나만 실패시킬 수 없다
+     */
+    private void scheduleReplyTimeout(Channel current, CompletableFuture<SmtpResponse> reply) {
+        ScheduledFuture<?> timeout = current.eventLoop().schedule(() -> {
+            if (!reply.isDone()) {
+                broken = true;
+                failAll(new SocketTimeoutException("SMTP 응답 시간 초과 (" + replyTimeoutMillis + "ms): " + host + ":" + port));
+                current.close();
+            }
+        }, replyTimeoutMillis, TimeUnit.MILLISECONDS);
+        reply.whenComplete((response, failure) -> timeout.cancel(false));
+    }
+
+    private void failAll(Throwable cause) {
+        synchronized (pendingReplies) {
+            CompletableFuture<SmtpResponse> pending;
+            while ((pending = pendingReplies.poll()) != null) {
+                pending.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private static CompletableFuture<SmtpResponse> check(SmtpResponse reply, int expectedCode) {
+        if (reply.code() == expectedCode) {
+            return CompletableFuture.completedFuture(reply);
+        }
+        return CompletableFuture.failedFuture(new SmtpReplyException(reply));
+    }
+
+    private static CompletableFuture<Void> toCompletable(Future<?> nettyFuture) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        nettyFuture.addListener(f -> {
+            if (f.isSuccess()) {
+                result.complete(null);
+            } else {
+                result.completeExceptionally(f.cause());
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 서버의 거부 응답 - 메시지가 응답 코드로 시작하므로 SmtpFailureClassifier 가 그대로 분류한다
+     */
+    static class SmtpReplyException extends MessagingException {
+
+        SmtpReplyException(SmtpResponse reply) {
+            super(reply.code() + " " + String.join(" ", reply.details()));
+        }
+    }
+}
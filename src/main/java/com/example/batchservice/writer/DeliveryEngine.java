@@ -0,0 +1,27 @@
+package com.example.batchservice.writer;
+
+import javax.mail.internet.MimeMessage;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 메시지를 실제로 SMTP 서버에 전달하는 엔진
+ * - javamail (기본): JavaMailSender / SmtpTransportPool 을 블로킹 스레드 풀에서 호출
+ * - async-smtp: 적은 수의 이벤트 루프 스레드에서 여러 SMTP 세션을 비동기로 처리
+ */
+public interface DeliveryEngine {
+
+    /**
+     * 전송 결과는 future 로 돌려준다 - 실패 시 원인은 MessagingException / MailException
+     */
+    CompletableFuture<Void> send(MimeMessage message);
+
+    /**
+     * 같은 본문을 여러 수신자에게 한 트랜잭션(MAIL 1 / RCPT n / DATA 1)으로 전송 - 봉투 수신자는 헤더와 별개
+     * 일부 수신자만 거부되면 나머지에게 보내고 결과에 거부된 수신자를 담는다.
+     * 모두 거부되었거나 트랜잭션 자체가 실패하면 future 가 실패한다.
+     */
+    CompletableFuture<RecipientDeliveryResult> sendToAll(MimeMessage message, List<String> recipients);
+
+    void close();
+}
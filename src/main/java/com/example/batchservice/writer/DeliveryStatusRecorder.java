@@ -0,0 +1,231 @@
+package com.example.batchservice.writer;
+
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.ledger.DeliveryLedger;
+import com.example.batchservice.ledger.DeliveryRetryQueue;
+import com.example.batchservice.metrics.BatchMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 발송 성공한 구독자 id 를 모아두었다가 발송 기록(delivery_ledger)에 JDBC batch insert 로 한 번에 반영
+ * - 버퍼가 flush-size 만큼 차거나 flush-interval-ms 가 지나면 flush
+ * - 발송 후 flush 전에 실패하면 해당 구독자는 재발송될 수 있으므로,
+ *   미반영 건수는 max-pending 으로 상한을 두고 넘치면 오류로 보고한다.
+ * - 전송 실패는 같은 방식으로 모아서 재시도 대기열(delivery_retry)에 반영한다.
+ */
+@Component
+public class DeliveryStatusRecorder {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeliveryLedger deliveryLedger;
+    private final BatchMetrics batchMetrics;
+    private final DeliveryRetryQueue deliveryRetryQueue;
+    private final List<Object[]> pendingRows = new ArrayList<>(); // this 로 동기화, 발송 시점의 발송일로 기록
+    private final List<DeliveryRetryQueue.Failure> pendingFailures = new ArrayList<>(); // this 로 동기화
+    private final List<Object[]> pendingRecovered = new ArrayList<>(); // 재시도 끝에 발송된 구독자 - 대기열에서 삭제
+    private final Counter flushFailures;
+
+    @Value("${batch.email.status.flush-size:200}")
+    private int flushSize;
+
+    @Value("${batch.email.status.max-pending:2000}")
+    private int maxPending;
+
+    public DeliveryStatusRecorder(JdbcTemplate jdbcTemplate, DeliveryLedger deliveryLedger, DeliveryRetryQueue deliveryRetryQueue,
+                                  BatchMetrics batchMetrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryLedger = deliveryLedger;
+        this.deliveryRetryQueue = deliveryRetryQueue;
+        this.batchMetrics = batchMetrics;
+        MeterRegistry meterRegistry = batchMetrics.getMeterRegistry();
+        this.flushFailures = Counter.builder("email.delivery.status.flush.failures")
+                .description("발송 기록 batch insert 실패 횟수")
+                .register(meterRegistry);
+        Gauge.builder("email.delivery.status.pending", this, DeliveryStatusRecorder::pendingCount)
+                .description("발송했지만 아직 DB 에 반영되지 않은 구독자 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 발송 성공 기록 - 버퍼가 가득 차면 호출한 스레드에서 바로 flush
+     */
+    public void markSent(Subscriber subscriber) {
+        boolean full;
+        LocalDate deliveryDate = deliveryLedger.currentDeliveryDate();
+        synchronized (this) {
+            pendingRows.add(DeliveryLedger.insertParams(deliveryDate, subscriber.getId(), LocalDateTime.now()));
+            if (subscriber.getAttempts() > 0) {
+                pendingRecovered.add(DeliveryRetryQueue.recoveredParams(deliveryDate, subscriber.getId()));
+            }
+            full = pendingRows.size() >= flushSize;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * 전송 실패 기록 - 다음 시도 시각(또는 dead-letter)을 정해 돌려주고, DB 반영은 발송 기록과 함께 flush 에서
+     */
+    public DeliveryRetryQueue.Failure markFailed(Subscriber subscriber, Throwable cause) {
+        DeliveryRetryQueue.Failure failure = deliveryRetryQueue.failure(subscriber, cause);
+        boolean full;
+        synchronized (this) {
+            pendingFailures.add(failure);
+            full = pendingFailures.size() >= flushSize;
+        }
+        if (full) {
+            flush();
+        }
+        return failure;
+    }
+
+    /**
+     * 주기적으로 남은 버퍼를 반영
+     */
+    @Scheduled(fixedDelayString = "${batch.email.status.flush-interval-ms:1000}")
+    public void flushPeriodically() {
+        flush();
+    }
+
+    /**
+     * 버퍼를 반영하고 실패분은 다음 flush 로 넘긴다 (주기 flush, 버퍼가 찼을 때)
+     */
+    public void flush() {
+        flushPending();
+    }
+
+    /**
+     * 청크 커밋 전 반영 - 발송 기록이나 재시도 기록을 남기지 못했으면 예외로 청크를 실패시켜 체크포인트가
+     * 기록되지 않은 구독자를 넘어가지 않게 한다 (실패분은 버퍼에 남아 다음 flush 에서 다시 시도)
+     */
+    public void flushBeforeCommit() {
+        Exception failure = flushPending();
+        if (failure != null) {
+            throw new IllegalStateException("[DeliveryStatusRecorder] 발송 기록 반영 실패 - 청크를 커밋하지 않음", failure);
+        }
+    }
+
+    /**
+     * @return 발송 기록(없으면 재시도 기록) 반영 실패 원인 (성공하면 null)
+     */
+    private Exception flushPending() {
+        List<Object[]> batch;
+        List<DeliveryRetryQueue.Failure> failures;
+        List<Object[]> recovered;
+        synchronized (this) {
+            batch = new ArrayList<>(pendingRows);
+            pendingRows.clear();
+            failures = new ArrayList<>(pendingFailures);
+            pendingFailures.clear();
+            recovered = new ArrayList<>(pendingRecovered);
+            pendingRecovered.clear();
+        }
+
+        Exception ledgerFailure = null;
+        if (!batch.isEmpty()) {
+            Timer.Sample sample = batchMetrics.start();
+            try {
+                jdbcTemplate.batchUpdate(DeliveryLedger.INSERT_SQL, batch);
+                sample.stop(batchMetrics.timer("email.delivery.status.flush", "outcome", "ok"));
+            } catch (Exception e) {
+                sample.stop(batchMetrics.timer("email.delivery.status.flush", "outcome", "error"));
+                flushFailures.increment();
+                requeue(batch, e);
+                ledgerFailure = e;
+            }
+        }
+
+        Exception retryFailure = null;
+        if (!failures.isEmpty() || !recovered.isEmpty()) {
+            try {
+                deliveryRetryQueue.write(failures, recovered);
+            } catch (Exception e) {
+                // 재시도 기록이 없으면 실패한 주소가 바로 다시 읽히므로 발송 기록처럼 되돌려 다음 flush 에 다시 시도
+                flushFailures.increment();
+                requeueRetries(failures, recovered, e);
+                retryFailure = e;
+            }
+        }
+        return ledgerFailure != null ? ledgerFailure : retryFailure;
+    }
+
+    public synchronized int pendingCount() {
+        return pendingRows.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+        synchronized (this) {
+            if (!pendingRows.isEmpty()) {
+                System.err.println("[DeliveryStatusRecorder] ❌ 종료 시 반영하지 못한 발송 기록 " + pendingRows.size()
+                        + "건 (재발송 대상): " + subscriberIds(pendingRows));
+            }
+        }
+    }
+
+    /**
+     * flush 실패분을 버퍼에 되돌리되, max-pending 을 넘는 분량은 버리고 id 를 보고한다.
+     */
+    private void requeue(List<Object[]> batch, Exception cause) {
+        synchronized (this) {
+            pendingRows.addAll(0, batch);
+            System.err.println("[DeliveryStatusRecorder] 발송 상태 반영 실패 (" + batch.size() + "건, 다음 flush 에 재시도): "
+                    + cause.getMessage());
+
+            if (pendingRows.size() > maxPending) {
+                List<Object[]> dropped = new ArrayList<>(pendingRows.subList(maxPending, pendingRows.size()));
+                pendingRows.subList(maxPending, pendingRows.size()).clear();
+                System.err.println("[DeliveryStatusRecorder] ❌ 미반영 발송 기록이 상한(" + maxPending + ")을 넘어 "
+                        + dropped.size() + "건 폐기 (재발송 대상): " + subscriberIds(dropped));
+            }
+        }
+    }
+
+    /**
+     * 재시도 기록 반영 실패분을 버퍼에 되돌리되, max-pending 을 넘는 분량은 버리고 id 를 보고한다.
+     */
+    private void requeueRetries(List<DeliveryRetryQueue.Failure> failures, List<Object[]> recovered, Exception cause) {
+        synchronized (this) {
+            pendingFailures.addAll(0, failures);
+            pendingRecovered.addAll(0, recovered);
+            System.err.println("[DeliveryStatusRecorder] 재시도 대기열 반영 실패 (" + failures.size() + "건, 다음 flush 에 재시도): "
+                    + cause.getMessage());
+
+            if (pendingFailures.size() > maxPending) {
+                List<Object> dropped = new ArrayList<>();
+                for (DeliveryRetryQueue.Failure failure : pendingFailures.subList(maxPending, pendingFailures.size())) {
+                    dropped.add(failure.getSubscriberId());
+                }
+                pendingFailures.subList(maxPending, pendingFailures.size()).clear();
+                System.err.println("[DeliveryStatusRecorder] ❌ 미반영 재시도 기록이 상한(" + maxPending + ")을 넘어 "
+                        + dropped.size() + "건 폐기 (다음 실행에서 바로 다시 읽힘): " + dropped);
+            }
+            if (pendingRecovered.size() > maxPending) {
+                pendingRecovered.subList(maxPending, pendingRecovered.size()).clear(); // 발송 기록이 있어 다시 읽히지 않음
+            }
+        }
+    }
+
+    private static List<Object> subscriberIds(List<Object[]> rows) {
+        List<Object> ids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            ids.add(row[1]);
+        }
+        return ids;
+    }
+}
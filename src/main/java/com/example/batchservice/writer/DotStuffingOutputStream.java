@@ -0,0 +1,47 @@
+package com.example.batchservice.writer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * SMTP DATA 본문용 dot-stuffing - 줄 맨 앞의 '.' 를 '..' 로 바꿔 본문이 종료 표시로 해석되지 않게 한다
+ */
+class DotStuffingOutputStream extends FilterOutputStream {
+
+    private boolean lineStart = true;
+    private int lastByte = -1;
+
+    DotStuffingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (lineStart && b == '.') {
+            out.write('.');
+        }
+        out.write(b);
+        lineStart = b == '\n';
+        lastByte = b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(b[i]);
+        }
+    }
+
+    /**
+     * 본문이 CRLF 로 끝나지 않으면 붙여서 종료 표시(.CRLF)가 새 줄에서 시작하도록 한다
+     */
+    void finishLine() throws IOException {
+        if (lastByte != '\n') {
+            out.write('\r');
+            out.write('\n');
+            lineStart = true;
+            lastByte = '\n';
+        }
+    }
+}
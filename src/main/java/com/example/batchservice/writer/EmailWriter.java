@@ -1,69 +1,247 @@
 package com.example.batchservice.writer;
 
+import com.example.batchservice.dto.DigestSegment;
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.example.batchservice.processor.EmailProcessor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.batch.item.ItemWriter;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Component;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 @Component
-public class EmailWriter implements ItemWriter<String> {
+public class EmailWriter implements ItemWriter<Subscriber> {
 
     private final JavaMailSender mailSender;
-    private final JdbcTemplate jdbcTemplate;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(5); // ✅ 최대 5개의 병렬 실행 제한
+    private final DeliveryEngine deliveryEngine;
+    private final DeliveryStatusRecorder deliveryStatusRecorder;
+    private final SendRateLimiter sendRateLimiter;
+    private final EmailProcessor emailProcessor;
+    private final BatchMetrics batchMetrics;
+    private final AtomicInteger inFlightSends = new AtomicInteger(); // 엔진에 넘긴 뒤 아직 끝나지 않은 전송 수
 
-    public EmailWriter(JavaMailSender mailSender, JdbcTemplate jdbcTemplate) {
+    @Value("${batch.email.recipients-per-transaction:1}") // 2 이상이면 같은 본문을 받는 수신자를 한 SMTP 트랜잭션으로 묶음
+    private int recipientsPerTransaction;
+
+    private final Map<String, PreparedEmail> preparedBySegment = new ConcurrentHashMap<>(); // 세그먼트별로 공유하는 인코딩된 본문
+
+    public EmailWriter(JavaMailSender mailSender, DeliveryEngine deliveryEngine,
+                       DeliveryStatusRecorder deliveryStatusRecorder, SendRateLimiter sendRateLimiter,
+                       EmailProcessor emailProcessor, BatchMetrics batchMetrics) {
         this.mailSender = mailSender;
-        this.jdbcTemplate = jdbcTemplate;
+        this.deliveryEngine = deliveryEngine;
+        this.deliveryStatusRecorder = deliveryStatusRecorder;
+        this.sendRateLimiter = sendRateLimiter;
+        this.emailProcessor = emailProcessor;
+        this.batchMetrics = batchMetrics;
+        Gauge.builder("email.smtp.inflight", inFlightSends, AtomicInteger::get)
+                .description("진행 중인 SMTP 전송 수")
+                .register(batchMetrics.getMeterRegistry());
     }
 
+    /**
+     * 구독자에게 순서대로 동기 전송하고 성공한 구독자는 발송 기록에 남긴다 - 동시성은 호출하는 쪽에서 제어
+     */
     @Override
-    public void write(List<? extends String> messages) {
-        for (String message : messages) {
-            try {
-                // 이메일 주소와 템플릿을 분리
-                String[] parts = message.split("::", 2);
-                String email = parts[0];
-                String emailContent = parts[1];
-
-                // 이메일 전송을 비동기로 실행 (예외 감지 가능)
-                CompletableFuture.supplyAsync(() -> {
-                    try {
-                        sendEmail(email, emailContent);
-                        return email; //
-                    } catch (MessagingException e) {
-                        throw new RuntimeException("[EmailWriter] 이메일 전송 실패: " + email, e);
-                    }
-                }, executorService).thenAccept(successEmail -> {
-                    jdbcTemplate.update("UPDATE subscriber SET sent = TRUE WHERE email = ?", successEmail);
-                    System.out.println("[EmailWriter] 이메일 발송 완료: " + successEmail);
-                }).exceptionally(ex -> {
-                    System.err.println("[EmailWriter] 이메일 전송 실패: " + ex.getMessage());
-                    return null;
-                });
-
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public void write(List<? extends Subscriber> subscribers) throws MessagingException {
+        for (Subscriber subscriber : subscribers) {
+            send(prepareFor(subscriber.getSegmentKey()), subscriber.getEmail()); // 캐시된 세그먼트 템플릿 재사용
+            deliveryStatusRecorder.markSent(subscriber); // DB 반영은 모아서 batch update
+            System.out.println("[EmailWriter] 이메일 발송 완료: " + subscriber.getEmail());
         }
     }
 
-    private void sendEmail(String email, String htmlContent) throws MessagingException {
-        MimeMessage mimeMessage = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+    /**
+     * 세그먼트의 템플릿으로 본문 준비 (템플릿과 인코딩 결과 모두 캐시됨)
+     */
+    public PreparedEmail prepareFor(String segmentKey) throws MessagingException {
+        return prepare(segmentKey, emailProcessor.generateEmailTemplate(DigestSegment.fromKey(segmentKey)));
+    }
+
+    /**
+     * 세그먼트별로 HTML 본문을 한 번만 인코딩 - 그 세그먼트의 템플릿이 바뀌었을 때만 다시 준비
+     */
+    public synchronized PreparedEmail prepare(String segmentKey, String htmlContent) throws MessagingException {
+        PreparedEmail current = preparedBySegment.get(segmentKey);
+        if (current != null && current.isPreparedFor(htmlContent)) {
+            return current;
+        }
 
-        helper.setTo(email);
+        Timer.Sample sample = batchMetrics.start();
+        MimeMessage base = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(base, true, "UTF-8");
         helper.setSubject("\uD83D\uDCF0 FLOWBIT 예측가격 뉴스 업데이트");
         helper.setText(htmlContent, true);
 
-        mailSender.send(mimeMessage);
+        PreparedEmail prepared = new PreparedEmail(base, htmlContent);
+        preparedBySegment.put(segmentKey, prepared);
+        sample.stop(batchMetrics.timer("email.mime.build", "phase", "prepare"));
+        System.out.println("[EmailWriter] 메일 본문 인코딩 완료 (세그먼트 " + segmentKey + ", " + prepared.getEncodedSize() + " bytes)");
+        return prepared;
+    }
+
+    /**
+     * 준비된 본문에 수신자(To)만 바꿔서 전송하고 끝날 때까지 대기
+     */
+    public void send(PreparedEmail prepared, String email) throws MessagingException {
+        try {
+            sendAsync(prepared, email).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MessagingException) {
+                throw (MessagingException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MessagingException("[EmailWriter] 이메일 전송 실패: " + email, (Exception) cause);
+        }
+    }
+
+    /**
+     * 준비된 본문에 수신자(To)만 바꿔서 전송 엔진에 넘긴다.
+     * 전송 속도는 SendRateLimiter 가 조절하며, 토큰을 받을 때까지 호출한 스레드가 대기한다.
+     */
+    public CompletableFuture<Void> sendAsync(PreparedEmail prepared, String email) {
+        MimeMessage mimeMessage;
+        try {
+            Timer.Sample buildSample = batchMetrics.start();
+            mimeMessage = prepared.newMessage(email);
+            buildSample.stop(batchMetrics.timer("email.mime.build", "phase", "recipient"));
+            sendRateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new MessagingException("[EmailWriter] 전송 대기 중 인터럽트: " + email, e));
+        } catch (MessagingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Timer.Sample sendSample = batchMetrics.start();
+        inFlightSends.incrementAndGet();
+        return deliveryEngine.send(mimeMessage).whenComplete((ignored, failure) -> {
+            inFlightSends.decrementAndGet();
+            if (failure == null) {
+                sendRateLimiter.onSuccess();
+                sendSample.stop(batchMetrics.histogramTimer("email.smtp.send", "outcome", "sent"));
+            } else {
+                SmtpFailureClassifier.Type type = SmtpFailureClassifier.classify(failure);
+                sendRateLimiter.onFailure(type);
+                sendSample.stop(batchMetrics.histogramTimer("email.smtp.send", "outcome", type.name().toLowerCase()));
+            }
+        });
+    }
+
+    /**
+     * 한 트랜잭션에 묶을 최대 수신자 수 (1 이면 수신자마다 트랜잭션)
+     */
+    public int getRecipientsPerTransaction() {
+        return Math.max(1, recipientsPerTransaction);
+    }
+
+    /**
+     * 연속된 같은 세그먼트 구독자를 최대 getRecipientsPerTransaction 명씩 묶는다 (묶음마다 본문이 같음)
+     */
+    public List<List<Subscriber>> transactionGroups(List<? extends Subscriber> subscribers) {
+        int maxRecipients = getRecipientsPerTransaction();
+        List<List<Subscriber>> groups = new ArrayList<>();
+        List<Subscriber> current = new ArrayList<>();
+        for (Subscriber subscriber : subscribers) {
+            boolean segmentChanged = !current.isEmpty()
+                    && !current.get(0).getSegmentKey().equals(subscriber.getSegmentKey());
+            if (current.size() == maxRecipients || segmentChanged) {
+                groups.add(current);
+                current = new ArrayList<>();
+            }
+            current.add(subscriber);
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+
+    /**
+     * 구독자 묶음을 전송하고 구독자마다 결과(성공이면 null, 실패면 원인)를 알린다
+     * 한 명이면 수신자별 트랜잭션, 여럿이면 한 트랜잭션으로 보내고 RCPT TO 에서 거부된 구독자만 실패로 알린다.
+     */
+    public CompletableFuture<Void> sendGroupAsync(PreparedEmail prepared, List<? extends Subscriber> group,
+                                                  BiConsumer<Subscriber, Throwable> onResult) {
+        if (group.size() == 1) {
+            Subscriber subscriber = group.get(0);
+            return sendAsync(prepared, subscriber.getEmail()).handle((ignored, failure) -> {
+                onResult.accept(subscriber, failure);
+                return null;
+            });
+        }
+
+        List<String> emails = group.stream().map(Subscriber::getEmail).collect(Collectors.toList());
+        return sendBatchAsync(prepared, emails).handle((result, failure) -> {
+            for (Subscriber subscriber : group) {
+                onResult.accept(subscriber, failure != null ? failure : result.failureOf(subscriber.getEmail()));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 같은 본문을 여러 수신자에게 한 트랜잭션으로 전송 - 본문은 한 번만 전송되고 To 헤더에는 수신자가 드러나지 않는다.
+     * 속도 제한은 수신자 수만큼 토큰을 받는다.
+     */
+    public CompletableFuture<RecipientDeliveryResult> sendBatchAsync(PreparedEmail prepared, List<String> emails) {
+        MimeMessage mimeMessage;
+        try {
+            Timer.Sample buildSample = batchMetrics.start();
+            mimeMessage = prepared.newUndisclosedMessage();
+            buildSample.stop(batchMetrics.timer("email.mime.build", "phase", "recipient"));
+            for (int i = 0; i < emails.size(); i++) {
+                sendRateLimiter.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new MessagingException("[EmailWriter] 전송 대기 중 인터럽트: " + emails.size() + "명", e));
+        } catch (MessagingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Timer.Sample sendSample = batchMetrics.start();
+        inFlightSends.incrementAndGet();
+        return deliveryEngine.sendToAll(mimeMessage, emails).whenComplete((result, failure) -> {
+            inFlightSends.decrementAndGet();
+            if (failure == null) {
+                for (int i = 0; i < result.getAcceptedCount(); i++) {
+                    sendRateLimiter.onSuccess();
+                }
+                for (String email : emails) {
+                    Exception rejection = result.failureOf(email);
+                    if (rejection != null) {
+                        sendRateLimiter.onFailure(SmtpFailureClassifier.classify(rejection));
+                    }
+                }
+                sendSample.stop(batchMetrics.histogramTimer("email.smtp.send", "outcome",
+                        result.getRejectedCount() == 0 ? "sent" : "partial"));
+            } else {
+                SmtpFailureClassifier.Type type = SmtpFailureClassifier.classify(failure);
+                sendRateLimiter.onFailure(type);
+                sendSample.stop(batchMetrics.histogramTimer("email.smtp.send", "outcome", type.name().toLowerCase()));
+            }
+        });
     }
 }
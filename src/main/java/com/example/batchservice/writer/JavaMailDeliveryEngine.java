@@ -0,0 +1,151 @@
+package com.example.batchservice.writer;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 기존 방식의 전송 엔진 - 블로킹 JavaMail 호출을 고정 크기 스레드 풀에서 실행
+ * from 이 있으면 보내기 전에 From 헤더를 그 주소로 설정한다 (봉투 발신자는 Session 의 mail.smtp.from).
+ */
+public class JavaMailDeliveryEngine implements DeliveryEngine {
+
+    private final JavaMailSender mailSender;
+    private final SmtpTransportPool smtpTransportPool;
+    private final boolean smtpPoolEnabled;
+    private final InternetAddress from; // null 이면 메시지의 From 을 그대로 둠
+    private final ThreadPoolExecutor executorService;
+
+    /**
+     * @param relay 지표의 relay 태그 (릴레이 설정이 없으면 "default")
+     * @param from  From 헤더 주소 - 비우면 설정하지 않음
+     */
+    public JavaMailDeliveryEngine(String relay, JavaMailSender mailSender, SmtpTransportPool smtpTransportPool, String from,
+                                  boolean smtpPoolEnabled, int concurrency, MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        this.smtpTransportPool = smtpTransportPool;
+        this.smtpPoolEnabled = smtpPoolEnabled;
+        this.from = parseFrom(from);
+        // Executors.newFixedThreadPool 과 동일 - 큐 길이를 지표로 보기 위해 직접 생성
+        this.executorService = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        Gauge.builder("email.executor.queue.depth", executorService, executor -> executor.getQueue().size())
+                .description("전송 스레드를 기다리는 전송 수")
+                .tag("engine", "javamail")
+                .tag("relay", relay)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<Void> send(MimeMessage message) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                applyFrom(message);
+                if (smtpPoolEnabled) {
+                    smtpTransportPool.send(message); // 열려있는 세션 재사용
+                } else {
+                    mailSender.send(message);
+                    smtpTransportPool.recordUnpooledSend();
+                }
+            } catch (MessagingException e) {
+                throw new CompletionException(e);
+            }
+        }, executorService);
+    }
+
+    /**
+     * 풀의 세션으로 한 번에 전송 (smtp-pool.enabled=false 여도 이 경로는 풀을 사용)
+     * JavaMail 은 PIPELINING 을 쓰지 않으므로 RCPT TO 는 하나씩 주고받지만, 본문은 한 번만 전송된다.
+     */
+    @Override
+    public CompletableFuture<RecipientDeliveryResult> sendToAll(MimeMessage message, List<String> recipients) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                applyFrom(message);
+                Address[] addresses = new Address[recipients.size()];
+                for (int i = 0; i < addresses.length; i++) {
+                    addresses[i] = new InternetAddress(recipients.get(i));
+                }
+                smtpTransportPool.send(message, addresses);
+                return RecipientDeliveryResult.allAccepted(recipients);
+            } catch (SendFailedException e) {
+                Address[] sent = e.getValidSentAddresses();
+                if (sent == null || sent.length == 0) {
+                    throw new CompletionException(e); // 아무에게도 전송되지 않음
+                }
+                return new RecipientDeliveryResult(recipients, rejectedRecipients(e));
+            } catch (MessagingException e) {
+                throw new CompletionException(e);
+            }
+        }, executorService);
+    }
+
+    /**
+     * 릴레이를 바꿔 다시 보내는 경우에도 이번 릴레이의 주소가 되도록 매번 덮어쓴다
+     */
+    private void applyFrom(MimeMessage message) throws MessagingException {
+        if (from != null) {
+            message.setFrom(from);
+        }
+    }
+
+    /**
+     * 설정의 발신 주소("이름 <주소>" 도 가능)를 파싱 - 비었으면 null, 형식이 틀리면 기동 시 실패
+     */
+    public static InternetAddress parseFrom(String from) {
+        if (from == null || from.isBlank()) {
+            return null;
+        }
+        try {
+            return new InternetAddress(from, true);
+        } catch (AddressException e) {
+            throw new IllegalArgumentException("발신 주소 형식이 잘못되었습니다: " + from, e);
+        }
+    }
+
+    /**
+     * mail.smtp.sendpartial 로 일부만 전송된 경우 - 주소별 거부 응답(SMTPAddressFailedException)을 원인으로 기록
+     */
+    private static Map<String, Exception> rejectedRecipients(SendFailedException e) {
+        Map<String, Exception> rejected = new HashMap<>();
+        for (Exception next = e.getNextException(); next != null;
+             next = next instanceof MessagingException ? ((MessagingException) next).getNextException() : null) {
+            if (next instanceof SMTPAddressFailedException) {
+                rejected.put(((SMTPAddressFailedException) next).getAddress().getAddress(), next);
+            }
+        }
+        addUnlisted(rejected, e.getInvalidAddresses(), e);
+        addUnlisted(rejected, e.getValidUnsentAddresses(), e);
+        return rejected;
+    }
+
+    private static void addUnlisted(Map<String, Exception> rejected, Address[] addresses, SendFailedException cause) {
+        if (addresses == null) {
+            return;
+        }
+        for (Address address : addresses) {
+            rejected.putIfAbsent(((InternetAddress) address).getAddress(), cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+}
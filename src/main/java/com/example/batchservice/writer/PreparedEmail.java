@@ -0,0 +1,81 @@
+package com.example.batchservice.writer;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.mail.util.SharedByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 한 번 인코딩한 메일(제목 + multipart HTML 본문)을 모든 수신자가 공유
+ * - 본문은 prepare 시점에 한 번만 MIME 인코딩하여 바이트로 보관
+ * - 수신자별 메시지는 그 바이트를 복사 없이 공유하고 To / Message-ID 헤더만 다르게 설정
+ */
+public class PreparedEmail {
+
+    private final Session session;
+    private final String htmlContent;
+    private final byte[] encoded;
+
+    /**
+     * @param base 제목과 본문이 채워진 메시지 - 여기서 한 번 인코딩된다
+     */
+    public PreparedEmail(MimeMessage base, String htmlContent) throws MessagingException {
+        this.session = base.getSession();
+        this.htmlContent = htmlContent;
+
+        base.saveChanges();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            base.writeTo(out);
+        } catch (IOException e) {
+            throw new MessagingException("[PreparedEmail] 메일 본문 인코딩 실패", e);
+        }
+        this.encoded = out.toByteArray();
+    }
+
+    /**
+     * 같은 HTML 로 준비된 메일인지 확인 (캐시된 템플릿은 같은 인스턴스이므로 대부분 참조 비교로 끝남)
+     */
+    public boolean isPreparedFor(String html) {
+        return htmlContent.equals(html);
+    }
+
+    public MimeMessage newMessage(String email) throws MessagingException {
+        MimeMessage message = new RecipientMimeMessage(session, new SharedByteArrayInputStream(encoded));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(email));
+        return message;
+    }
+
+    /**
+     * 여러 수신자에게 한 트랜잭션으로 보낼 메시지 - 수신자는 봉투(RCPT TO)에만 두고 헤더에는 드러내지 않는다
+     */
+    public MimeMessage newUndisclosedMessage() throws MessagingException {
+        MimeMessage message = new RecipientMimeMessage(session, new SharedByteArrayInputStream(encoded));
+        message.setHeader("To", "undisclosed-recipients:;");
+        return message;
+    }
+
+    public int getEncodedSize() {
+        return encoded.length;
+    }
+
+    /**
+     * 본문을 수정하지 않는 메시지 - saveChanges 에서 본문을 다시 인코딩하지 않고 Message-ID 만 새로 발급
+     */
+    private static class RecipientMimeMessage extends MimeMessage {
+
+        RecipientMimeMessage(Session session, SharedByteArrayInputStream encoded) throws MessagingException {
+            super(session, encoded);
+        }
+
+        @Override
+        public void saveChanges() throws MessagingException {
+            updateMessageID();
+            saved = true; // modified 가 false 이므로 writeTo 는 공유 바이트를 그대로 내보냄
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.batchservice.writer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 여러 수신자를 한 트랜잭션으로 보낸 결과 - RCPT TO 단계에서 거부된 수신자와 원인
+ * 거부되지 않은 수신자는 DATA 까지 성공했으므로 전송 완료로 본다.
+ */
+public class RecipientDeliveryResult {
+
+    private final List<String> recipients;
+    private final Map<String, Exception> rejected;
+
+    public RecipientDeliveryResult(List<String> recipients, Map<String, Exception> rejected) {
+        this.recipients = recipients;
+        this.rejected = rejected;
+    }
+
+    public static RecipientDeliveryResult allAccepted(List<String> recipients) {
+        return new RecipientDeliveryResult(recipients, Collections.emptyMap());
+    }
+
+    /**
+     * @return 거부된 수신자면 원인, 전송되었으면 null
+     */
+    public Exception failureOf(String recipient) {
+        return rejected.get(recipient);
+    }
+
+    public int getAcceptedCount() {
+        return recipients.size() - rejected.size();
+    }
+
+    public int getRejectedCount() {
+        return rejected.size();
+    }
+}
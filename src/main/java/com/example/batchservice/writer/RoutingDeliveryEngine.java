@@ -0,0 +1,286 @@
+package com.example.batchservice.writer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 여러 SMTP 릴레이에 전송을 나누는 엔진 (batch.email.relays 가 있을 때 MailConfig 가 만든다)
+ * - 가중치(weight) 비율로 릴레이를 고르되, 릴레이마다 동시 전송은 max-concurrency 개까지만 - 모두 차 있으면 호출한 스레드가 대기
+ * - 연결 끊김/일시 오류/속도 제한이 eject-after-failures 번 연속되면 그 릴레이를 잠시 제외하고,
+ *   제외 시간(eject-base-ms × 2^(제외 횟수 - 1), 최대 eject-max-ms)이 지나면 한 건만 보내 보고 성공하면 다시 넣는다.
+ * - 릴레이 쪽 실패(5xx 제외)는 failover-attempts 번까지 다른 릴레이로 다시 보낸다.
+ * - 릴레이별 전송 수/실패 수/진행 중 전송 수/상태를 email.relay.* 지표로 남긴다.
+ */
+public class RoutingDeliveryEngine implements DeliveryEngine {
+
+    private final List<Relay> relays;
+    private final int ejectAfterFailures;
+    private final long ejectBaseNanos;
+    private final long ejectMaxNanos;
+    private final int failoverAttempts;
+
+    public RoutingDeliveryEngine(List<Relay> relays, int ejectAfterFailures, long ejectBaseMillis, long ejectMaxMillis,
+                                 int failoverAttempts, MeterRegistry meterRegistry) {
+        this.relays = List.copyOf(relays);
+        this.ejectAfterFailures = ejectAfterFailures;
+        this.ejectBaseNanos = TimeUnit.MILLISECONDS.toNanos(ejectBaseMillis);
+        this.ejectMaxNanos = TimeUnit.MILLISECONDS.toNanos(ejectMaxMillis);
+        this.failoverAttempts = failoverAttempts;
+        for (Relay relay : this.relays) {
+            relay.registerMetrics(meterRegistry);
+        }
+        System.out.println("[RoutingDeliveryEngine] 릴레이 " + this.relays.size() + "개: " + this.relays);
+    }
+
+    @Override
+    public CompletableFuture<Void> send(MimeMessage message) {
+        return route(engine -> engine.send(message));
+    }
+
+    @Override
+    public CompletableFuture<RecipientDeliveryResult> sendToAll(MimeMessage message, List<String> recipients) {
+        return route(engine -> engine.sendToAll(message, recipients));
+    }
+
+    private <T> CompletableFuture<T> route(Function<DeliveryEngine, CompletableFuture<T>> send) {
+        Relay relay;
+        try {
+            relay = acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new MessagingException("[RoutingDeliveryEngine] 릴레이 대기 중 인터럽트", e));
+        }
+        if (relay == null) {
+            return CompletableFuture.failedFuture(new MessagingException("[RoutingDeliveryEngine] 사용 가능한 릴레이 없음 (모두 제외됨)"));
+        }
+        return sendVia(relay, send, Set.of(), failoverAttempts);
+    }
+
+    /**
+     * relay 로 보내고, 릴레이 쪽 실패면 아직 안 써본 다른 릴레이로 다시 보낸다 (대기하지 않고 빈 자리가 있을 때만)
+     */
+    private <T> CompletableFuture<T> sendVia(Relay relay, Function<DeliveryEngine, CompletableFuture<T>> send,
+                                             Set<Relay> tried, int failoversLeft) {
+        CompletableFuture<T> attempt;
+        try {
+            attempt = send.apply(relay.engine);
+        } catch (RuntimeException e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+
+        return attempt.handle((result, failure) -> {
+            if (failure == null) {
+                onSuccess(relay);
+                return CompletableFuture.completedFuture(result);
+            }
+
+            SmtpFailureClassifier.Type type = SmtpFailureClassifier.classify(failure);
+            onFailure(relay, type);
+            if (type == SmtpFailureClassifier.Type.PERMANENT || failoversLeft <= 0) {
+                return CompletableFuture.<T>failedFuture(unwrap(failure));
+            }
+
+            Set<Relay> nextTried = new HashSet<>(tried);
+            nextTried.add(relay);
+            Relay next = tryAcquire(nextTried);
+            if (next == null) {
+                return CompletableFuture.<T>failedFuture(unwrap(failure));
+            }
+            relay.failovers.increment();
+            return sendVia(next, send, nextTried, failoversLeft - 1);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * 빈 자리가 있는 릴레이가 생길 때까지 대기 - 쓸 수 있는 릴레이가 하나도 없으면 null
+     */
+    private Relay acquire() throws InterruptedException {
+        synchronized (this) {
+            while (true) {
+                Relay relay = tryAcquire(Set.of());
+                if (relay != null) {
+                    return relay;
+                }
+                if (!anyAvailable()) {
+                    return null;
+                }
+                wait(100); // 전송이 끝나면 onSuccess/onFailure 에서 깨움 (놓쳐도 100ms 뒤 다시 확인)
+            }
+        }
+    }
+
+    /**
+     * 제외되지 않았고 자리가 남은 릴레이 중 가중치 비율로 하나를 골라 자리를 잡는다
+     */
+    private synchronized Relay tryAcquire(Set<Relay> excluded) {
+        long now = System.nanoTime();
+        List<Relay> candidates = new ArrayList<>();
+        int totalWeight = 0;
+        for (Relay relay : relays) {
+            if (!excluded.contains(relay) && relay.canAccept(now)) {
+                candidates.add(relay);
+                totalWeight += relay.weight;
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Relay relay : candidates) {
+            pick -= relay.weight;
+            if (pick < 0) {
+                relay.occupy();
+                return relay;
+            }
+        }
+        return null; // 도달하지 않음
+    }
+
+    private synchronized boolean anyAvailable() {
+        long now = System.nanoTime();
+        for (Relay relay : relays) {
+            if (!relay.isEjected(now)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void onSuccess(Relay relay) {
+        relay.inFlight--;
+        relay.sent.increment();
+        if (relay.ejections > 0 || relay.probing) {
+            System.out.println("[RoutingDeliveryEngine] 릴레이 " + relay.name + " 복귀");
+        }
+        relay.consecutiveFailures = 0;
+        relay.ejections = 0;
+        relay.probing = false;
+        notifyAll();
+    }
+
+    /**
+     * 릴레이 쪽 실패가 연속되면 제외 - 시험 전송(probing) 중 실패면 바로 더 길게 제외
+     */
+    private synchronized void onFailure(Relay relay, SmtpFailureClassifier.Type type) {
+        relay.inFlight--;
+        relay.failed.increment();
+        if (type == SmtpFailureClassifier.Type.PERMANENT) {
+            relay.probing = false; // 릴레이는 응답했으므로 시험 전송은 끝난 것으로 봄
+            notifyAll(); // 수신자 문제 - 릴레이 상태와 무관
+            return;
+        }
+        relay.consecutiveFailures++;
+        if (relay.probing || relay.consecutiveFailures >= ejectAfterFailures) {
+            relay.ejections++;
+            long cooldown = Math.min(ejectMaxNanos, ejectBaseNanos << Math.min(relay.ejections - 1, 20));
+            relay.ejectedUntilNanos = System.nanoTime() + cooldown;
+            relay.consecutiveFailures = 0;
+            relay.probing = false;
+            relay.ejectionCount.increment();
+            System.err.println("[RoutingDeliveryEngine] 릴레이 " + relay.name + " 제외 (" + type + ", "
+                    + TimeUnit.NANOSECONDS.toSeconds(cooldown) + "초 뒤 시험 전송)");
+        }
+        notifyAll();
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    @Override
+    public void close() {
+        for (Relay relay : relays) {
+            relay.engine.close();
+            relay.onClose.run();
+        }
+    }
+
+    /**
+     * 릴레이 하나 - 상태는 RoutingDeliveryEngine 으로 동기화
+     */
+    public static class Relay {
+
+        private final String name;
+        private final int weight;
+        private final int maxConcurrency;
+        private final DeliveryEngine engine;
+        private final Runnable onClose; // 엔진이 소유하지 않는 자원(SMTP 세션 풀 등) 정리
+
+        private int inFlight;
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntilNanos;
+        private boolean probing; // 제외 시간이 끝나고 시험 전송 중
+
+        private Counter sent;
+        private Counter failed;
+        private Counter failovers;
+        private Counter ejectionCount;
+
+        public Relay(String name, int weight, int maxConcurrency, DeliveryEngine engine, Runnable onClose) {
+            this.name = name;
+            this.weight = Math.max(1, weight);
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+            this.engine = engine;
+            this.onClose = onClose;
+        }
+
+        private void registerMetrics(MeterRegistry meterRegistry) {
+            sent = Counter.builder("email.relay.sends").tag("relay", name).tag("outcome", "sent")
+                    .description("릴레이별 전송 결과").register(meterRegistry);
+            failed = Counter.builder("email.relay.sends").tag("relay", name).tag("outcome", "failed")
+                    .description("릴레이별 전송 결과").register(meterRegistry);
+            failovers = Counter.builder("email.relay.failovers").tag("relay", name)
+                    .description("실패 후 다른 릴레이로 넘긴 전송 수").register(meterRegistry);
+            ejectionCount = Counter.builder("email.relay.ejections").tag("relay", name)
+                    .description("연속 실패로 제외된 횟수").register(meterRegistry);
+            Gauge.builder("email.relay.inflight", this, relay -> relay.inFlight).tag("relay", name)
+                    .description("릴레이별 진행 중 전송 수").register(meterRegistry);
+            Gauge.builder("email.relay.healthy", this, relay -> relay.isEjected(System.nanoTime()) ? 0 : 1).tag("relay", name)
+                    .description("1 이면 전송 대상, 0 이면 제외 중").register(meterRegistry);
+        }
+
+        private boolean isEjected(long now) {
+            return ejectedUntilNanos > now;
+        }
+
+        /**
+         * 제외 중이 아니고 자리가 남았는지 - 제외가 끝난 직후에는 시험 전송 한 건만 허용
+         */
+        private boolean canAccept(long now) {
+            if (isEjected(now)) {
+                return false;
+            }
+            if (ejections > 0) {
+                return !probing && inFlight == 0;
+            }
+            return inFlight < maxConcurrency;
+        }
+
+        private void occupy() {
+            inFlight++;
+            if (ejections > 0) {
+                probing = true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + "(weight " + weight + ", max " + maxConcurrency + ")";
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.batchservice.writer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SMTP 전송 속도 제어 - 토큰 버킷 + AIMD
+ * - 전송 전에 토큰을 하나 받아야 하며, 토큰은 초당 currentRate 개씩 채워진다.
+ * - 성공할 때마다 초당 additive-increase 만큼 속도를 올리고 (최대 max-per-second),
+ *   릴레이가 속도 제한 응답(421/450/454 등)을 주면 decrease-factor 를 곱해 줄인다.
+ */
+@Component
+public class SendRateLimiter {
+
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1); // 동시에 실패한 요청들로 여러 번 줄이지 않도록
+
+    private final double maxRate;
+    private final double minRate;
+    private final double additiveIncrease;
+    private final double decreaseFactor;
+
+    private double currentRate; // this 로 동기화
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+
+    public SendRateLimiter(@Value("${batch.email.rate.max-per-second:20}") double maxRate,
+                           @Value("${batch.email.rate.min-per-second:0.5}") double minRate,
+                           @Value("${batch.email.rate.initial-per-second:5}") double initialRate,
+                           @Value("${batch.email.rate.additive-increase:1}") double additiveIncrease,
+                           @Value("${batch.email.rate.decrease-factor:0.5}") double decreaseFactor,
+                           MeterRegistry meterRegistry) {
+        this.maxRate = maxRate;
+        this.minRate = minRate;
+        this.additiveIncrease = additiveIncrease;
+        this.decreaseFactor = decreaseFactor;
+        this.currentRate = Math.max(minRate, Math.min(maxRate, initialRate));
+        this.tokens = 1;
+        this.lastRefillNanos = System.nanoTime();
+        this.lastDecreaseNanos = lastRefillNanos - DECREASE_COOLDOWN_NANOS;
+
+        Gauge.builder("email.smtp.send.rate", this, SendRateLimiter::getCurrentRate)
+                .description("현재 허용된 초당 SMTP 전송 수")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 토큰을 받을 때까지 대기
+     */
+    public void acquire() throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) ((1 - tokens) / currentRate * TimeUnit.SECONDS.toNanos(1));
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+    }
+
+    /**
+     * 전송 성공 - 1초 동안 currentRate 건 성공하면 초당 additiveIncrease 만큼 오르도록 나눠서 증가
+     */
+    public synchronized void onSuccess() {
+        currentRate = Math.min(maxRate, currentRate + additiveIncrease / currentRate);
+    }
+
+    /**
+     * 전송 실패 - 속도 제한 응답일 때만 속도를 줄인다
+     */
+    public void onFailure(SmtpFailureClassifier.Type type) {
+        if (type == SmtpFailureClassifier.Type.THROTTLED) {
+            onThrottled();
+        }
+    }
+
+    public synchronized void onThrottled() {
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < DECREASE_COOLDOWN_NANOS) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        currentRate = Math.max(minRate, currentRate * decreaseFactor);
+        tokens = Math.min(tokens, 0); // 이미 쌓인 토큰으로 바로 다시 몰아보내지 않도록
+        System.err.println("[SendRateLimiter] 릴레이 속도 제한 감지 - 초당 " + String.format("%.2f", currentRate) + "건으로 감소");
+    }
+
+    public synchronized double getCurrentRate() {
+        return currentRate;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastRefillNanos = now;
+        tokens = Math.min(Math.max(1, currentRate), tokens + elapsedSeconds * currentRate); // 버스트는 1초 분량까지
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.batchservice.writer;
+
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.sun.mail.smtp.SMTPSenderFailedException;
+import org.springframework.mail.MailSendException;
+
+import javax.mail.MessagingException;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SMTP 전송 실패를 응답 코드 기준으로 분류
+ * - THROTTLED: 421 / 450 / 451 / 452 / 454 처럼 릴레이가 속도를 제한할 때 (전송 속도를 낮춰야 함)
+ * - TRANSIENT: 그 밖의 4xx, 연결 끊김 등 나중에 다시 시도하면 되는 실패
+ * - PERMANENT: 5xx - 주소 오류 등 다시 보내도 실패하는 경우
+ */
+public final class SmtpFailureClassifier {
+
+    public enum Type { THROTTLED, TRANSIENT, PERMANENT }
+
+    private static final Pattern REPLY_CODE = Pattern.compile("^\\s*([245]\\d\\d)[\\s-]");
+
+    private SmtpFailureClassifier() {
+    }
+
+    public static Type classify(Throwable failure) {
+        // MessagingException 의 getCause() 는 nextException 을 반환하므로 체인을 따라가며 응답 코드를 찾는다
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MailSendException && ((MailSendException) cause).getMessageExceptions().length > 0) {
+                return classify(((MailSendException) cause).getMessageExceptions()[0]); // JavaMailSender 는 원인을 따로 보관
+            }
+            int code = replyCode(cause);
+            if (code > 0) {
+                return classify(code);
+            }
+            if (cause instanceof IOException) {
+                return Type.TRANSIENT; // 연결 끊김 / 타임아웃
+            }
+        }
+        return Type.TRANSIENT; // 알 수 없으면 재시도 가능한 것으로 본다
+    }
+
+    public static Type classify(int replyCode) {
+        switch (replyCode) {
+            case 421:
+            case 450:
+            case 451:
+            case 452:
+            case 454:
+                return Type.THROTTLED;
+            default:
+                return replyCode >= 500 ? Type.PERMANENT : Type.TRANSIENT;
+        }
+    }
+
+    private static int replyCode(Throwable failure) {
+        if (failure instanceof SMTPAddressFailedException) {
+            return ((SMTPAddressFailedException) failure).getReturnCode();
+        }
+        if (failure instanceof SMTPSenderFailedException) {
+            return ((SMTPSenderFailedException) failure).getReturnCode();
+        }
+        if (failure instanceof SMTPSendFailedException) {
+            return ((SMTPSendFailedException) failure).getReturnCode();
+        }
+        if (failure instanceof MessagingException && failure.getMessage() != null) {
+            // 연결 단계 실패 등은 서버 응답이 메시지에만 들어있음 (예: "421 4.7.0 Try again later")
+            Matcher matcher = REPLY_CODE.matcher(failure.getMessage());
+            if (matcher.find()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        return -1;
+    }
+}
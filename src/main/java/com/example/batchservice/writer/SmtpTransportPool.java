@@ -0,0 +1,197 @@
+package com.example.batchservice.writer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.annotation.PreDestroy;
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 인증까지 끝난 SMTP Transport 세션을 N개 유지하며 여러 메시지에 재사용하는 풀
+ * - 메시지마다 연결/STARTTLS/AUTH 를 반복하지 않도록 세션을 빌려 쓰고 반납한다.
+ * - 봉투를 보내기 전 연결 오류(연결/인증 실패, NOOP 으로 확인한 끊긴 세션)는 새로 연결해 한 번 더 시도한다.
+ *   MAIL FROM 이후의 오류는 DATA 가 이미 받아들여졌을 수 있어 다시 보내지 않고 세션만 닫은 뒤 던진다 (재시도 큐가 처리).
+ * - 일정 메시지 수를 보냈거나 일정 시간 놀고 있던 세션은 새 세션으로 교체한다.
+ */
+public class SmtpTransportPool {
+
+    private final Session session;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int maxMessagesPerConnection;
+    private final long maxIdleMillis;
+    private final BlockingQueue<PooledTransport> idleTransports;
+
+    private final Counter connectionsOpened;
+    private final Counter messagesSent;
+
+    /**
+     * @param relay 지표의 relay 태그 - 릴레이마다 풀을 따로 만들 때 구분 (릴레이 설정이 없으면 "default")
+     */
+    public SmtpTransportPool(String relay, Session session, String host, int port, String username, String password,
+                             int poolSize, int maxMessagesPerConnection, long maxIdleMillis,
+                             MeterRegistry meterRegistry) {
+        this.session = session;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.maxIdleMillis = maxIdleMillis;
+        this.idleTransports = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            idleTransports.add(new PooledTransport()); // 실제 연결은 처음 빌려갈 때 생성
+        }
+
+        this.connectionsOpened = Counter.builder("email.smtp.connections.opened")
+                .description("열린 SMTP 연결 수")
+                .tag("engine", "javamail")
+                .tag("relay", relay)
+                .register(meterRegistry);
+        this.messagesSent = Counter.builder("email.smtp.messages.sent")
+                .description("SMTP 로 전송한 메시지 수")
+                .tag("engine", "javamail")
+                .tag("relay", relay)
+                .register(meterRegistry);
+        Gauge.builder("email.smtp.messages.per.connection", this, SmtpTransportPool::messagesPerConnection)
+                .description("연결 하나당 전송한 메시지 수 (풀 미사용 시 1)")
+                .tag("engine", "javamail")
+                .tag("relay", relay)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 풀의 세션으로 메시지 전송 - 봉투를 보내기 전 연결 오류면 재연결 후 한 번 더 시도
+     */
+    public void send(MimeMessage message) throws MessagingException {
+        send(message, message.getAllRecipients());
+    }
+
+    /**
+     * 봉투 수신자(RCPT TO)를 헤더와 따로 지정하여 전송 - 여러 수신자를 한 트랜잭션으로 보낼 때 사용
+     * mail.smtp.sendpartial 이 켜져 있으면 일부 수신자가 거부되어도 나머지에게 보낸 뒤 SendFailedException 을 던진다.
+     */
+    public void send(MimeMessage message, Address[] recipients) throws MessagingException {
+        PooledTransport pooled = borrow();
+        try {
+            message.saveChanges();
+            try {
+                pooled.ensureConnected();
+            } catch (MessagingException e) {
+                // 아직 아무것도 보내지 않았으므로 다시 연결해도 중복 발송이 없음
+                System.err.println("[SmtpTransportPool] 연결 오류로 재연결 후 재시도: " + e.getMessage());
+                pooled.close();
+                pooled.ensureConnected();
+            }
+            pooled.send(message, recipients);
+        } finally {
+            idleTransports.offer(pooled);
+        }
+    }
+
+    /**
+     * 풀을 거치지 않은 전송 (JavaMailSender 가 메시지마다 연결) 도 같은 지표로 집계
+     */
+    public void recordUnpooledSend() {
+        connectionsOpened.increment();
+        messagesSent.increment();
+    }
+
+    public double messagesPerConnection() {
+        double opened = connectionsOpened.count();
+        return opened == 0 ? 0 : messagesSent.count() / opened;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (PooledTransport pooled : idleTransports) {
+            pooled.close();
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        try {
+            PooledTransport pooled = idleTransports.poll(30, TimeUnit.SECONDS);
+            if (pooled == null) {
+                throw new MessagingException("[SmtpTransportPool] 사용 가능한 SMTP 세션이 없습니다.");
+            }
+            return pooled;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("[SmtpTransportPool] SMTP 세션 대기 중 인터럽트", e);
+        }
+    }
+
+    /**
+     * 풀에 들어있는 세션 하나 - 항상 한 스레드만 빌려 쓰므로 별도 동기화 불필요
+     */
+    private class PooledTransport {
+        private Transport transport;
+        private int messageCount;
+        private long lastUsedAt;
+
+        /**
+         * ensureConnected 로 연결한 세션으로 전송
+         */
+        void send(MimeMessage message, Address[] recipients) throws MessagingException {
+            try {
+                transport.sendMessage(message, recipients);
+            } catch (SendFailedException e) {
+                messageCount++; // 일부 수신자에게는 전송되었을 수 있음 - 세션은 그대로 사용
+                lastUsedAt = System.currentTimeMillis();
+                throw e;
+            } catch (MessagingException e) {
+                close(); // DATA 이후에 끊겼거나 응답이 늦음 - 전송 여부를 알 수 없으므로 세션만 버림
+                throw e;
+            }
+            messageCount++;
+            lastUsedAt = System.currentTimeMillis();
+            messagesSent.increment();
+        }
+
+        /**
+         * 교체할 세션이거나 끊겼으면 (isConnected 가 NOOP 으로 확인) 새로 연결
+         */
+        void ensureConnected() throws MessagingException {
+            if (transport != null) {
+                boolean exhausted = messageCount >= maxMessagesPerConnection;
+                boolean idleTooLong = System.currentTimeMillis() - lastUsedAt > maxIdleMillis;
+                if (exhausted || idleTooLong || !transport.isConnected()) {
+                    close(); // 세션 교체
+                }
+            }
+            if (transport == null) {
+                Transport newTransport = session.getTransport("smtp");
+                newTransport.connect(host, port, username, password);
+                transport = newTransport;
+                messageCount = 0;
+                lastUsedAt = System.currentTimeMillis();
+                connectionsOpened.increment();
+            }
+        }
+
+        void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                System.err.println("[SmtpTransportPool] SMTP 세션 종료 중 오류: " + e.getMessage());
+            } finally {
+                transport = null;
+            }
+        }
+    }
+}
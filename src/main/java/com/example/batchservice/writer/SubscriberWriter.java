@@ -0,0 +1,69 @@
+package com.example.batchservice.writer;
+
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.ledger.DeliveryRetryQueue;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.stereotype.Component;
+
+import javax.mail.MessagingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 청크 단계의 Writer - 청크 안의 구독자에게 동시에 발송하고, 성공한 구독자만 발송 기록에 남김 (청크 끝에서 flush)
+ * 청크가 커밋되어야 Reader 의 마지막 키가 ExecutionContext 에 저장되므로 발송이 끝난 뒤에 반환한다.
+ */
+@Component
+public class SubscriberWriter implements ItemWriter<Subscriber> {
+
+    private final EmailWriter emailWriter;
+    private final DeliveryStatusRecorder deliveryStatusRecorder;
+
+    public SubscriberWriter(EmailWriter emailWriter, DeliveryStatusRecorder deliveryStatusRecorder) {
+        this.emailWriter = emailWriter;
+        this.deliveryStatusRecorder = deliveryStatusRecorder;
+    }
+
+    @Override
+    public void write(List<? extends Subscriber> subscribers) {
+        // Reader 가 세그먼트 순으로 읽으므로 청크 하나에는 보통 세그먼트 하나 (경계에서만 둘)
+        Map<String, PreparedEmail> preparedBySegment = new HashMap<>();
+        AtomicInteger sentCount = new AtomicInteger();
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        // recipients-per-transaction 이 1 이면 구독자마다, 아니면 여러 명을 한 트랜잭션으로
+        for (List<Subscriber> group : emailWriter.transactionGroups(subscribers)) {
+            PreparedEmail preparedEmail = preparedBySegment.computeIfAbsent(group.get(0).getSegmentKey(), this::prepare);
+            sends.add(emailWriter.sendGroupAsync(preparedEmail, group, (subscriber, failure) -> {
+                if (failure == null) {
+                    deliveryStatusRecorder.markSent(subscriber);
+                    sentCount.incrementAndGet();
+                } else {
+                    // 실패한 주소는 재시도 대기열에 기록 - 다음 시도 시각 전까지는 다시 읽히지 않음
+                    DeliveryRetryQueue.Failure retry = deliveryStatusRecorder.markFailed(subscriber, failure);
+                    System.err.println("[SubscriberWriter] 이메일 전송 실패 (" + SmtpFailureClassifier.classify(failure) + ", "
+                            + retry.describe() + "): " + subscriber.getEmail() + " - " + failure.getMessage());
+                }
+            }));
+        }
+        // 청크의 모든 전송이 끝날 때까지 대기 (실패는 위에서 처리했으므로 무시)
+        CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])).handle((ignored, failure) -> null).join();
+
+        deliveryStatusRecorder.flushBeforeCommit(); // 청크 커밋 전에 반영 - 실패하면 청크도 실패
+        System.out.println("[SubscriberWriter] 청크 처리 완료: " + sentCount.get() + "/" + subscribers.size() + " 건 발송");
+    }
+
+    /**
+     * 세그먼트 본문 준비 - 템플릿과 인코딩 결과는 세그먼트별로 캐시되어 있어 보통 바로 반환된다
+     */
+    private PreparedEmail prepare(String segmentKey) {
+        try {
+            return emailWriter.prepareFor(segmentKey);
+        } catch (MessagingException e) {
+            throw new IllegalStateException("[SubscriberWriter] 메일 본문 준비 실패: " + segmentKey, e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+-- 일자별 발송 기록 (append-only). PK 가 (delivery_date, subscriber_id) 이므로
+-- "오늘 아직 안 보낸 구독자" anti-join 과 날짜 단위 삭제 모두 PK 인덱스로 처리된다.
+CREATE TABLE IF NOT EXISTS delivery_ledger (
+    delivery_date DATE NOT NULL,
+    subscriber_id BIGINT NOT NULL,
+    sent_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (delivery_date, subscriber_id)
+);
@@ -0,0 +1,16 @@
+-- 발송일별 실패 재시도 대기열. PK (delivery_date, subscriber_id) 로 구독자당 하루 한 행만 유지하고,
+-- status = 'DEAD' 는 최대 시도 횟수를 넘겨 더 이상 보내지 않는 주소(dead-letter)이다.
+-- (delivery_date, status, next_attempt_at, subscriber_id) 인덱스로 "재시도 시각이 된 행" 을 바로 찾는다.
+-- PK 가 포함되어 UNIQUE 는 항상 성립 - MySQL/H2 공통 문법으로 인덱스를 만들기 위한 선언
+CREATE TABLE IF NOT EXISTS delivery_retry (
+    delivery_date DATE NOT NULL,
+    subscriber_id BIGINT NOT NULL,
+    attempts INT NOT NULL,
+    next_attempt_at TIMESTAMP NOT NULL,
+    status VARCHAR(8) NOT NULL,
+    last_error_type VARCHAR(16) NOT NULL,
+    last_error_class VARCHAR(255) NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (delivery_date, subscriber_id),
+    CONSTRAINT uk_delivery_retry_due UNIQUE (delivery_date, status, next_attempt_at, subscriber_id)
+);
@@ -0,0 +1,13 @@
+-- 발송일/세그먼트/형식(html, markdown)별로 렌더링한 다이제스트 - 재시작하거나 다른 인스턴스도 같은 본문을 바로 사용
+-- content_version 은 가격/뉴스 데이터 해시와 템플릿 이름, render_source 가 FALLBACK 이면 마지막 정상 스냅샷으로 만든 본문 (새 데이터로 교체 대상)
+-- digest_format 은 "형식@템플릿 버전"(html@3f2a9c01bd 등) - 템플릿이 바뀌면 다른 행이 된다
+CREATE TABLE IF NOT EXISTS rendered_digest (
+    digest_date DATE NOT NULL,
+    segment_key VARCHAR(120) NOT NULL,
+    digest_format VARCHAR(20) NOT NULL,
+    content_version VARCHAR(200) NOT NULL,
+    render_source VARCHAR(20) NOT NULL,
+    body LONGTEXT NOT NULL,
+    rendered_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (digest_date, segment_key, digest_format)
+);
@@ -0,0 +1,14 @@
+-- 여러 인스턴스가 구독자 샤드(MOD(subscriber id, 샤드 수))를 나눠 맡기 위한 임대(lease)
+-- owner 가 expires_at 전까지 갱신하지 않으면 다른 인스턴스가 가져갈 수 있다.
+CREATE TABLE IF NOT EXISTS subscriber_shard_lease (
+    shard_id INT NOT NULL PRIMARY KEY,
+    owner VARCHAR(100) NULL,
+    expires_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+
+-- 살아있는 인스턴스 (하트비트) - 인스턴스 수로 샤드 몫을 나눈다
+CREATE TABLE IF NOT EXISTS delivery_instance (
+    instance_id VARCHAR(100) NOT NULL PRIMARY KEY,
+    expires_at TIMESTAMP NOT NULL
+);
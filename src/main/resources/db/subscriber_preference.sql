@@ -0,0 +1,19 @@
+-- 구독자별 다이제스트 선호도 (행이 없으면 기본 세그먼트: 전체 코인, 한국어)
+-- (segment_key, subscriber_id) 인덱스로 세그먼트별 구독자를 id 순으로 바로 읽는다.
+-- subscriber_id 가 PK 라 UNIQUE 는 항상 성립 - MySQL/H2 공통 문법으로 인덱스를 만들기 위한 선언
+CREATE TABLE IF NOT EXISTS subscriber_preference (
+    subscriber_id BIGINT NOT NULL PRIMARY KEY,
+    coins VARCHAR(100) NOT NULL,
+    language VARCHAR(8) NOT NULL,
+    segment_key VARCHAR(120) NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    CONSTRAINT uk_subscriber_preference_segment UNIQUE (segment_key, subscriber_id)
+);
+
+-- 구독자 시간대 (선택) - batch.delivery.window.by-time-zone=true 면 발송 창을 구독자 현지 시각 기준으로 연다
+-- 행이 없으면 batch.delivery.window.default-zone
+CREATE TABLE IF NOT EXISTS subscriber_time_zone (
+    subscriber_id BIGINT NOT NULL PRIMARY KEY,
+    zone_id VARCHAR(40) NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,172 @@
+package com.example.batchservice.batch;
+
+import com.example.batchservice.ledger.DeliveryLedger;
+import com.example.batchservice.shard.ShardLeaseManager;
+import com.example.batchservice.writer.SendRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 발송 창의 id 구간 계산 - 구독자 1~100 을 10개 구간으로 나눠 푼다 (H2, MySQL 모드)
+ */
+class DeliveryWindowPlannerTest {
+
+    private static final int SUBSCRIBERS = 100;
+    private static final int SLOTS = 10;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JdbcTemplate jdbcTemplate;
+    private FixedDayLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:window-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE subscriber (id BIGINT NOT NULL PRIMARY KEY, email VARCHAR(255) NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE subscriber_time_zone (subscriber_id BIGINT NOT NULL PRIMARY KEY, "
+                + "zone_id VARCHAR(40) NOT NULL, updated_at TIMESTAMP NOT NULL)");
+        for (long id = 1; id <= SUBSCRIBERS; id++) {
+            jdbcTemplate.update("INSERT INTO subscriber (id, email) VALUES (?, ?)", id, "user" + id + "@example.com");
+        }
+        ledger = new FixedDayLedger(jdbcTemplate);
+        ledger.date = LocalDate.now();
+        ledger.dayStart = LocalDateTime.now().minusMinutes(1);
+    }
+
+    @Test
+    void releasesIdRangesByElapsedTimeAndDrainedBudget() {
+        DeliveryWindowPlanner planner = planner(false);
+        assertThat(planner.releaseCondition("s.id")).isEqualTo(" AND 1 = 0"); // 계획 전
+
+        // 1분 / 100분 경과 → 1 구간 (id 1~10)
+        assertThat(planner.advance(false)).isTrue();
+        assertThat(planner.releaseCondition("s.id")).isEqualTo(" AND s.id > 0 AND s.id <= 10");
+        assertThat(planner.advance(false)).isFalse(); // 시간만으로는 아직 그대로
+
+        // 다 보냄 → 속도 5건/초 × 8초 = 40건을 남은 99건에 나눠 당김 (비율 약 0.41 → 5 구간), 보낸 구간은 하한으로
+        assertThat(planner.advance(true)).isTrue();
+        assertThat(planner.releaseCondition("s.id")).isEqualTo(" AND s.id > 10 AND s.id <= 50");
+        assertThat(released(planner)).containsExactlyElementsOf(range(11, 50));
+    }
+
+    @Test
+    void stalePlanReleasesNobodyAfterDayRollover() {
+        DeliveryWindowPlanner planner = planner(false);
+        planner.advance(false);
+        // 창 끝 - 풀어 주는 구간(창 100분 - 여유 99분 = 1분)이 지나 모두 풀림
+        ReflectionTestUtils.setField(planner, "windowMinutes", 100L);
+        ReflectionTestUtils.setField(planner, "drainMarginMinutes", 99L);
+        ledger.dayStart = LocalDateTime.now().minusMinutes(2);
+        planner.advance(false);
+        assertThat(planner.releaseCondition("s.id")).isEmpty();
+
+        // 발송일이 바뀜 - 다시 계획하기 전까지는 어제의 "모두 풀림" 을 쓰지 않음
+        ledger.date = ledger.date.plusDays(1);
+        ledger.dayStart = LocalDateTime.now().plusMinutes(1); // 새 창은 아직 열리기 전
+        assertThat(planner.releaseCondition("s.id")).isEqualTo(" AND 1 = 0");
+
+        planner.advance(false);
+        assertThat(planner.releaseCondition("s.id")).isEqualTo(" AND s.id > 0 AND s.id <= 0");
+    }
+
+    @Test
+    void opensEachTimeZoneAtItsLocalStartHour() {
+        // 서버 시각으로 정각에 발송일 시작, 서울은 그 시각에 창이 열리고 UTC 는 9시간 뒤
+        ledger.dayStart = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        int seoulHour = ledger.dayStart.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneId.of("Asia/Seoul")).getHour();
+        for (long id = 1; id <= 40; id++) {
+            jdbcTemplate.update("INSERT INTO subscriber_time_zone (subscriber_id, zone_id, updated_at) "
+                    + "VALUES (?, 'UTC', CURRENT_TIMESTAMP)", id);
+        }
+        DeliveryWindowPlanner planner = planner(true);
+        ReflectionTestUtils.setField(planner, "localStartHour", seoulHour);
+        ReflectionTestUtils.setField(planner, "windowMinutes", 610L); // 풀어 주는 구간 600분 - 정각부터 한 시간이 지나도 첫 구간만
+
+        planner.advance(false);
+
+        // 서울(시간대 없음) 60명 중 첫 구간 41~46, UTC 40명은 아직
+        assertThat(released(planner)).containsExactlyElementsOf(range(41, 46));
+    }
+
+    @Test
+    void opensLateZoneEarlyEnoughToFinishBeforeNextDeliveryDay() {
+        // 발송일이 다음 정각에 끝나고, UTC 의 현지 시작 시각은 마지막 한 시간 (지금 시각의 정각)
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        ledger.dayStart = currentHour.minusHours(23);
+        int utcHour = currentHour.atZone(ZoneId.systemDefault()).withZoneSameInstant(ZoneId.of("UTC")).getHour();
+        DeliveryWindowPlanner planner = planner(true);
+        ReflectionTestUtils.setField(planner, "defaultZone", "UTC");
+        ReflectionTestUtils.setField(planner, "localStartHour", utcHour);
+        ReflectionTestUtils.setField(planner, "windowMinutes", 600L);
+        ReflectionTestUtils.setField(planner, "drainMarginMinutes", 0L);
+
+        planner.advance(false);
+
+        // 현지 시각대로면 지금 10% 미만만 풀림 - 다음 발송일 600분 전에 열어 이미 90% 이상 풀림
+        assertThat(released(planner)).hasSizeGreaterThanOrEqualTo(90);
+    }
+
+    private DeliveryWindowPlanner planner(boolean byTimeZone) {
+        SendRateLimiter limiter = new SendRateLimiter(5, 5, 5, 1, 0.5, meterRegistry);
+        DeliveryWindowPlanner planner = new DeliveryWindowPlanner(jdbcTemplate, ledger, limiter,
+                new ShardLeaseManager(jdbcTemplate, event -> { }), meterRegistry);
+        ReflectionTestUtils.setField(planner, "enabled", true);
+        ReflectionTestUtils.setField(planner, "windowMinutes", 110L); // 풀어 주는 구간 100분
+        ReflectionTestUtils.setField(planner, "drainMarginMinutes", 10L);
+        ReflectionTestUtils.setField(planner, "slots", SLOTS);
+        ReflectionTestUtils.setField(planner, "sliceIntervalMillis", 8000L);
+        ReflectionTestUtils.setField(planner, "rateUtilization", 1.0);
+        ReflectionTestUtils.setField(planner, "byTimeZone", byTimeZone);
+        ReflectionTestUtils.setField(planner, "localStartHour", 7);
+        ReflectionTestUtils.setField(planner, "defaultZone", "Asia/Seoul");
+        return planner;
+    }
+
+    private List<Long> released(DeliveryWindowPlanner planner) {
+        return jdbcTemplate.queryForList("SELECT s.id FROM subscriber s WHERE 1 = 1" + planner.releaseCondition("s.id")
+                + " ORDER BY s.id", Long.class);
+    }
+
+    private static List<Long> range(long from, long to) {
+        return LongStream.rangeClosed(from, to).boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * 발송일과 시작 시각을 시험에서 정하는 원장
+     */
+    private static class FixedDayLedger extends DeliveryLedger {
+
+        private LocalDate date;
+        private LocalDateTime dayStart;
+
+        FixedDayLedger(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+        }
+
+        @Override
+        public LocalDate currentDeliveryDate() {
+            return date;
+        }
+
+        @Override
+        public LocalDateTime currentDeliveryDayStart() {
+            return dayStart;
+        }
+    }
+}
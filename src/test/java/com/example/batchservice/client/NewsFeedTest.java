@@ -0,0 +1,99 @@
+package com.example.batchservice.client;
+
+import com.example.batchservice.dto.NewsData;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 태그별 뉴스 창 - 커서까지만 읽기, 기존 창과 합치기, 나중에 시작한 조회가 이미 반영된 늦은 결과 버리기
+ */
+class NewsFeedTest {
+
+    private static final String TAG = "비트코인";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<Integer> fetchedPages = new ArrayList<>();
+    private NewsFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        feed = new NewsFeed();
+        ReflectionTestUtils.setField(feed, "windowPerTag", 3);
+        ReflectionTestUtils.setField(feed, "pageSize", 2);
+    }
+
+    @Test
+    void firstRefreshFillsWindowAcrossPagesAndCleansHtml() {
+        List<NewsData> window = feed.refresh(TAG, pages(List.of("a5", "a4"), List.of("a3", "a2")));
+
+        assertThat(links(window)).containsExactly("a5", "a4", "a3");
+        assertThat(fetchedPages).containsExactly(0, 1);
+        assertThat(window.get(0).getTitle()).isEqualTo("title a5"); // <b> 태그 제거
+    }
+
+    @Test
+    void laterRefreshStopsAtCursorAndMergesIntoWindow() {
+        feed.refresh(TAG, pages(List.of("a5", "a4"), List.of("a3", "a2")));
+        fetchedPages.clear();
+
+        // 새 기사 하나 - 첫 페이지에서 커서(a5)를 만나 다음 페이지는 읽지 않음
+        List<NewsData> window = feed.refresh(TAG, pages(List.of("a6", "a5"), List.of("a4", "a3")));
+
+        assertThat(links(window)).containsExactly("a6", "a5", "a4");
+        assertThat(fetchedPages).containsExactly(0);
+
+        // 새 기사가 없으면 창 그대로
+        assertThat(links(feed.refresh(TAG, pages(List.of("a6", "a5"))))).containsExactly("a6", "a5", "a4");
+    }
+
+    @Test
+    void discardsSlowRefreshWhenLaterRefreshAlreadyApplied() {
+        // 먼저 시작한 조회의 응답이 늦는 사이 나중에 시작한 조회가 더 새 기사를 반영
+        List<NewsData> window = feed.refresh(TAG, page -> {
+            feed.refresh(TAG, pages(List.of("b2", "b1")));
+            return page(List.of("a1"));
+        });
+
+        assertThat(links(window)).containsExactly("b2", "b1");
+    }
+
+    @SafeVarargs
+    private IntFunction<JsonNode> pages(List<String>... pages) {
+        return page -> {
+            fetchedPages.add(page);
+            return page < pages.length ? page(pages[page]) : page(List.of());
+        };
+    }
+
+    /**
+     * 뉴스 API 응답 한 페이지 - data.content[] (최신순)
+     */
+    private JsonNode page(List<String> links) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ArrayNode content = root.putObject("data").putArray("content");
+        for (String link : links) {
+            content.addObject()
+                    .put("title", "<b>title " + link + "</b>")
+                    .put("link", link)
+                    .put("description", "<p>summary " + link + "</p>")
+                    .put("img", "https://example.com/" + link + ".png");
+        }
+        return root;
+    }
+
+    private static List<String> links(List<NewsData> window) {
+        return window.stream().map(NewsData::getLink).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.batchservice.client;
+
+import com.example.batchservice.dto.UpstreamSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 시간 초과한 조회가 인터럽트를 무시하고 스레드를 붙잡고 있을 때 새 조회가 쌓이지 않고 거절되는지 확인
+ */
+class UpstreamGuardTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch upstreamReleased = new CountDownLatch(1);
+    private UpstreamGuard guard;
+
+    @AfterEach
+    void tearDown() {
+        upstreamReleased.countDown();
+        guard.close();
+    }
+
+    @Test
+    void rejectsWhileTimedOutCallStillHoldsThread() {
+        guard = guard(new StuckApiClient(upstreamReleased));
+
+        assertThatThrownBy(guard::fetchSnapshot)
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThatThrownBy(guard::fetchSnapshot)
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+
+        assertThat(meterRegistry.get("upstream.guard.calls").tag("outcome", "timeout").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("upstream.guard.calls").tag("outcome", "rejected").counter().count()).isEqualTo(1.0);
+        assertThat(guard.isCallPermitted()).isTrue(); // minimum-calls 전이라 회로는 닫혀 있음
+    }
+
+    private UpstreamGuard guard(FlowbitApiClient client) {
+        UpstreamGuard upstreamGuard = new UpstreamGuard(client, meterRegistry);
+        ReflectionTestUtils.setField(upstreamGuard, "timeoutMillis", 100L);
+        ReflectionTestUtils.setField(upstreamGuard, "maxConcurrentCalls", 1);
+        ReflectionTestUtils.setField(upstreamGuard, "failureRateThreshold", 50f);
+        ReflectionTestUtils.setField(upstreamGuard, "slowCallMillis", 2000L);
+        ReflectionTestUtils.setField(upstreamGuard, "slowCallRateThreshold", 80f);
+        ReflectionTestUtils.setField(upstreamGuard, "windowSize", 10);
+        ReflectionTestUtils.setField(upstreamGuard, "minimumCalls", 10);
+        ReflectionTestUtils.setField(upstreamGuard, "openMillis", 60_000L);
+        upstreamGuard.init();
+        return upstreamGuard;
+    }
+
+    /**
+     * 블로킹 소켓 읽기처럼 인터럽트로 멈추지 않는 상류 - released 가 풀릴 때까지 스레드를 붙잡음
+     */
+    private static class StuckApiClient extends FlowbitApiClient {
+
+        private final CountDownLatch released;
+
+        StuckApiClient(CountDownLatch released) {
+            super(null, null, null, null);
+            this.released = released;
+        }
+
+        @Override
+        public UpstreamSnapshot fetchSnapshot() {
+            boolean interrupted = false;
+            while (released.getCount() > 0) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    interrupted = true; // 무시하고 계속 대기
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("released");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.batchservice.ledger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 일자별 발송 기록 - 중복 없는 추가, 발송일 경계, 보관 기간 정리 (H2, MySQL 모드)
+ */
+class DeliveryLedgerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DeliveryLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:ledger-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        ledger = new DeliveryLedger(jdbcTemplate);
+        ReflectionTestUtils.setField(ledger, "dayStartHour", 10);
+        ReflectionTestUtils.setField(ledger, "retentionDays", 1);
+        ReflectionTestUtils.setField(ledger, "pruneBatchSize", 2);
+        ledger.initSchema();
+        jdbcTemplate.execute("CREATE TABLE subscriber (id BIGINT NOT NULL PRIMARY KEY, email VARCHAR(255) NOT NULL)");
+        for (long id = 1; id <= 3; id++) {
+            jdbcTemplate.update("INSERT INTO subscriber (id, email) VALUES (?, ?)", id, "user" + id + "@example.com");
+        }
+    }
+
+    @Test
+    void skipsRowAlreadyRecordedForSameDay() {
+        LocalDate today = ledger.currentDeliveryDate();
+
+        // 청크 재시도나 재시작으로 같은 구독자를 다시 기록해도 한 행
+        jdbcTemplate.update(DeliveryLedger.INSERT_SQL, DeliveryLedger.insertParams(today, 1L, LocalDateTime.now()));
+        jdbcTemplate.update(DeliveryLedger.INSERT_SQL, DeliveryLedger.insertParams(today, 1L, LocalDateTime.now()));
+        jdbcTemplate.update(DeliveryLedger.INSERT_SQL, DeliveryLedger.insertParams(today.minusDays(1), 2L, LocalDateTime.now()));
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM delivery_ledger", Integer.class)).isEqualTo(2);
+        // 어제 보낸 구독자는 오늘 다시 미발송
+        assertThat(jdbcTemplate.queryForList("SELECT s.id FROM subscriber s WHERE "
+                + DeliveryLedger.notDeliveredCondition("?") + " ORDER BY s.id", Long.class, today)).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void deliveryDateChangesAtDayStartHour() {
+        LocalDateTime now = LocalDateTime.now();
+
+        // 이번 시각에 시작 - 오늘 발송일, 시작 시각은 오늘 그 정각
+        ReflectionTestUtils.setField(ledger, "dayStartHour", now.getHour());
+        assertThat(ledger.currentDeliveryDate()).isEqualTo(now.toLocalDate());
+        assertThat(ledger.currentDeliveryDayStart()).isEqualTo(now.toLocalDate().atTime(now.getHour(), 0));
+
+        // 다음 시각에 시작 - 아직 어제 발송일
+        ReflectionTestUtils.setField(ledger, "dayStartHour", now.getHour() + 1);
+        assertThat(ledger.currentDeliveryDate()).isEqualTo(now.toLocalDate().minusDays(1));
+    }
+
+    @Test
+    void prunesDaysOlderThanRetentionInBatches() {
+        LocalDate today = ledger.currentDeliveryDate();
+        for (long id = 1; id <= 5; id++) {
+            jdbcTemplate.update(DeliveryLedger.INSERT_SQL, DeliveryLedger.insertParams(today.minusDays(2), id, LocalDateTime.now()));
+        }
+        jdbcTemplate.update(DeliveryLedger.INSERT_SQL, DeliveryLedger.insertParams(today.minusDays(1), 1L, LocalDateTime.now()));
+        jdbcTemplate.update(DeliveryLedger.INSERT_SQL, DeliveryLedger.insertParams(today, 1L, LocalDateTime.now()));
+
+        // 2건씩 세 번에 나눠 삭제, 보관 기간(1일) 안의 행은 남음
+        assertThat(ledger.prune()).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForList("SELECT delivery_date FROM delivery_ledger ORDER BY delivery_date", LocalDate.class))
+                .containsExactly(today.minusDays(1), today);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.batchservice.ledger;
+
+import com.example.batchservice.dto.DigestSegment;
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.example.batchservice.shard.ShardLeaseManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 재시도 대기 시간 계산과 delivery_retry 반영(upsert) 확인 - H2(MySQL 모드) 메모리 DB 사용
+ */
+class DeliveryRetryQueueTest {
+
+    private static final long BASE_DELAY = 60_000;
+    private static final long MAX_DELAY = 3_600_000;
+
+    private JdbcTemplate jdbcTemplate;
+    private DeliveryRetryQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:retry-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        DeliveryLedger deliveryLedger = new DeliveryLedger(jdbcTemplate);
+        queue = new DeliveryRetryQueue(jdbcTemplate, deliveryLedger, new ShardLeaseManager(jdbcTemplate, event -> { }),
+                new BatchMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(queue, "maxAttempts", 3);
+        ReflectionTestUtils.setField(queue, "baseDelayMillis", BASE_DELAY);
+        ReflectionTestUtils.setField(queue, "maxDelayMillis", MAX_DELAY);
+        ReflectionTestUtils.setField(queue, "deadLetterPermanent", true);
+        queue.initSchema();
+    }
+
+    @Test
+    void backoffDoublesWithJitterInUpperHalf() {
+        for (int attempts = 1; attempts <= 6; attempts++) {
+            long ceiling = Math.min(MAX_DELAY, BASE_DELAY << (attempts - 1));
+            for (int i = 0; i < 200; i++) {
+                assertThat(queue.backoffMillis(attempts)).isBetween(ceiling / 2, ceiling);
+            }
+        }
+    }
+
+    @Test
+    void backoffIsCappedAndDoesNotOverflow() {
+        for (int attempts : new int[]{7, 30, 64, Integer.MAX_VALUE}) {
+            assertThat(queue.backoffMillis(attempts)).isBetween(MAX_DELAY / 2, MAX_DELAY);
+        }
+    }
+
+    @Test
+    void deadLettersAfterMaxAttempts() {
+        IOException cause = new IOException("connection reset");
+
+        assertThat(queue.failure(subscriber(1L, 0), cause).isDead()).isFalse();
+        assertThat(queue.failure(subscriber(1L, 1), cause).isDead()).isFalse();
+        assertThat(queue.failure(subscriber(1L, 2), cause).isDead()).isTrue();
+    }
+
+    @Test
+    void insertsRowEvenWhenEarlierWriteWasLost() {
+        // 이전 실패 기록이 반영되지 못해 행이 없는데 구독자는 이미 실패 이력이 있는 경우
+        DeliveryRetryQueue.Failure failure = queue.failure(subscriber(7L, 1), new IOException("connection reset"));
+
+        queue.write(List.of(failure), List.of());
+
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT attempts, status FROM delivery_retry WHERE subscriber_id = 7");
+        assertThat(((Number) row.get("attempts")).intValue()).isEqualTo(2);
+        assertThat(row.get("status")).isEqualTo(DeliveryRetryQueue.STATUS_PENDING);
+    }
+
+    @Test
+    void updatesExistingRowOnRepeatedFailure() {
+        IOException cause = new IOException("connection reset");
+        queue.write(List.of(queue.failure(subscriber(7L, 0), cause)), List.of());
+
+        // 같은 발송일의 다음 실패는 새 행이 아니라 기존 행을 갱신 (max-attempts 에 닿아 dead-letter)
+        queue.write(List.of(queue.failure(subscriber(7L, 2), cause)), List.of());
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM delivery_retry", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM delivery_retry WHERE subscriber_id = 7", String.class))
+                .isEqualTo(DeliveryRetryQueue.STATUS_DEAD);
+    }
+
+    private static Subscriber subscriber(Long id, int attempts) {
+        return new Subscriber(id, "user" + id + "@example.com", DigestSegment.DEFAULT.getKey(), attempts);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.batchservice.loadtest;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+@Profile("loadtest")
+public class LoadTestConfig {
+
+    /**
+     * 모든 DB 접근이 왕복 횟수 집계를 거치도록 DataSource 를 감싼다
+     */
+    @Bean
+    public static BeanPostProcessor roundTripCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof RoundTripCountingDataSource)) {
+                    return new RoundTripCountingDataSource((DataSource) bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * 전송 지연 p50/p99 를 실행 전체 기준으로 계산 (기본값은 최근 2분 창만 반영)
+     */
+    @Bean
+    public MeterFilter sendLatencyPercentiles() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!"email.smtp.send".equals(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentiles(0.5, 0.99)
+                        .expiry(Duration.ofDays(1))
+                        .bufferLength(1)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.batchservice.loadtest;
+
+import com.example.batchservice.ledger.DeliveryRetryQueue;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.example.batchservice.shard.ShardLeaseManager;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.launch.JobLauncher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 오프라인 부하 테스트 - ./gradlew loadTest (loadtest 프로필) 로 기동하면 실행된다
+ * 1. 메모리 H2 에 구독자 N 명 생성
+ * 2. userNotificationJob 한 번 실행 (가격/뉴스는 LoadTestUpstreamController, SMTP 는 LoadTestSmtpSink)
+ * 3. 초당 발송 수, 메시지별 전송 지연 p50/p99, DB 왕복 횟수, 힙 최대 사용량 출력
+ * 엔진/동시성 설정(batch.email.engine, step-mode, pipeline.max-in-flight 등)을 바꿔가며 같은 머신에서 비교하는 용도.
+ * batch.shard.enabled=true 로 공유 DB 에 두 개 이상 띄우면 instances 개가 모여 샤드를 나눌 때까지 기다렸다가 실행한다
+ * (구독자 생성은 seed=true 인 인스턴스 하나만 - application-loadtest.yml 의 다중 인스턴스 예 참고).
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestRunner implements ApplicationRunner {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private final JobLauncher jobLauncher;
+    private final Job userNotificationJob;
+    private final JdbcTemplate jdbcTemplate;
+    private final RoundTripCountingDataSource dataSource;
+    private final LoadTestSmtpSink smtpSink;
+    private final BatchMetrics batchMetrics;
+    private final Environment environment;
+    private final ApplicationContext applicationContext;
+    private final ShardLeaseManager shardLeaseManager;
+
+    @Value("${batch.loadtest.subscribers:10000}")
+    private int subscriberCount;
+
+    @Value("${batch.loadtest.exit-on-finish:true}") // 보고서 출력 후 종료
+    private boolean exitOnFinish;
+
+    @Value("${batch.loadtest.seed:true}") // 공유 DB 의 두 번째 인스턴스부터는 false
+    private boolean seed;
+
+    @Value("${batch.loadtest.instances:1}") // 샤딩 시 모일 때까지 기다릴 인스턴스 수
+    private int expectedInstances;
+
+    @Value("${batch.loadtest.shard-wait-ms:60000}")
+    private long shardWaitMillis;
+
+    public LoadTestRunner(JobLauncher jobLauncher, Job userNotificationJob, JdbcTemplate jdbcTemplate, DataSource dataSource,
+                          LoadTestSmtpSink smtpSink, BatchMetrics batchMetrics, Environment environment,
+                          ApplicationContext applicationContext, ShardLeaseManager shardLeaseManager) {
+        this.jobLauncher = jobLauncher;
+        this.userNotificationJob = userNotificationJob;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = (RoundTripCountingDataSource) dataSource; // LoadTestConfig 가 감싼 DataSource
+        this.smtpSink = smtpSink;
+        this.batchMetrics = batchMetrics;
+        this.environment = environment;
+        this.applicationContext = applicationContext;
+        this.shardLeaseManager = shardLeaseManager;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (seed) {
+            seedSubscribers();
+        }
+        awaitShardAssignment();
+
+        smtpSink.resetCounts();
+        dataSource.reset();
+        HeapPeakSampler heapPeakSampler = new HeapPeakSampler();
+
+        long startNanos = System.nanoTime();
+        JobExecution jobExecution = jobLauncher.run(userNotificationJob, new JobParametersBuilder()
+                .addLong("timestamp", System.currentTimeMillis())
+                .toJobParameters());
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long roundTrips = dataSource.getRoundTrips();
+        long heapPeakBytes = heapPeakSampler.stop();
+
+        printReport(jobExecution, elapsedNanos, roundTrips, heapPeakBytes);
+
+        if (exitOnFinish) {
+            System.exit(SpringApplication.exit(applicationContext, () -> jobExecution.getStatus().isUnsuccessful() ? 1 : 0));
+        }
+    }
+
+    private void seedSubscribers() {
+        new ResourceDatabasePopulator(new ClassPathResource("loadtest/subscriber.sql")).execute(dataSource);
+
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 1; i <= subscriberCount; i++) {
+            batch.add(new Object[]{"user" + i + "@loadtest.example.com"});
+            if (batch.size() == SEED_BATCH_SIZE || i == subscriberCount) {
+                jdbcTemplate.batchUpdate("INSERT INTO subscriber (email) VALUES (?)", batch);
+                batch.clear();
+            }
+        }
+        System.out.println("[LoadTest] 구독자 " + subscriberCount + "명 생성");
+    }
+
+    /**
+     * 샤딩 중이면 인스턴스가 다 모이고 이 인스턴스의 샤드가 몫만큼 정리될 때까지 대기 (임대 갱신은 스케줄러가 함)
+     */
+    private void awaitShardAssignment() throws InterruptedException {
+        if (!shardLeaseManager.isEnabled()) {
+            return;
+        }
+        int fairShare = (shardLeaseManager.getShardCount() + expectedInstances - 1) / expectedInstances;
+        long deadline = System.currentTimeMillis() + shardWaitMillis;
+        while (System.currentTimeMillis() < deadline) {
+            int held = shardLeaseManager.getHeldShards().size();
+            if (shardLeaseManager.liveInstanceCount() >= expectedInstances && held > 0 && held <= fairShare) {
+                break;
+            }
+            Thread.sleep(500);
+        }
+        System.out.println("[LoadTest] " + shardLeaseManager.getInstanceId() + " 샤드 " + shardLeaseManager.getHeldShards()
+                + " 담당으로 실행 (인스턴스 " + shardLeaseManager.liveInstanceCount() + "개)");
+    }
+
+    private void printReport(JobExecution jobExecution, long elapsedNanos, long roundTrips, long heapPeakBytes) {
+        double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        Long delivered = jdbcTemplate.queryForObject( // 발송 기록 기준 성공 건수 (샤딩 중이면 이 인스턴스의 샤드만)
+                "SELECT COUNT(*) FROM delivery_ledger l WHERE 1 = 1" + shardLeaseManager.shardCondition("l.subscriber_id"), Long.class);
+        long sent = delivered == null ? 0 : delivered;
+        String jobExecutionId = String.valueOf(jobExecution.getId());
+
+        StringBuilder report = new StringBuilder();
+        report.append("\n========== [LoadTest] 결과 ==========\n");
+        report.append("설정          : engine=").append(environment.getProperty("batch.email.engine", "javamail"))
+                .append(", step-mode=").append(environment.getProperty("batch.email.step-mode", "chunk"))
+                .append(", recipients-per-transaction=").append(environment.getProperty("batch.email.recipients-per-transaction", "1"))
+                .append(", subscribers=").append(subscriberCount)
+                .append(shardLeaseManager.isEnabled() ? ", shards=" + shardLeaseManager.getHeldShards() : "").append('\n');
+        report.append("Job 상태      : ").append(jobExecution.getStatus()).append(" (jobExecutionId=").append(jobExecutionId).append(")\n");
+        report.append(String.format("소요 시간     : %.2f s%n", elapsedSeconds));
+        report.append(String.format("발송 성공     : %d건, %.1f 건/s%n", sent, sent / elapsedSeconds));
+        report.append(String.format("SMTP sink     : 수신 %d, 451 %d, 550 %d, 트랜잭션 %d, 연결 %d%n",
+                smtpSink.getAccepted(), smtpSink.getFailed(), smtpSink.getRejected(),
+                smtpSink.getTransactions(), smtpSink.getConnections()));
+        report.append(String.format("재시도 대기열 : 대기 %d, dead-letter %d%n",
+                countRetries(DeliveryRetryQueue.STATUS_PENDING), countRetries(DeliveryRetryQueue.STATUS_DEAD)));
+        report.append("전송 지연     : ").append(latencySummary()).append('\n');
+        report.append(String.format("DB 왕복       : %d회 (발송 1건당 %.2f)%n", roundTrips, sent == 0 ? 0.0 : roundTrips / (double) sent));
+        report.append(String.format("힙 최대 사용량: %.1f MB (샘플링)%n", heapPeakBytes / (1024.0 * 1024.0)));
+        report.append("=====================================");
+        System.out.println(report);
+    }
+
+    private long countRetries(String status) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM delivery_retry WHERE status = ?", Long.class, status);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 프로세스당 한 번만 실행하므로 지표 전체가 이번 실행의 값
+     */
+    private String latencySummary() {
+        Timer timer = batchMetrics.getMeterRegistry().find("email.smtp.send")
+                .tag("outcome", "sent")
+                .timer();
+        if (timer == null || timer.count() == 0) {
+            return "성공한 전송 없음";
+        }
+
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        StringBuilder summary = new StringBuilder();
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            summary.append(String.format("p%.0f %.1f ms, ", percentile.percentile() * 100, percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        summary.append(String.format("max %.1f ms", snapshot.max(TimeUnit.MILLISECONDS)));
+        return summary.toString();
+    }
+
+    /**
+     * 힙 사용량을 주기적으로 읽어 최댓값을 기록 - GC 직전 값을 놓칠 수 있으므로 근사치
+     */
+    private static class HeapPeakSampler {
+
+        private final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        private final AtomicLong peakBytes = new AtomicLong();
+
+        HeapPeakSampler() {
+            sampler.scheduleAtFixedRate(this::sample, 0, 50, TimeUnit.MILLISECONDS);
+        }
+
+        long stop() {
+            sampler.shutdownNow();
+            sample();
+            return peakBytes.get();
+        }
+
+        private void sample() {
+            long used = memoryMXBean.getHeapMemoryUsage().getUsed();
+            peakBytes.accumulateAndGet(used, Math::max);
+        }
+    }
+}
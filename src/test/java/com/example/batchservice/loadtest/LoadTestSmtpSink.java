@@ -0,0 +1,217 @@
+package com.example.batchservice.loadtest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 부하 테스트용 프로세스 내 SMTP 서버 - 받은 메일은 버리고 개수만 센다
+ * - DATA 종료 후 응답 전에 latency-ms (± jitter) 만큼 지연
+ * - error-rate 비율은 451(일시 오류), reject-rate 비율은 550(영구 거부)로 응답
+ * - rcpt-reject-rate 비율의 RCPT TO 는 550 으로 거부 (여러 수신자 트랜잭션의 부분 거부)
+ * - PIPELINING 을 알리며, 명령을 받은 순서대로 응답하므로 파이프라인된 명령도 그대로 처리된다
+ * STARTTLS / AUTH 는 지원하지 않으므로 loadtest 프로필에서는 둘 다 끈다.
+ */
+@Component
+@Profile("loadtest")
+public class LoadTestSmtpSink {
+
+    @Value("${batch.loadtest.smtp.port:2525}")
+    private int port;
+
+    @Value("${batch.loadtest.smtp.latency-ms:20}")
+    private long latencyMillis;
+
+    @Value("${batch.loadtest.smtp.latency-jitter-ms:10}")
+    private long latencyJitterMillis;
+
+    @Value("${batch.loadtest.smtp.error-rate:0.0}")
+    private double errorRate;
+
+    @Value("${batch.loadtest.smtp.reject-rate:0.0}")
+    private double rejectRate;
+
+    @Value("${batch.loadtest.smtp.rcpt-reject-rate:0.0}")
+    private double rcptRejectRate;
+
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(); // 연결당 스레드 1개
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+    private volatile ServerSocket serverSocket;
+
+    @PostConstruct
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 200, InetAddress.getLoopbackAddress());
+        connectionExecutor.execute(this::acceptLoop);
+        System.out.println("[LoadTestSmtpSink] 127.0.0.1:" + port + " 대기 (지연 " + latencyMillis + "±" + latencyJitterMillis
+                + "ms, 451 " + errorRate + ", 550 " + rejectRate + ")");
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        serverSocket.close();
+        connectionExecutor.shutdownNow();
+    }
+
+    public void resetCounts() {
+        connections.set(0);
+        accepted.set(0);
+        failed.set(0);
+        rejected.set(0);
+        transactions.set(0);
+    }
+
+    public long getTransactions() {
+        return transactions.get();
+    }
+
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                connectionExecutor.execute(() -> handle(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("[LoadTestSmtpSink] accept 실패: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+             OutputStream out = socket.getOutputStream()) {
+            reply(out, "220 loadtest-sink ESMTP");
+
+            int recipients = 0; // 현재 트랜잭션에서 받은 수신자 수
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO":
+                        reply(out, "250-loadtest-sink\r\n250-PIPELINING\r\n250-8BITMIME\r\n250 SIZE 52428800");
+                        break;
+                    case "MAIL":
+                    case "RSET":
+                        recipients = 0;
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT":
+                        if (ThreadLocalRandom.current().nextDouble() < rcptRejectRate) {
+                            rejected.incrementAndGet();
+                            reply(out, "550 5.1.1 Injected recipient rejection");
+                        } else {
+                            recipients++;
+                            reply(out, "250 OK");
+                        }
+                        break;
+                    case "HELO":
+                    case "NOOP":
+                        reply(out, "250 OK");
+                        break;
+                    case "DATA":
+                        if (recipients == 0) {
+                            reply(out, "554 5.5.1 No valid recipients");
+                            break;
+                        }
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        if (!skipData(in)) {
+                            return;
+                        }
+                        reply(out, deliver(recipients));
+                        recipients = 0;
+                        break;
+                    case "QUIT":
+                        reply(out, "221 Bye");
+                        return;
+                    default:
+                        reply(out, "502 Command not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // 클라이언트가 연결을 끊음 - 정상
+        }
+    }
+
+    /**
+     * 마침표 한 줄이 나올 때까지 본문을 읽고 버림 - 연결이 먼저 끊기면 false
+     */
+    private boolean skipData(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (".".equals(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 지연을 넣은 뒤 설정된 비율에 따라 성공/일시 오류/영구 거부 응답을 고른다 (수신자 수 단위로 집계)
+     */
+    private String deliver(int recipients) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (latencyJitterMillis > 0 ? random.nextLong(-latencyJitterMillis, latencyJitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        transactions.incrementAndGet();
+        double roll = random.nextDouble();
+        if (roll < errorRate) {
+            failed.addAndGet(recipients);
+            return "451 4.3.0 Injected temporary failure";
+        }
+        if (roll < errorRate + rejectRate) {
+            rejected.addAndGet(recipients);
+            return "550 5.1.1 Injected permanent rejection";
+        }
+        accepted.addAndGet(recipients);
+        return "250 2.0.0 OK queued";
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
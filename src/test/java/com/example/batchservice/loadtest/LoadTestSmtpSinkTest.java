@@ -0,0 +1,110 @@
+package com.example.batchservice.loadtest;
+
+import com.example.batchservice.writer.JavaMailDeliveryEngine;
+import com.example.batchservice.writer.RecipientDeliveryResult;
+import com.example.batchservice.writer.SmtpFailureClassifier;
+import com.example.batchservice.writer.SmtpTransportPool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.mail.Message;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+/**
+ * 부하 테스트 싱크가 주입한 응답이 운영 전송 경로(SmtpTransportPool → JavaMailDeliveryEngine)에서 기대한 분류로 보이는지 확인
+ */
+class LoadTestSmtpSinkTest {
+
+    private LoadTestSmtpSink sink;
+    private SmtpTransportPool pool;
+    private JavaMailDeliveryEngine engine;
+    private JavaMailSenderImpl mailSender;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.close();
+        pool.close();
+        sink.stop();
+    }
+
+    @Test
+    void acceptsMultiRecipientTransaction() throws Exception {
+        start(0.0, 0.0);
+
+        RecipientDeliveryResult result = engine.sendToAll(message(),
+                List.of("a@loadtest.example.com", "b@loadtest.example.com", "c@loadtest.example.com"))
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(result.getAcceptedCount()).isEqualTo(3);
+        assertThat(sink.getTransactions()).isEqualTo(1);
+        assertThat(sink.getAccepted()).isEqualTo(3);
+        assertThat(sink.getConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void injectedTemporaryFailureIsThrottled() throws Exception {
+        start(1.0, 0.0);
+
+        Throwable failure = catchThrowable(() -> engine.send(message()).get(10, TimeUnit.SECONDS));
+
+        assertThat(failure).isInstanceOf(ExecutionException.class);
+        assertThat(SmtpFailureClassifier.classify(failure.getCause())).isEqualTo(SmtpFailureClassifier.Type.THROTTLED);
+        assertThat(sink.getFailed()).isEqualTo(1);
+    }
+
+    @Test
+    void injectedRejectionIsPermanent() throws Exception {
+        start(0.0, 1.0);
+
+        Throwable failure = catchThrowable(() -> engine.send(message()).get(10, TimeUnit.SECONDS));
+
+        assertThat(failure).isInstanceOf(ExecutionException.class);
+        assertThat(SmtpFailureClassifier.classify(failure.getCause())).isEqualTo(SmtpFailureClassifier.Type.PERMANENT);
+        assertThat(sink.getRejected()).isEqualTo(1);
+    }
+
+    private void start(double errorRate, double rejectRate) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        sink = new LoadTestSmtpSink();
+        ReflectionTestUtils.setField(sink, "port", port);
+        ReflectionTestUtils.setField(sink, "latencyMillis", 0L);
+        ReflectionTestUtils.setField(sink, "latencyJitterMillis", 0L);
+        ReflectionTestUtils.setField(sink, "errorRate", errorRate);
+        ReflectionTestUtils.setField(sink, "rejectRate", rejectRate);
+        ReflectionTestUtils.setField(sink, "rcptRejectRate", 0.0);
+        sink.start();
+
+        // application-loadtest.yml 과 같은 설정 (인증/STARTTLS 없음)
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(port);
+        mailSender.getJavaMailProperties().put("mail.smtp.sendpartial", "true");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        pool = new SmtpTransportPool("default", mailSender.getSession(), "127.0.0.1", port, "", "", 1, 100, 60_000,
+                meterRegistry);
+        engine = new JavaMailDeliveryEngine("default", mailSender, pool, "", true, 1, meterRegistry);
+    }
+
+    private MimeMessage message() throws Exception {
+        MimeMessage message = new MimeMessage(mailSender.getSession());
+        message.setFrom(new InternetAddress("sender@loadtest.example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("user1@loadtest.example.com"));
+        message.setSubject("digest");
+        message.setText("hello");
+        return message;
+    }
+}
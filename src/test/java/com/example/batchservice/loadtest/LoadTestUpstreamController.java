@@ -0,0 +1,64 @@
+package com.example.batchservice.loadtest;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 부하 테스트용 flowbit 가격/뉴스 API 대역 - src/test/resources/loadtest 의 고정 JSON 을 돌려준다 (뉴스는 태그와 무관하게 같은 응답)
+ * latency-ms / fail 로 느리거나 죽은 상류를 흉내내 UpstreamGuard 와 마지막 정상 스냅샷 사용을 확인할 수 있다.
+ */
+@RestController
+@Profile("loadtest")
+@RequestMapping("/loadtest/upstream")
+public class LoadTestUpstreamController {
+
+    private final byte[] priceJson;
+    private final byte[] newsJson;
+
+    @Value("${batch.loadtest.upstream.latency-ms:0}")
+    private long latencyMillis;
+
+    @Value("${batch.loadtest.upstream.fail:false}") // true 면 503
+    private boolean fail;
+
+    public LoadTestUpstreamController() throws IOException {
+        this.priceJson = read("loadtest/price.json");
+        this.newsJson = read("loadtest/news.json");
+    }
+
+    @GetMapping("/price")
+    public ResponseEntity<byte[]> price() throws InterruptedException {
+        return respond(priceJson);
+    }
+
+    @GetMapping("/news")
+    public ResponseEntity<byte[]> news() throws InterruptedException {
+        return respond(newsJson);
+    }
+
+    private ResponseEntity<byte[]> respond(byte[] body) throws InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        if (fail) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static byte[] read(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
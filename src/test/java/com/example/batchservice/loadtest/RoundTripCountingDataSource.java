@@ -0,0 +1,81 @@
+package com.example.batchservice.loadtest;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DB 왕복 횟수를 세는 DataSource - 문장 실행(execute*, batch 는 1회)과 commit/rollback 을 각각 한 번으로 센다
+ */
+class RoundTripCountingDataSource extends DelegatingDataSource {
+
+    private static final Set<String> ROUND_TRIP_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate",
+            "executeBatch", "executeLargeBatch", "commit", "rollback");
+
+    private final AtomicLong roundTrips = new AtomicLong();
+
+    RoundTripCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    void reset() {
+        roundTrips.set(0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(Connection.class, super.getConnection(username, password));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T wrap(Class<T> type, T target) {
+        InvocationHandler handler = (proxy, method, args) -> invoke(target, method, args);
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        if (ROUND_TRIP_METHODS.contains(method.getName())) {
+            roundTrips.incrementAndGet();
+        }
+
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+
+        // Connection 이 만든 Statement 도 감싸야 실행 횟수를 셀 수 있다
+        if (result instanceof CallableStatement) {
+            return wrap(CallableStatement.class, (CallableStatement) result);
+        }
+        if (result instanceof PreparedStatement) {
+            return wrap(PreparedStatement.class, (PreparedStatement) result);
+        }
+        if (result instanceof Statement) {
+            return wrap(Statement.class, (Statement) result);
+        }
+        return result;
+    }
+}
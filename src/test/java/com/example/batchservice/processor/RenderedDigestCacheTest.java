@@ -0,0 +1,67 @@
+package com.example.batchservice.processor;
+
+import com.example.batchservice.dto.UpstreamSnapshot;
+import com.example.batchservice.ledger.DeliveryLedger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 저장된 본문은 같은 템플릿 버전에서만 재사용되는지 확인 - H2(MySQL 모드) 메모리 DB 사용
+ */
+class RenderedDigestCacheTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DeliveryLedger deliveryLedger;
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:digest-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        deliveryLedger = new DeliveryLedger(jdbcTemplate);
+    }
+
+    @Test
+    void restartedInstanceReusesStoredBodyForSameTemplateVersion() {
+        assertThat(newCache().get("ko", "html", "aaaa", () -> render("v1")).getBody()).isEqualTo("v1");
+
+        // 재시작 - 메모리 캐시 없이 저장된 본문 사용
+        assertThat(newCache().get("ko", "html", "aaaa", () -> render("v1-again")).getBody()).isEqualTo("v1");
+        assertThat(renders).hasValue(1);
+    }
+
+    @Test
+    void changedTemplateVersionRendersAgain() {
+        newCache().get("ko", "html", "aaaa", () -> render("old template"));
+
+        RenderedDigestCache deployed = newCache();
+        assertThat(deployed.get("ko", "html", "bbbb", () -> render("new template")).getBody()).isEqualTo("new template");
+        assertThat(renders).hasValue(2);
+
+        // 아직 이전 버전으로 떠 있는 인스턴스는 자기 본문을 그대로 씀 (서로 덮어쓰지 않음)
+        assertThat(newCache().get("ko", "html", "aaaa", () -> render("unused")).getBody()).isEqualTo("old template");
+        assertThat(renders).hasValue(2);
+    }
+
+    private RenderedDigestCache newCache() {
+        RenderedDigestCache cache = new RenderedDigestCache(jdbcTemplate, deliveryLedger);
+        ReflectionTestUtils.setField(cache, "fallbackRenderTtlMillis", 60_000L);
+        ReflectionTestUtils.setField(cache, "retentionDays", 7);
+        cache.initSchema();
+        return cache;
+    }
+
+    private RenderedDigestCache.RenderedDigest render(String body) {
+        renders.incrementAndGet();
+        return new RenderedDigestCache.RenderedDigest(body, "hash:" + body.hashCode(), UpstreamSnapshot.Source.FRESH,
+                System.currentTimeMillis());
+    }
+}
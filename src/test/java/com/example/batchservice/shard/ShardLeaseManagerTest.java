@@ -0,0 +1,137 @@
+package com.example.batchservice.shard;
+
+import com.example.batchservice.batch.DeliveryTriggerEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 같은 DB(H2, MySQL 모드)를 쓰는 두 인스턴스의 샤드 분배와 만료된 임대 넘겨받기
+ */
+class ShardLeaseManagerTest {
+
+    private static final int SHARD_COUNT = 4;
+    private static final int LEASE_TTL_SECONDS = 30;
+    private static final int SHORT_LEASE_TTL_SECONDS = 1; // 만료 시험용
+    private static final long RENEW_INTERVAL_MILLIS = 60_000; // 시험 중에는 전용 스레드가 갱신하지 않음 (renew() 를 직접 호출)
+
+    private JdbcTemplate jdbcTemplate;
+    private final List<Object> eventsB = new CopyOnWriteArrayList<>();
+    private ShardLeaseManager a;
+    private ShardLeaseManager b;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:shard-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        a = manager("instance-a", new CopyOnWriteArrayList<>(), LEASE_TTL_SECONDS);
+        b = manager("instance-b", eventsB, LEASE_TTL_SECONDS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        a.close();
+        b.close();
+    }
+
+    @Test
+    void secondInstanceGetsFairShareAfterFirstReleases() {
+        a.init();
+        assertThat(a.getHeldShards()).hasSize(SHARD_COUNT);
+
+        b.init(); // 아직 A 가 모두 임대 중이라 가져갈 샤드가 없음
+        assertThat(b.getHeldShards()).isEmpty();
+        assertThat(b.shardCondition("s.id")).isEqualTo(" AND 1 = 0");
+
+        a.renew(); // 인스턴스가 둘이 되어 몫(2)을 넘는 샤드를 반납
+        b.renew();
+
+        assertThat(a.getHeldShards()).hasSize(SHARD_COUNT / 2);
+        assertThat(b.getHeldShards()).hasSize(SHARD_COUNT / 2);
+        assertThat(disjointUnion(a.getHeldShards(), b.getHeldShards())).hasSize(SHARD_COUNT);
+        assertThat(eventsB).hasSize(1);
+    }
+
+    @Test
+    void takesOverExpiredShardsAndSignalsDelivery() throws Exception {
+        ReflectionTestUtils.setField(a, "leaseTtlSeconds", SHORT_LEASE_TTL_SECONDS);
+        ReflectionTestUtils.setField(b, "leaseTtlSeconds", SHORT_LEASE_TTL_SECONDS);
+        a.init();
+        b.init();
+        a.renew();
+        b.renew();
+        eventsB.clear();
+
+        // A 가 죽어 갱신이 끊김 - 임대가 만료될 때까지 기다린 뒤 B 가 넘겨받음
+        Thread.sleep(SHORT_LEASE_TTL_SECONDS * 1000L + 1200);
+        b.renew();
+
+        assertThat(b.getHeldShards()).hasSize(SHARD_COUNT);
+        assertThat(b.liveInstanceCount()).isEqualTo(1);
+        assertThat(eventsB).singleElement()
+                .extracting(event -> ((DeliveryTriggerEvent) event).getReason())
+                .isEqualTo(DeliveryTriggerEvent.Reason.SHARD_TAKEOVER);
+
+        // 보유 샤드가 그대로면 신호를 다시 보내지 않음
+        b.renew();
+        assertThat(eventsB).hasSize(1);
+    }
+
+    @Test
+    void doesNotReleaseShardsWhileJobIsRunning() {
+        a.init();
+        a.beforeJob(null);
+        b.init();
+
+        a.renew();
+        assertThat(a.getHeldShards()).hasSize(SHARD_COUNT);
+
+        a.afterJob(null);
+        a.renew();
+        assertThat(a.getHeldShards()).hasSize(SHARD_COUNT / 2);
+    }
+
+    @Test
+    void stopsReadingPagesWhenRenewalFallsBehind() throws Exception {
+        ReflectionTestUtils.setField(a, "leaseTtlSeconds", SHORT_LEASE_TTL_SECONDS);
+        a.init();
+        a.checkLease(); // 방금 연장함
+
+        // 갱신이 TTL 의 절반(0.5초) 넘게 밀림 - DB 임대는 아직 남았지만 다음 페이지는 읽지 않음
+        Thread.sleep(SHORT_LEASE_TTL_SECONDS * 1000L / 2 + 200);
+        assertThatThrownBy(a::checkLease).isInstanceOf(IllegalStateException.class);
+
+        a.renew();
+        a.checkLease();
+    }
+
+    private ShardLeaseManager manager(String instanceId, List<Object> events, int leaseTtlSeconds) {
+        ShardLeaseManager manager = new ShardLeaseManager(jdbcTemplate, events::add);
+        ReflectionTestUtils.setField(manager, "enabled", true);
+        ReflectionTestUtils.setField(manager, "shardCount", SHARD_COUNT);
+        ReflectionTestUtils.setField(manager, "leaseTtlSeconds", leaseTtlSeconds);
+        ReflectionTestUtils.setField(manager, "renewIntervalMillis", RENEW_INTERVAL_MILLIS);
+        ReflectionTestUtils.setField(manager, "configuredInstanceId", instanceId);
+        return manager;
+    }
+
+    private static Set<Integer> disjointUnion(Set<Integer> first, Set<Integer> second) {
+        Set<Integer> union = new HashSet<>(first);
+        for (Integer shard : second) {
+            assertThat(union.add(shard)).as("샤드 %d 를 두 인스턴스가 함께 임대", shard).isTrue();
+        }
+        return union;
+    }
+}
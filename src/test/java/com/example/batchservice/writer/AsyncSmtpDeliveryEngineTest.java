@@ -0,0 +1,191 @@
+package com.example.batchservice.writer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncSmtpDeliveryEngineTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AsyncSmtpDeliveryEngine engine;
+    private ScriptedSmtpServer server;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (engine != null) {
+            engine.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void pipelinesEnvelopeAndReportsRejectedRecipients() throws Exception {
+        server = new ScriptedSmtpServer(Set.of("bad@example.com"), Set.of());
+        engine = engine(server.getPort(), 1, 5_000);
+
+        RecipientDeliveryResult result = engine.sendToAll(message(),
+                List.of("a@example.com", "bad@example.com", "c@example.com")).get(5, TimeUnit.SECONDS);
+
+        assertThat(result.getAcceptedCount()).isEqualTo(2);
+        assertThat(result.failureOf("a@example.com")).isNull();
+        assertThat(SmtpFailureClassifier.classify(result.failureOf("bad@example.com")))
+                .isEqualTo(SmtpFailureClassifier.Type.PERMANENT);
+        // MAIL 1 / RCPT 3 / DATA 1 - 본문은 한 번만
+        assertThat(server.getCommands()).filteredOn(line -> line.startsWith("RCPT")).hasSize(3);
+        assertThat(server.getCommands()).filteredOn(line -> line.equals("DATA")).hasSize(1);
+    }
+
+    @Test
+    void reusesSessionAfterRejectedTransaction() throws Exception {
+        server = new ScriptedSmtpServer(Set.of("bad@example.com"), Set.of());
+        engine = engine(server.getPort(), 1, 5_000);
+
+        CompletableFuture<Void> rejected = engine.send(message("bad@example.com"));
+        assertThatThrownBy(() -> rejected.get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(AsyncSmtpSession.SmtpReplyException.class);
+
+        engine.send(message("a@example.com")).get(5, TimeUnit.SECONDS);
+
+        // 모두 거부되면 DATA 없이 RSET 으로 세션을 되살려 같은 연결로 다음 메시지를 보냄
+        assertThat(server.getCommands()).contains("RSET");
+        assertThat(server.getConnections()).isEqualTo(1);
+        assertThat(meterRegistry.get("email.smtp.connections.opened").tag("engine", "async-smtp").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("email.smtp.messages.sent").tag("engine", "async-smtp").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void failsAndClosesSessionWhenServerStopsReplying() throws Exception {
+        server = new ScriptedSmtpServer(Set.of(), Set.of("."));
+        engine = engine(server.getPort(), 1, 300);
+
+        CompletableFuture<Void> stuck = engine.send(message("a@example.com"));
+
+        assertThatThrownBy(() -> stuck.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(SocketTimeoutException.class);
+
+        // 시간 초과한 세션은 다시 쓰지 않고 새로 연결
+        CompletableFuture<Void> next = engine.send(message("b@example.com"));
+        assertThatThrownBy(() -> next.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(server.getConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void failsEveryWaitingSendWhenHandshakeTimesOut() throws Exception {
+        server = new ScriptedSmtpServer(Set.of(), Set.of("EHLO"));
+        engine = engine(server.getPort(), 1, 300);
+
+        CompletableFuture<Void> first = engine.send(message("a@example.com"));
+        CompletableFuture<Void> second = engine.send(message("b@example.com"));
+        CompletableFuture<Void> third = engine.send(message("c@example.com"));
+
+        for (CompletableFuture<Void> send : List.of(first, second, third)) {
+            assertThatThrownBy(() -> send.get(5, TimeUnit.SECONDS))
+                    .hasRootCauseInstanceOf(SocketTimeoutException.class);
+        }
+    }
+
+    @Test
+    void failsEveryWaitingSendWhenConnectFails() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        engine = engine(closedPort, 1, 5_000);
+
+        CompletableFuture<Void> first = engine.send(message("a@example.com"));
+        CompletableFuture<Void> second = engine.send(message("b@example.com"));
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void rejectsStartTlsCertificateIssuedForAnotherHost() throws Exception {
+        SelfSignedCertificate certificate = new SelfSignedCertificate("relay.other.example");
+        server = new ScriptedSmtpServer(Set.of(), Set.of(), serverTls(certificate));
+        engine = tlsEngine("localhost", certificate);
+
+        // 신뢰하는 인증서지만 다른 호스트의 것 - 인증 정보를 보내기 전에 끊음
+        CompletableFuture<Void> send = engine.send(message("a@example.com"));
+        assertThatThrownBy(() -> send.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(CertificateException.class);
+        assertThat(server.getCommands()).contains("STARTTLS")
+                .noneMatch(line -> line.startsWith("AUTH") || line.startsWith("MAIL"));
+    }
+
+    @Test
+    void sendsOverStartTlsWhenCertificateMatchesHost() throws Exception {
+        SelfSignedCertificate certificate = new SelfSignedCertificate("localhost");
+        server = new ScriptedSmtpServer(Set.of(), Set.of(), serverTls(certificate));
+        engine = tlsEngine("localhost", certificate);
+
+        engine.send(message("a@example.com")).get(5, TimeUnit.SECONDS);
+
+        assertThat(server.getCommands()).containsSubsequence("STARTTLS", "EHLO localhost", "DATA");
+    }
+
+    private AsyncSmtpDeliveryEngine tlsEngine(String host, SelfSignedCertificate trusted) throws Exception {
+        SslContext clientTls = SslContextBuilder.forClient().trustManager(trusted.cert()).build();
+        return new AsyncSmtpDeliveryEngine("relay-a", host, server.getPort(), clientTls, "user", "secret",
+                "sender@example.com", 1, 1, 100, 60_000, 5_000, meterRegistry);
+    }
+
+    private static SSLContext serverTls(SelfSignedCertificate certificate) throws Exception {
+        char[] password = "changeit".toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("smtp", certificate.key(), password, new Certificate[]{certificate.cert()});
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, password);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        return context;
+    }
+
+    private AsyncSmtpDeliveryEngine engine(int port, int maxSessions, long replyTimeoutMillis) throws Exception {
+        return new AsyncSmtpDeliveryEngine("relay-a", "127.0.0.1", port, false, "", "", "sender@example.com",
+                1, maxSessions, 100, 60_000, replyTimeoutMillis, meterRegistry);
+    }
+
+    private static MimeMessage message(String... recipients) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+        message.setFrom(new InternetAddress("sender@example.com"));
+        for (String recipient : recipients.length == 0 ? new String[]{"a@example.com"} : recipients) {
+            message.addRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+        }
+        message.setSubject("digest");
+        message.setText("hello");
+        return message;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.batchservice.writer;
+
+import com.example.batchservice.dto.DigestSegment;
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.ledger.DeliveryLedger;
+import com.example.batchservice.ledger.DeliveryRetryQueue;
+import com.example.batchservice.metrics.BatchMetrics;
+import com.example.batchservice.shard.ShardLeaseManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 발송 기록 버퍼 - flush, 반영 실패분 되돌리기와 상한 초과분 폐기 (H2, MySQL 모드)
+ * 발송 기록/재시도 테이블을 만들지 않거나 지워 DB 반영 실패를 흉내낸다.
+ */
+class DeliveryStatusRecorderTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DeliveryLedger deliveryLedger;
+    private DeliveryRetryQueue deliveryRetryQueue;
+    private DeliveryStatusRecorder recorder;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:status-" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        deliveryLedger = new DeliveryLedger(jdbcTemplate);
+        ReflectionTestUtils.setField(deliveryLedger, "dayStartHour", 10);
+        deliveryRetryQueue = new DeliveryRetryQueue(jdbcTemplate, deliveryLedger,
+                new ShardLeaseManager(jdbcTemplate, event -> { }), new BatchMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(deliveryRetryQueue, "maxAttempts", 3);
+        ReflectionTestUtils.setField(deliveryRetryQueue, "baseDelayMillis", 60_000L);
+        ReflectionTestUtils.setField(deliveryRetryQueue, "maxDelayMillis", 3_600_000L);
+        deliveryRetryQueue.initSchema();
+        recorder = new DeliveryStatusRecorder(jdbcTemplate, deliveryLedger, deliveryRetryQueue,
+                new BatchMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(recorder, "flushSize", 3);
+        ReflectionTestUtils.setField(recorder, "maxPending", 100);
+    }
+
+    @Test
+    void flushesWhenBufferIsFull() {
+        deliveryLedger.initSchema();
+
+        recorder.markSent(subscriber(1L));
+        recorder.markSent(subscriber(2L));
+        assertThat(recorder.pendingCount()).isEqualTo(2);
+        assertThat(ledgerCount()).isZero();
+
+        recorder.markSent(subscriber(3L)); // flush-size 에 닿음
+        assertThat(recorder.pendingCount()).isZero();
+        assertThat(ledgerCount()).isEqualTo(3);
+    }
+
+    @Test
+    void keepsRowsForNextFlushWhenLedgerWriteFails() {
+        recorder.markSent(subscriber(1L));
+        recorder.markSent(subscriber(2L));
+
+        // 주기 flush 는 실패를 삼키고 버퍼에 되돌림, 청크 커밋 전 flush 는 예외로 커밋을 막음
+        recorder.flush();
+        assertThat(recorder.pendingCount()).isEqualTo(2);
+        assertThatThrownBy(recorder::flushBeforeCommit).isInstanceOf(IllegalStateException.class);
+        assertThat(recorder.pendingCount()).isEqualTo(2);
+
+        deliveryLedger.initSchema(); // DB 복구
+        recorder.flushBeforeCommit();
+        assertThat(recorder.pendingCount()).isZero();
+        assertThat(ledgerCount()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsRowsBeyondMaxPending() {
+        ReflectionTestUtils.setField(recorder, "flushSize", 100);
+        ReflectionTestUtils.setField(recorder, "maxPending", 2);
+        recorder.markSent(subscriber(1L));
+        recorder.markSent(subscriber(2L));
+        recorder.markSent(subscriber(3L));
+
+        recorder.flush();
+        assertThat(recorder.pendingCount()).isEqualTo(2); // 먼저 보낸 2건만 남기고 나머지는 폐기 (재발송 대상)
+
+        deliveryLedger.initSchema();
+        recorder.flush();
+        assertThat(jdbcTemplate.queryForList("SELECT subscriber_id FROM delivery_ledger ORDER BY subscriber_id", Long.class))
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void requeuesFailuresWhenRetryWriteFails() {
+        deliveryLedger.initSchema();
+        jdbcTemplate.execute("DROP TABLE delivery_retry");
+        recorder.markFailed(subscriber(1L), new IOException("connection reset"));
+
+        assertThatThrownBy(recorder::flushBeforeCommit).isInstanceOf(IllegalStateException.class);
+
+        // 실패 기록이 버려지지 않고 다음 flush 에 반영됨
+        deliveryRetryQueue.initSchema();
+        recorder.flushBeforeCommit();
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM delivery_retry WHERE subscriber_id = 1", String.class))
+                .isEqualTo(DeliveryRetryQueue.STATUS_PENDING);
+    }
+
+    private int ledgerCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM delivery_ledger", Integer.class);
+    }
+
+    private static Subscriber subscriber(Long id) {
+        return new Subscriber(id, "user" + id + "@example.com", DigestSegment.DEFAULT.getKey(), 0);
+    }
+}
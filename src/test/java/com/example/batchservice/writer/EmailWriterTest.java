@@ -0,0 +1,140 @@
+package com.example.batchservice.writer;
+
+import com.example.batchservice.dto.Subscriber;
+import com.example.batchservice.metrics.BatchMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 여러 수신자 트랜잭션 - 같은 세그먼트끼리 묶기와 RCPT TO 에서 일부만 거부된 묶음의 구독자별 결과
+ */
+class EmailWriterTest {
+
+    private static final String SEGMENT_A = "all|ko";
+    private static final String SEGMENT_B = "BTC|en";
+
+    private final RecordingEngine engine = new RecordingEngine();
+    private EmailWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        SendRateLimiter limiter = new SendRateLimiter(1000, 1000, 1000, 1, 0.5, new SimpleMeterRegistry());
+        writer = new EmailWriter(new JavaMailSenderImpl(), engine, null, limiter, null,
+                new BatchMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(writer, "recipientsPerTransaction", 2);
+    }
+
+    @Test
+    void groupsConsecutiveSubscribersOfSameSegmentUpToLimit() {
+        List<Subscriber> subscribers = List.of(subscriber(1, SEGMENT_A), subscriber(2, SEGMENT_A), subscriber(3, SEGMENT_A),
+                subscriber(4, SEGMENT_B), subscriber(5, SEGMENT_A));
+
+        // 2명씩, 세그먼트가 바뀌면 본문이 다르므로 새 묶음
+        assertThat(ids(writer.transactionGroups(subscribers)))
+                .containsExactly(List.of(1L, 2L), List.of(3L), List.of(4L), List.of(5L));
+    }
+
+    @Test
+    void sendsEachSubscriberAloneWhenNotConfigured() {
+        ReflectionTestUtils.setField(writer, "recipientsPerTransaction", 0);
+
+        assertThat(ids(writer.transactionGroups(List.of(subscriber(1, SEGMENT_A), subscriber(2, SEGMENT_A)))))
+                .containsExactly(List.of(1L), List.of(2L));
+    }
+
+    @Test
+    void reportsOnlyRejectedRecipientAsFailed() throws Exception {
+        engine.rejected = Set.of("user2@example.com");
+        List<Subscriber> group = List.of(subscriber(1, SEGMENT_A), subscriber(2, SEGMENT_A), subscriber(3, SEGMENT_A));
+        Map<Long, Throwable> results = new HashMap<>();
+
+        writer.sendGroupAsync(prepared(), group, (subscriber, failure) -> results.put(subscriber.getId(), failure))
+                .get(5, TimeUnit.SECONDS);
+
+        // 본문은 한 트랜잭션으로 한 번, 거부된 구독자만 실패 (재시도 대상)
+        assertThat(engine.transactions).containsExactly(
+                List.of("user1@example.com", "user2@example.com", "user3@example.com"));
+        assertThat(results).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(results.get(1L)).isNull();
+        assertThat(results.get(2L)).isInstanceOf(SendFailedException.class);
+        assertThat(results.get(3L)).isNull();
+    }
+
+    @Test
+    void reportsEveryRecipientWhenTransactionFails() throws Exception {
+        engine.failure = new MessagingException("connection reset");
+        List<Subscriber> group = List.of(subscriber(1, SEGMENT_A), subscriber(2, SEGMENT_A));
+        Map<Long, Throwable> results = new HashMap<>();
+
+        writer.sendGroupAsync(prepared(), group, (subscriber, failure) -> results.put(subscriber.getId(), failure))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(results).containsOnlyKeys(1L, 2L);
+        assertThat(results.values()).allSatisfy(failure -> assertThat(failure).hasRootCauseMessage("connection reset"));
+    }
+
+    private PreparedEmail prepared() throws MessagingException {
+        return writer.prepare(SEGMENT_A, "<p>digest</p>");
+    }
+
+    private static Subscriber subscriber(long id, String segmentKey) {
+        return new Subscriber(id, "user" + id + "@example.com", segmentKey, 0);
+    }
+
+    private static List<List<Long>> ids(List<List<Subscriber>> groups) {
+        return groups.stream()
+                .map(group -> group.stream().map(Subscriber::getId).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 받은 트랜잭션의 수신자를 기록하고 정해진 수신자만 거부하는 엔진
+     */
+    private static class RecordingEngine implements DeliveryEngine {
+
+        private final List<List<String>> transactions = new ArrayList<>();
+        private Set<String> rejected = Set.of();
+        private MessagingException failure;
+
+        @Override
+        public CompletableFuture<Void> send(MimeMessage message) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<RecipientDeliveryResult> sendToAll(MimeMessage message, List<String> recipients) {
+            transactions.add(recipients);
+            if (failure != null) {
+                return CompletableFuture.failedFuture(failure);
+            }
+            Map<String, Exception> rejections = new HashMap<>();
+            for (String recipient : recipients) {
+                if (rejected.contains(recipient)) {
+                    rejections.put(recipient, new SendFailedException("550 5.1.1 no such user"));
+                }
+            }
+            return CompletableFuture.completedFuture(new RecipientDeliveryResult(recipients, rejections));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
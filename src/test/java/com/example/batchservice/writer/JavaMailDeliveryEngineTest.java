@@ -0,0 +1,103 @@
+package com.example.batchservice.writer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.Message;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 릴레이별 JavaMail 엔진 - 발신 주소와 relay 태그로 나뉜 지표, DATA 이후 오류에서 다시 보내지 않음
+ */
+class JavaMailDeliveryEngineTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ScriptedSmtpServer server;
+    private SmtpTransportPool poolA;
+    private SmtpTransportPool poolB;
+    private JavaMailDeliveryEngine engineA;
+    private JavaMailDeliveryEngine engineB;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engineA.close();
+        poolA.close();
+        if (engineB != null) {
+            engineB.close();
+            poolB.close();
+        }
+        server.close();
+    }
+
+    @Test
+    void eachRelaySendsFromItsOwnAddressWithSeparateMeters() throws Exception {
+        server = new ScriptedSmtpServer(Set.of(), Set.of());
+        JavaMailSenderImpl senderA = mailSender(server.getPort());
+        JavaMailSenderImpl senderB = mailSender(server.getPort());
+        poolA = pool("relay-a", senderA);
+        poolB = pool("relay-b", senderB);
+        engineA = new JavaMailDeliveryEngine("relay-a", senderA, poolA, "Flowbit <a@example.com>", true, 1, meterRegistry);
+        engineB = new JavaMailDeliveryEngine("relay-b", senderB, poolB, "b@example.com", true, 1, meterRegistry);
+
+        MimeMessage message = message(senderA);
+        engineA.send(message).get(10, TimeUnit.SECONDS);
+        assertThat(((InternetAddress) message.getFrom()[0]).getAddress()).isEqualTo("a@example.com");
+
+        // 다른 릴레이로 다시 보내면 그 릴레이의 주소로 바뀜
+        engineB.send(message).get(10, TimeUnit.SECONDS);
+        assertThat(((InternetAddress) message.getFrom()[0]).getAddress()).isEqualTo("b@example.com");
+
+        assertThat(server.getCommands()).filteredOn(line -> line.startsWith("MAIL FROM"))
+                .containsExactly("MAIL FROM:<a@example.com>", "MAIL FROM:<b@example.com>");
+        assertThat(meterRegistry.get("email.smtp.messages.sent").tag("relay", "relay-a").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("email.smtp.messages.sent").tag("relay", "relay-b").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("email.executor.queue.depth").gauges()).hasSize(2);
+        assertThat(meterRegistry.get("email.smtp.messages.per.connection").gauges()).hasSize(2);
+    }
+
+    @Test
+    void doesNotResendWhenReplyToDataTimesOut() throws Exception {
+        server = new ScriptedSmtpServer(Set.of(), Set.of(".")); // 본문을 받고 응답하지 않음
+        JavaMailSenderImpl sender = mailSender(server.getPort());
+        sender.getJavaMailProperties().setProperty("mail.smtp.timeout", "500");
+        poolA = pool("relay-a", sender);
+        engineA = new JavaMailDeliveryEngine("relay-a", sender, poolA, "a@example.com", true, 1, meterRegistry);
+
+        assertThatThrownBy(() -> engineA.send(message(sender)).get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+
+        // 릴레이가 이미 받았을 수 있으므로 새 연결로 다시 보내지 않음 (재시도 큐에 맡김)
+        assertThat(server.getCommands()).filteredOn(line -> line.equals("DATA")).hasSize(1);
+        assertThat(server.getConnections()).isEqualTo(1);
+    }
+
+    private SmtpTransportPool pool(String relay, JavaMailSenderImpl sender) {
+        return new SmtpTransportPool(relay, sender.getSession(), "127.0.0.1", server.getPort(), "", "", 1, 100, 60_000,
+                meterRegistry);
+    }
+
+    private static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(port);
+        return mailSender;
+    }
+
+    private static MimeMessage message(JavaMailSenderImpl sender) throws Exception {
+        MimeMessage message = sender.createMimeMessage();
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("user1@example.com"));
+        message.setSubject("digest");
+        message.setText("hello");
+        return message;
+    }
+}
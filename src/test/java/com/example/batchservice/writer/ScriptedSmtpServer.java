@@ -0,0 +1,139 @@
+package com.example.batchservice.writer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 테스트용 SMTP 서버 - 받은 명령을 기록하고 정해진 대로만 응답한다
+ * - rejectedRecipients 의 RCPT TO 는 550 으로 거부
+ * - silentOn 에 있는 명령(EHLO, MAIL, RCPT, DATA, 본문 끝 ".")에는 응답하지 않음 (멈춘 릴레이 흉내)
+ * - startTlsContext 가 있으면 STARTTLS 를 광고하고 그 인증서로 TLS 로 전환
+ */
+class ScriptedSmtpServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final Set<String> rejectedRecipients;
+    private final Set<String> silentOn;
+    private final SSLContext startTlsContext;
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connections = new AtomicInteger();
+
+    ScriptedSmtpServer(Set<String> rejectedRecipients, Set<String> silentOn) throws IOException {
+        this(rejectedRecipients, silentOn, null);
+    }
+
+    ScriptedSmtpServer(Set<String> rejectedRecipients, Set<String> silentOn, SSLContext startTlsContext) throws IOException {
+        this.serverSocket = new ServerSocket(0);
+        this.rejectedRecipients = rejectedRecipients;
+        this.silentOn = silentOn;
+        this.startTlsContext = startTlsContext;
+        Thread acceptor = new Thread(this::acceptLoop, "scripted-smtp-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    List<String> getCommands() {
+        return commands;
+    }
+
+    int getConnections() {
+        return connections.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                Thread session = new Thread(() -> handle(socket), "scripted-smtp-session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return; // 서버 종료
+            }
+        }
+    }
+
+    private void handle(Socket plainSocket) {
+        try (plainSocket) {
+            Socket socket = plainSocket;
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+            reply(out, "220 scripted ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                commands.add(line);
+                String verb = line.split("[ :]", 2)[0].toUpperCase();
+                if (silentOn.contains(verb)) {
+                    continue;
+                }
+                switch (verb) {
+                    case "EHLO":
+                        reply(out, startTlsContext != null && !(socket instanceof SSLSocket)
+                                ? "250-scripted\r\n250-STARTTLS\r\n250 PIPELINING" : "250-scripted\r\n250 PIPELINING");
+                        break;
+                    case "STARTTLS":
+                        reply(out, "220 ready to start TLS");
+                        SSLSocket tls = (SSLSocket) startTlsContext.getSocketFactory()
+                                .createSocket(socket, null, socket.getPort(), true);
+                        tls.setUseClientMode(false);
+                        tls.startHandshake(); // 클라이언트가 인증서를 거부하면 여기서 끝남
+                        socket = tls;
+                        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                        out = socket.getOutputStream();
+                        break;
+                    case "MAIL":
+                    case "RSET":
+                        reply(out, "250 OK");
+                        break;
+                    case "RCPT":
+                        String recipient = line.substring(line.indexOf('<') + 1, line.indexOf('>'));
+                        reply(out, rejectedRecipients.contains(recipient) ? "550 5.1.1 no such user" : "250 OK");
+                        break;
+                    case "DATA":
+                        reply(out, "354 go ahead");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // 본문은 기록하지 않음
+                        }
+                        commands.add(".");
+                        if (!silentOn.contains(".")) {
+                            reply(out, "250 queued");
+                        }
+                        break;
+                    case "QUIT":
+                        reply(out, "221 bye");
+                        return;
+                    default:
+                        reply(out, "502 not implemented");
+                }
+            }
+        } catch (IOException e) {
+            // 클라이언트가 연결을 닫음
+        }
+    }
+
+    private static void reply(OutputStream out, String reply) throws IOException {
+        out.write((reply + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
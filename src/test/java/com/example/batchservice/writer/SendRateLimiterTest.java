@@ -0,0 +1,66 @@
+package com.example.batchservice.writer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * AIMD 속도 제어 - 성공하면 조금씩 올리고, 속도 제한 응답이면 한 번에 줄이되 1초 안에 겹친 실패로는 다시 줄이지 않음
+ */
+class SendRateLimiterTest {
+
+    @Test
+    void increasesAboutOnePerSecondWorthOfSuccesses() {
+        SendRateLimiter limiter = limiter(20, 5);
+
+        for (int i = 0; i < 5; i++) { // 초당 5건 × 1초
+            limiter.onSuccess();
+        }
+
+        assertThat(limiter.getCurrentRate()).isCloseTo(6.0, within(0.1));
+    }
+
+    @Test
+    void doesNotIncreaseBeyondMaxRate() {
+        SendRateLimiter limiter = limiter(6, 5);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.onSuccess();
+        }
+
+        assertThat(limiter.getCurrentRate()).isEqualTo(6.0);
+    }
+
+    @Test
+    void halvesOnceForThrottlesWithinCooldown() throws Exception {
+        SendRateLimiter limiter = limiter(20, 8);
+
+        limiter.onFailure(SmtpFailureClassifier.Type.THROTTLED);
+        limiter.onFailure(SmtpFailureClassifier.Type.THROTTLED); // 같은 순간에 실패한 다른 요청
+        assertThat(limiter.getCurrentRate()).isEqualTo(4.0);
+
+        Thread.sleep(1100); // 쿨다운이 지난 뒤의 속도 제한은 다시 줄임
+        limiter.onThrottled();
+        assertThat(limiter.getCurrentRate()).isEqualTo(2.0);
+    }
+
+    @Test
+    void keepsRateForOtherFailuresAndNeverGoesBelowMinRate() throws Exception {
+        SendRateLimiter limiter = limiter(20, 1);
+
+        limiter.onFailure(SmtpFailureClassifier.Type.PERMANENT);
+        assertThat(limiter.getCurrentRate()).isEqualTo(1.0);
+
+        limiter.onThrottled();
+        assertThat(limiter.getCurrentRate()).isEqualTo(0.5); // min-per-second
+        Thread.sleep(1100);
+        limiter.onThrottled();
+        assertThat(limiter.getCurrentRate()).isEqualTo(0.5);
+    }
+
+    private static SendRateLimiter limiter(double maxRate, double initialRate) {
+        return new SendRateLimiter(maxRate, 0.5, initialRate, 1, 0.5, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,5 @@
+-- 부하 테스트(loadtest 프로필)용 구독자 테이블 - 운영 DB 에는 이미 있음
+CREATE TABLE IF NOT EXISTS subscriber (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    email VARCHAR(255) NOT NULL
+);